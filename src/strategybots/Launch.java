@@ -1,8 +1,10 @@
 package strategybots;
 
 import strategybots.bots.SwagMNK;
+import strategybots.bots.TipC4_Adv;
 import strategybots.bots.TipDots3v3;
 import strategybots.bots.TipMCTS;
+import strategybots.bots.legacy.C4_Dummy;
 import strategybots.bots.legacy.SwagC4;
 import strategybots.games.Amazons;
 import strategybots.games.Chess;
@@ -22,7 +24,8 @@ import strategybots.games.Pentago;
 import strategybots.games.Pentago.PentagoController;
 import strategybots.games.Reversi.ReversiController;
 import strategybots.games.TicTacToe;
-import strategybots.games.TicTacToe.TicTacToeController;;
+import strategybots.games.TicTacToe.TicTacToeController;
+import strategybots.games.base.Tournament;;
 
 public class Launch {
     
@@ -36,10 +39,11 @@ public class Launch {
     private static final int PENTAGO = 8;
     private static final int REVERSI = 9;
     private static final int TICTACTOE = 10;
+    private static final int TOURNAMENT = 11;
     
     private static final int GAME = DOTSANDBOXES;
     
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         
         switch(GAME) {
             
@@ -53,6 +57,20 @@ public class Launch {
             case PENTAGO: new Pentago(new PentagoController(), new PentagoController()); break;
             case REVERSI: new Reversi(new ReversiController(), new ReversiController()); break;
             case TICTACTOE: new TicTacToe(new TicTacToeController(), new SwagMNK(2000)); break;
+            case TOURNAMENT: runTournament(); break;
         }
     }
-}
\ No newline at end of file
+    
+    private static void runTournament() throws InterruptedException {
+        
+        Tournament<ConnectFour> tournament = new Tournament<>(ConnectFour::new);
+        tournament.addPlayer("SwagC4", () -> new strategybots.bots.SwagC4(200));
+        tournament.addPlayer("SwagC4 (legacy)", () -> new SwagC4(200));
+        tournament.addPlayer("TipMCTS", () -> new TipMCTS(200));
+        tournament.addPlayer("TipC4_Adv", () -> new TipC4_Adv(200));
+        tournament.addPlayer("C4_Dummy", C4_Dummy::new);
+        tournament.setGamesPerPairing(20);
+        tournament.run();
+        tournament.printResults();
+    }
+}
\ No newline at end of file
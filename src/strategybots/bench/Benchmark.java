@@ -0,0 +1,94 @@
+package strategybots.bench;
+
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal harness for measuring the throughput of hot code paths.<br>
+ * <br>
+ * Each benchmark is run for a number of warmup iterations (to allow JIT compilation),
+ * followed by a number of measured iterations of fixed duration. The mean throughput
+ * and its standard deviation across the measured iterations are reported.<br>
+ * <br>
+ * Settings may be changed using the following system properties:<br>
+ * - 'strategybots.bench.warmup': number of warmup iterations (default 5).<br>
+ * - 'strategybots.bench.iterations': number of measured iterations (default 10).<br>
+ * - 'strategybots.bench.time': duration of each iteration, in milliseconds (default 1000).
+ *
+ * @author Alec Dorrington
+ */
+public class Benchmark {
+    
+    /** Number of unmeasured iterations run before measurement begins. */
+    private static final int WARMUP = Integer.getInteger("strategybots.bench.warmup", 5);
+    
+    /** Number of measured iterations. */
+    private static final int ITERATIONS = Integer.getInteger("strategybots.bench.iterations", 10);
+    
+    /** Duration of each iteration, in nanoseconds. */
+    private static final long ITERATION_TIME =
+            Long.getLong("strategybots.bench.time", 1000) * 1_000_000;
+    
+    /** Sink for benchmark results, so that the JIT can't eliminate unused work. */
+    private static volatile long sink;
+    
+    /** Only benchmarks whose names match this pattern are run. */
+    private final Pattern filter;
+    
+    /**
+     * Constructs a new harness.
+     * @param args command line arguments, the first of which (if present) is
+     * a regular expression matching the names of the benchmarks to run.
+     */
+    public Benchmark(String[] args) {
+        filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+    }
+    
+    /**
+     * Runs and reports a benchmark, if its name matches the filter.
+     * @param name the name of the benchmark.
+     * @param unit the unit of work being measured (e.g. "nodes").
+     * @param batch performs a batch of work, returning the number of units performed.
+     */
+    public void run(String name, String unit, LongSupplier batch) {
+        
+        if(!filter.matcher(name).find()) return;
+        
+        //Start each benchmark with a clean heap.
+        System.gc();
+        
+        //Allow the JIT to compile the hot paths.
+        for(int i = 0; i < WARMUP; i++) iterate(batch);
+        
+        //Measure the throughput of each iteration.
+        double[] rates = new double[ITERATIONS];
+        for(int i = 0; i < ITERATIONS; i++) rates[i] = iterate(batch);
+        
+        double mean = 0, variance = 0;
+        for(double rate : rates) mean += rate / rates.length;
+        for(double rate : rates) variance += (rate - mean) * (rate - mean) / Math.max(rates.length - 1, 1);
+        
+        System.out.printf("%-36s %14.1f +/- %-12.1f %s/s%n", name, mean, Math.sqrt(variance), unit);
+    }
+    
+    /**
+     * Consumes a value, so that the JIT can't eliminate the work which produced it.
+     * @param value the value to consume.
+     */
+    public static void consume(long value) { sink ^= value; }
+    
+    /**
+     * Runs batches repeatedly for the duration of one iteration.
+     * @param batch performs a batch of work, returning the number of units performed.
+     * @return the throughput, in units per second.
+     */
+    private static double iterate(LongSupplier batch) {
+        
+        long units = 0, start = System.nanoTime(), elapsed;
+        do {
+            units += batch.getAsLong();
+        } while((elapsed = System.nanoTime() - start) < ITERATION_TIME);
+        
+        return units / (elapsed / 1e9);
+    }
+}
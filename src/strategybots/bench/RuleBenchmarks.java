@@ -0,0 +1,348 @@
+package strategybots.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import strategybots.games.AmazonsState;
+import strategybots.games.Checkers;
+import strategybots.games.CheckersState;
+import strategybots.games.ChompState;
+import strategybots.games.ClobberState;
+import strategybots.games.ConnectFour;
+import strategybots.games.ConnectFourState;
+import strategybots.games.DotsAndBoxesState;
+import strategybots.games.PentagoState;
+import strategybots.games.Reversi;
+import strategybots.games.ReversiState;
+import strategybots.games.TicTacToe;
+import strategybots.games.TicTacToeState;
+import strategybots.games.base.Game;
+import strategybots.games.base.Game.Player;
+import strategybots.games.base.GameState;
+import strategybots.games.base.TileGame;
+
+/**
+ * Benchmarks of the rule engines of each game.<br>
+ * <br>
+ * - 'perft': nodes per second while enumerating every position to a fixed depth.<br>
+ * - 'playout': moves per second while playing random games to completion (and back).<br>
+ * - 'game': moves per second in headless games replaying random games chosen in advance,
+ * covering move application and win detection in the games themselves.<br>
+ * - 'checkWinAtPiece': checks per second of each stone in a crowded position which hasn't been won.<br>
+ * <br>
+ * Random moves are chosen using a fixed seed, so each run does the same work.<br>
+ * Usage: RuleBenchmarks [regex matching the benchmarks to run]
+ *
+ * @author Alec Dorrington
+ */
+public class RuleBenchmarks {
+    
+    /** Seed used in choosing random moves. */
+    private static final long SEED = 0x5EED;
+    
+    /** The maximum length of a random playout, in case a game never ends. */
+    private static final int MAX_PLAYOUT = 1000;
+    
+    /** The number of live games replayed in each batch. */
+    private static final int GAMES_PER_BATCH = 10;
+    
+    public static void main(String[] args) throws InterruptedException {
+        
+        Benchmark bench = new Benchmark(args);
+        TileGame.setHeadless(true);
+        
+        bench.run("TicTacToeState.perft(4)", "nodes", perft(() -> new TicTacToeState(7, 7, 5), 4));
+        bench.run("ConnectFourState.perft(7)", "nodes", perft(ConnectFourState::new, 7));
+        bench.run("PentagoState.perft(2)", "nodes", perft(PentagoState::new, 2));
+        bench.run("ReversiState.perft(6)", "nodes", perft(() -> new ReversiState(8, 8), 6));
+        bench.run("CheckersState.perft(7)", "nodes", perft(CheckersState::new, 7));
+        bench.run("ClobberState.perft(5)", "nodes", perft(() -> new ClobberState(5, 6), 5));
+        bench.run("AmazonsState.perft(1)", "nodes", perft(() -> new AmazonsState(10, 10), 1));
+        bench.run("ChompState.perft(5)", "nodes", perft(() -> new ChompState(6, 4), 5));
+        bench.run("DotsAndBoxesState.perft(4)", "nodes", perft(() -> new DotsAndBoxesState(3, 3), 4));
+        
+        bench.run("TicTacToeState.playout", "moves", playout(() -> new TicTacToeState(7, 7, 5)));
+        bench.run("ConnectFourState.playout", "moves", playout(ConnectFourState::new));
+        bench.run("PentagoState.playout", "moves", playout(PentagoState::new));
+        bench.run("ReversiState.playout", "moves", playout(() -> new ReversiState(8, 8)));
+        bench.run("CheckersState.playout", "moves", playout(CheckersState::new));
+        bench.run("ClobberState.playout", "moves", playout(() -> new ClobberState(5, 6)));
+        bench.run("AmazonsState.playout", "moves", playout(() -> new AmazonsState(10, 10)));
+        bench.run("ChompState.playout", "moves", playout(() -> new ChompState(6, 4)));
+        bench.run("DotsAndBoxesState.playout", "moves", playout(() -> new DotsAndBoxesState(10, 10)));
+        
+        bench.run("TicTacToe.game", "moves", RuleBenchmarks.<TicTacToe, TicTacToeState>games(
+                TicTacToe::new, () -> new TicTacToeState(7, 7, 5), TicTacToeState::apply));
+        bench.run("ConnectFour.game", "moves", RuleBenchmarks.<ConnectFour, ConnectFourState>games(
+                ConnectFour::new, ConnectFourState::new, ConnectFourState::apply));
+        bench.run("Reversi.game", "moves", RuleBenchmarks.<Reversi, ReversiState>games(
+                Reversi::new, () -> new ReversiState(8, 8), ReversiState::apply));
+        bench.run("Checkers.game", "moves", RuleBenchmarks.<Checkers, CheckersState>games(
+                Checkers::new, CheckersState::new, CheckersState::apply));
+        
+        bench.run("TicTacToe.checkWinAtPiece", "checks", checkWinAtPiece());
+    }
+    
+    /**
+     * Benchmarks enumeration of every position reachable within a fixed number of moves.
+     * @param start creates the starting position.
+     * @param depth the number of moves to search.
+     * @return a batch which performs a single enumeration, returning the number of nodes.
+     */
+    private static LongSupplier perft(Supplier<GameState> start, int depth) {
+        
+        GameState state = start.get();
+        int[][] moves = new int[depth + 1][state.getMaxMoves()];
+        
+        return () -> perft(state, depth, moves);
+    }
+    
+    /**
+     * @param state the position from which to search (restored upon return).
+     * @param depth the number of moves to search.
+     * @param moves a move buffer for each remaining level of the search.
+     * @return the number of nodes visited, including this one.
+     */
+    private static long perft(GameState state, int depth, int[][] moves) {
+        
+        if(depth == 0) return 1;
+        
+        int[] buffer = moves[depth];
+        int numMoves = state.legalMoves(buffer);
+        
+        long nodes = 1;
+        for(int i = 0; i < numMoves; i++) {
+            state.make(buffer[i]);
+            nodes += perft(state, depth - 1, moves);
+            state.unmake(buffer[i]);
+        }
+        return nodes;
+    }
+    
+    /**
+     * Benchmarks random playouts, which make moves until the game ends and then unmake them all.
+     * @param start creates the starting position.
+     * @return a batch which performs a single playout, returning the number of moves made.
+     */
+    private static LongSupplier playout(Supplier<GameState> start) {
+        
+        GameState state = start.get();
+        int[] moves = new int[state.getMaxMoves()], history = new int[MAX_PLAYOUT];
+        SplittableRandom random = new SplittableRandom(SEED);
+        
+        return () -> {
+            
+            //Play random moves until the game is over.
+            int length = 0, numMoves;
+            while(length < MAX_PLAYOUT && (numMoves = state.legalMoves(moves)) > 0) {
+                history[length] = moves[random.nextInt(numMoves)];
+                state.make(history[length++]);
+            }
+            Benchmark.consume(state.hash() + state.terminalResult());
+            
+            //Return to the starting position.
+            for(int i = length - 1; i >= 0; i--) state.unmake(history[i]);
+            return length;
+        };
+    }
+    
+    /**
+     * Benchmarks headless games which replay random games, chosen in advance using the state
+     * so as to leave only the work of the games themselves. Each is run to completion on the
+     * calling thread, with no time limit and no tournament, so no other threads are involved.
+     * @param game constructs a new game between two players.
+     * @param start creates the starting position of the game.
+     * @param apply plays a move in a game.
+     * @return a batch which replays several games, returning the number of moves made.
+     */
+    private static <G extends Game, S extends GameState> LongSupplier games(
+            BiFunction<Player<G>, Player<G>, G> game, Supplier<S> start, Move<G, S> apply) {
+        
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<int[]> sequences = new ArrayList<>();
+        for(int i = 0; i < GAMES_PER_BATCH; i++) sequences.add(randomGame(start.get(), random));
+        
+        //The moves are decoded using the dimensions of the board alone, so one state serves every game.
+        S state = start.get();
+        
+        return () -> {
+            
+            long numMoves = 0;
+            for(int[] moves : sequences) {
+                
+                ReplayPlayer<G, S> player = new ReplayPlayer<>(state, apply, moves);
+                List<Runnable> pending = new ArrayList<>();
+                G instance = construct(() -> game.apply(player, player), pending);
+                pending.get(0).run();
+                
+                if(player.next != moves.length) {
+                    throw new IllegalStateException("The game ended after " + player.next
+                            + " of " + moves.length + " moves.");
+                }
+                Benchmark.consume(instance.getWinnerId());
+                numMoves += moves.length;
+            }
+            return numMoves;
+        };
+    }
+    
+    /**
+     * Benchmarks TicTacToe's win detection, checking the stone at each position in turn.<br>
+     * The position is the last of a random game before it ended, so that no stone completes a streak.
+     * @return a batch which checks every stone on the board, returning the number of checks.
+     */
+    private static LongSupplier checkWinAtPiece() throws InterruptedException {
+        
+        TicTacToeState state = new TicTacToeState(7, 7, 5);
+        int[] moves = randomGame(new TicTacToeState(7, 7, 5), new SplittableRandom(SEED));
+        CountDownLatch waiting = new CountDownLatch(1);
+        
+        Player<TicTacToe> player = new Player<TicTacToe>() {
+            
+            private int next = 0;
+            
+            @Override
+            public void takeTurn(TicTacToe game, int playerId) {
+                
+                if(next < moves.length - 1) {
+                    state.apply(game, moves[next++]);
+                    return;
+                }
+                
+                //Leave the game waiting on this turn, so that the position doesn't change.
+                waiting.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        
+        List<Runnable> pending = new ArrayList<>();
+        WinChecker game = construct(() -> new WinChecker(player), pending);
+        Thread thread = new Thread(pending.get(0), "Game");
+        thread.setDaemon(true);
+        thread.start();
+        waiting.await();
+        
+        //Find the stones in advance, so as to time only the checks.
+        List<int[]> stones = new ArrayList<>();
+        for(int x = 0; x < game.getWidth(); x++) {
+            for(int y = 0; y < game.getHeight(); y++) {
+                if(game.getStone(x, y) != 0) stones.add(new int[] {game.getStone(x, y), x, y});
+            }
+        }
+        return () -> game.checkStones(stones);
+    }
+    
+    /**
+     * Plays random moves until the game ends.
+     * @param state the starting position, which is left at the end of the game.
+     * @param random the source of the moves.
+     * @return the moves played.
+     */
+    private static int[] randomGame(GameState state, SplittableRandom random) {
+        
+        int[] moves = new int[state.getMaxMoves()], history = new int[MAX_PLAYOUT];
+        int length = 0, numMoves;
+        while(length < MAX_PLAYOUT && (numMoves = state.legalMoves(moves)) > 0) {
+            history[length] = moves[random.nextInt(numMoves)];
+            state.make(history[length++]);
+        }
+        return Arrays.copyOf(history, length);
+    }
+    
+    /**
+     * Constructs a game without starting it, such that it may be run on the caller's choice of thread.
+     * @param constructor constructs the game.
+     * @param pending receives the task which plays the game.
+     * @return the game.
+     */
+    private static <G extends Game> G construct(Supplier<G> constructor, List<Runnable> pending) {
+        
+        Executor executor = Game.getExecutor();
+        Game.setExecutor(pending::add);
+        try {
+            return constructor.get();
+        } finally {
+            Game.setExecutor(executor);
+        }
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param <G> the game being played.
+     * @param <S> the state of the game.
+     */
+    private interface Move<G extends Game, S extends GameState> {
+        
+        /**
+         * @param state the current state of the game.
+         * @param game the game being played.
+         * @param move the move to play.
+         * @return whether the move was valid and successful.
+         */
+        boolean apply(S state, G game, int move);
+    }
+    
+    /**
+     * Player which replays a fixed sequence of moves, for both sides of the game.
+     * @param <G> the game being played.
+     * @param <S> the state of the game.
+     */
+    private static class ReplayPlayer<G extends Game, S extends GameState> implements Player<G> {
+        
+        private final S state;
+        private final Move<G, S> apply;
+        private final int[] moves;
+        
+        /** The index of the next move to be played. */
+        private int next = 0;
+        
+        private ReplayPlayer(S state, Move<G, S> apply, int[] moves) {
+            this.state = state;
+            this.apply = apply;
+            this.moves = moves;
+        }
+        
+        @Override
+        public void takeTurn(G game, int playerId) {
+            
+            if(next == moves.length || !apply.apply(state, game, moves[next++])) {
+                throw new IllegalStateException("The game rejected move " + next + " of " + moves.length + ".");
+            }
+        }
+    }
+    
+    /**
+     * TicTacToe game which exposes its win detection, to be benchmarked once a position has been set up.
+     */
+    private static class WinChecker extends TicTacToe {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private WinChecker(Player<TicTacToe> player) {
+            super(player, player);
+        }
+        
+        /**
+         * Checks whether each of the given stones completes a streak.
+         * @param stones the owner, x and y position of each stone.
+         * @return the number of stones checked.
+         */
+        private long checkStones(List<int[]> stones) {
+            
+            for(int[] stone : stones) checkWinAtPiece(stone[0], stone[1], stone[2]);
+            Benchmark.consume(getWinnerId());
+            return stones.size();
+        }
+    }
+}
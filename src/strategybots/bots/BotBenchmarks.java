@@ -0,0 +1,205 @@
+package strategybots.bots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import strategybots.bench.Benchmark;
+import strategybots.games.ConnectFour;
+import strategybots.games.ConnectFourState;
+import strategybots.games.DotsAndBoxes;
+import strategybots.games.ReversiState;
+import strategybots.games.base.Game;
+import strategybots.games.base.Game.Player;
+import strategybots.games.base.GameState;
+import strategybots.games.base.Telemetry;
+import strategybots.games.base.TileGame;
+
+/**
+ * Benchmarks of the hot paths inside the bots, complementing 'RuleBenchmarks'.<br>
+ * <br>
+ * - 'minimax' and 'negamax': nodes per second in a fixed-depth search from the starting position,
+ * with an empty transposition table and no time limit.<br>
+ * - 'heuristic': evaluations per second of each legal move in a set of random positions.<br>
+ * - 'rollout' and 'defaultPolicy': random playouts per second from a set of random positions.<br>
+ * <br>
+ * Lives alongside the bots, so as to reach the package-private hooks they expose for it.
+ * Random positions are chosen using a fixed seed, so each run does the same work.<br>
+ * Usage: BotBenchmarks [regex matching the benchmarks to run]
+ *
+ * @author Alec Dorrington
+ */
+public class BotBenchmarks {
+    
+    /** Seed used in choosing random positions. */
+    private static final long SEED = 0x5EED;
+    
+    /** The number of random positions in each set. */
+    private static final int NUM_POSITIONS = 64;
+    
+    public static void main(String[] args) throws InterruptedException {
+        
+        Benchmark bench = new Benchmark(args);
+        TileGame.setHeadless(true);
+        Telemetry.setVerbose(false);
+        
+        ConnectFour connectFour = waitingGame(ConnectFour::new);
+        SwagC4 swag = new SwagC4();
+        swag.init(connectFour, 1);
+        
+        List<ConnectFourState> c4Positions = positions(() -> new ConnectFourState(connectFour), 20);
+        
+        bench.run("SwagC4.minimax(9)", "nodes", () -> swag.searchToDepth(new ConnectFourState(connectFour), 9));
+        bench.run("SwagC4.heuristic", "evals", heuristic(swag, c4Positions));
+        
+        TipMCTS mcts = new TipMCTS(0, 1 << 10);
+        mcts.init(connectFour, 1);
+        
+        bench.run("TipMCTS.rollout", "playouts", () -> {
+            long playouts = 0;
+            for(ConnectFourState position : c4Positions) playouts += mcts.rollout(position)[3];
+            return playouts;
+        });
+        
+        TipOthello othello = new TipOthello();
+        List<int[][]> boards = new ArrayList<>();
+        List<Integer> players = new ArrayList<>();
+        for(ReversiState position : positions(() -> new ReversiState(8, 8), 40)) {
+            boards.add(toArray(position));
+            players.add(position.getCurrentPlayerId());
+        }
+        
+        bench.run("TipOthello.defaultPolicy", "playouts", () -> {
+            long playouts = 0;
+            for(int i = 0; i < boards.size(); i++) {
+                int[] result = othello.playouts(boards.get(i), players.get(i));
+                Benchmark.consume(result[1]);
+                playouts += result[0];
+            }
+            return playouts;
+        });
+        
+        //Boards with an even number of dots are avoided, as the bot's symmetric hashing fails on them.
+        DotsAndBoxes dotsAndBoxes = waitingGame((player1, player2) -> new DotsAndBoxes(5, 5, player1, player2));
+        TipDots3v4 dots = new TipDots3v4();
+        dots.init(dotsAndBoxes, 1);
+        
+        bench.run("TipDots3v4.negamax(4)", "nodes", () -> dots.searchToDepth(dotsAndBoxes, 1, 4));
+        
+        swag.gameEnd(connectFour, 1, 0);
+        mcts.gameEnd(connectFour, 1, 0);
+    }
+    
+    /**
+     * Benchmarks SwagC4's heuristic, evaluating the stone placed by each legal move in turn.
+     * @param swag the bot, once initialised.
+     * @param positions the positions in which to evaluate each move.
+     * @return a batch which evaluates every move of every position, returning the number of evaluations.
+     */
+    private static LongSupplier heuristic(SwagC4 swag, List<ConnectFourState> positions) {
+        
+        int[] moves = new int[positions.get(0).getMaxMoves()];
+        
+        return () -> {
+            
+            long evaluations = 0;
+            for(ConnectFourState position : positions) {
+                
+                int playerId = position.getCurrentPlayerId();
+                int numMoves = position.legalMoves(moves);
+                
+                for(int i = 0; i < numMoves; i++) {
+                    int x = moves[i];
+                    position.make(x);
+                    Benchmark.consume(swag.heuristic(position, playerId, x, position.getStackHeight(x)-1));
+                    position.unmake(x);
+                    evaluations++;
+                }
+            }
+            return evaluations;
+        };
+    }
+    
+    /**
+     * Starts a headless game in the background, for use in initialising a bot,
+     * returning once the game has been set up and is waiting for its first move.
+     * That move is never made, so the position doesn't change.
+     * @param constructor constructs the game between two players.
+     * @return the game.
+     */
+    private static <G extends Game> G waitingGame(BiFunction<Player<G>, Player<G>, G> constructor)
+            throws InterruptedException {
+        
+        CountDownLatch waiting = new CountDownLatch(1);
+        Player<G> player = (game, playerId) -> {
+            waiting.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        
+        //Only start the game once it has been fully constructed.
+        List<Runnable> pending = new ArrayList<>();
+        Executor executor = Game.getExecutor();
+        Game.setExecutor(pending::add);
+        G game;
+        try {
+            game = constructor.apply(player, player);
+        } finally {
+            Game.setExecutor(executor);
+        }
+        
+        Thread thread = new Thread(pending.get(0), "Game");
+        thread.setDaemon(true);
+        thread.start();
+        waiting.await();
+        return game;
+    }
+    
+    /**
+     * Plays random moves to create a set of positions, none of which are over.
+     * @param start creates the starting position.
+     * @param maxMoves the greatest number of moves to play from the starting position.
+     * @return the positions.
+     */
+    private static <S extends GameState> List<S> positions(Supplier<S> start, int maxMoves) {
+        
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<S> positions = new ArrayList<>();
+        
+        while(positions.size() < NUM_POSITIONS) {
+            
+            S position = start.get();
+            int[] moves = new int[position.getMaxMoves()];
+            int length = random.nextInt(maxMoves + 1), numMoves;
+            
+            for(int i = 0; i < length && (numMoves = position.legalMoves(moves)) > 0; i++) {
+                position.make(moves[random.nextInt(numMoves)]);
+            }
+            if(position.legalMoves(moves) > 0) positions.add(position);
+        }
+        return positions;
+    }
+    
+    /**
+     * @param state a Reversi position.
+     * @return the owner of the disc at each position [x][y], or 0 if empty.
+     */
+    private static int[][] toArray(ReversiState state) {
+        
+        int[][] board = new int[state.getWidth()][state.getHeight()];
+        for(int x = 0; x < state.getWidth(); x++) {
+            for(int y = 0; y < state.getHeight(); y++) {
+                board[x][y] = state.get(x, y);
+            }
+        }
+        return board;
+    }
+}
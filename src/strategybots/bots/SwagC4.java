@@ -2,8 +2,22 @@ package strategybots.bots;
 
 import static java.lang.Math.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import strategybots.games.ConnectFour;
+import strategybots.games.ConnectFourState;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.MoveOrdering;
+import strategybots.games.base.Ponderer;
+import strategybots.games.base.SearchClock;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.TranspositionTable;
 
 public class SwagC4 implements Player<ConnectFour> {
     
@@ -14,10 +28,37 @@ public class SwagC4 implements Player<ConnectFour> {
     private int turn = 1;
     private long time = 2000;
     
+    //Score of a win, plus the remaining depth at which it occurs (so sooner wins score higher).
+    private static final int WIN = 1 << 20;
+    
+    //Results of previous searches, kept between turns and shared by all threads.
+    private TranspositionTable table;
+    
+    //Columns in the order they are tried.
+    private int[] order;
+    
+    //Lazy SMP: helper threads search the same position at staggered depths,
+    //filling the shared table with results which speed up the main search.
+    private int numThreads = 1;
+    private Search[] searches;
+    private ExecutorService helpers;
+    private volatile boolean stopped;
+    
+    //Pondering: once moved, keep searching the opponent's position until our next turn,
+    //filling the table with results for whichever reply they make.
+    private boolean pondering = false;
+    private Search ponderSearch;
+    private Ponderer ponderer;
+    
     public SwagC4() {}
     
     public SwagC4(long time) { this.time = time; }
     
+    public SwagC4(long time, int numThreads) {
+        this.time = time;
+        this.numThreads = numThreads;
+    }
+    
     @Override
     public void init(ConnectFour game, int playerId) {
         
@@ -26,98 +67,282 @@ public class SwagC4 implements Player<ConnectFour> {
         width = game.getWidth();
         height = game.getHeight();
         target = game.getTarget();
+        table = new TranspositionTable(20);
+        
+        //Central columns are part of more lines, so are tried first.
+        order = new int[width];
+        for(int i = 0; i < width; i++) {
+            order[i] = width/2 + ((i%2==0) ? i/2 : -(i+1)/2);
+        }
+        
+        searches = new Search[numThreads];
+        for(int i = 0; i < numThreads; i++) searches[i] = new Search(i);
+        ponderSearch = new Search(0);
+        ponderer = new Ponderer(getName() + " ponderer");
+        
+        if(numThreads > 1) {
+            helpers = Executors.newFixedThreadPool(numThreads - 1, r -> {
+                Thread thread = new Thread(r, getName() + " helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     @Override
     public void takeTurn(ConnectFour game, int playerId) {
+        takeTurn(game, playerId, Deadline.none());
+    }
+    
+    @Override
+    public void takeTurn(ConnectFour game, int playerId, Deadline deadline) {
+        
+        ponderer.stop();
+        deadline = deadline.limit(time);
+        SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
         
-        long start = System.currentTimeMillis();
-        int[] move = getMove();
+        ConnectFourState state = new ConnectFourState(game);
+        int[] move = getMove(state, deadline);
         game.placeStone(move[1]);
-        printStats(move[0], move[1], move[2], start);
+        
+        stats.setMove("Column " + (move[1]+1));
+        stats.setScore(move[0]);
+        stats.setDepth(move[2]);
+        for(Search search : searches) {
+            stats.addNodes(search.nodes);
+            stats.addExpansions(search.expansions, search.nodes);
+            stats.addTtProbes(search.ttProbes, search.ttHits);
+        }
+        stats.finish();
+        
+        if(pondering) ponder(state, move[1]);
+        searches[0].clock.finish();
+    }
+    
+    @Override
+    public void gameEnd(ConnectFour game, int playerId, int winnerId) {
+        ponderer.shutdown();
+        if(helpers != null) helpers.shutdownNow();
     }
     
-    private int[] getMove() {
+    /**
+     * @param numThreads the number of threads with which to search (default 1),
+     * taking effect from the next game.
+     */
+    public void setNumThreads(int numThreads) { this.numThreads = numThreads; }
+    
+    /**
+     * @param pondering whether to keep searching on the opponent's time (default false).
+     */
+    public void setPondering(boolean pondering) { this.pondering = pondering; }
+    
+    //Searches a position to a fixed depth on the calling thread, with an empty table and no time limit.
+    //Returns the number of nodes visited. For benchmarking, once initialised.
+    long searchToDepth(ConnectFourState state, int depth) {
         
-        int score = 0, move = -1, depth = 1;
-        int maxDepth = width * height;
-        long start = System.currentTimeMillis();
+        Search search = searches[0];
+        table.clear();
+        search.reset(state, state.getCurrentPlayerId(), Deadline.none());
+        search.rootDepth = depth;
+        search.minimax(search.state, state.getCurrentPlayerId(), depth, 0,
+                -Integer.MAX_VALUE, Integer.MAX_VALUE);
+        return search.nodes;
+    }
+    
+    private int[] getMove(ConnectFourState state, Deadline deadline) {
         
-        int[][] board = getBoard();
-        int[] heights = getHeights();
+        table.newSearch();
+        stopped = false;
+        for(Search search : searches) search.reset(state, playerId, deadline);
         
-        for(; depth < maxDepth; depth++) {
-            
-            int[] result = minimax(board, heights, playerId, depth, 0,
-                    -Integer.MAX_VALUE, Integer.MAX_VALUE);
-            score = result[0];
-            move = result[1];
-            
-            if(System.currentTimeMillis()-start > time) break;
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            futures.add(helpers.submit(() -> helper.iterate()));
         }
-        return new int[] {score, move, depth};
+        
+        int[] result = searches[0].iterate();
+        
+        //Wait for the helpers to abandon their searches, so none outlive the turn.
+        stopped = true;
+        try {
+            for(Future<?> future : futures) future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+    
+    //Searches the position faced by the opponent, until stopped at the beginning of our next turn.
+    private void ponder(ConnectFourState state, int move) {
+        
+        ConnectFourState next = state.copy();
+        next.make(move);
+        if(next.terminalResult() != ConnectFourState.IN_PROGRESS) return;
+        
+        ponderer.start(deadline -> {
+            table.newSearch();
+            ponderSearch.reset(next, playerId%2+1, deadline);
+            ponderSearch.iterate();
+        });
     }
     
-    private int[] minimax(int[][] board, int heights[], int playerId,
-            int depth, int heuristic, int a, int b) {
+    /**
+     * The state of the search being run by a single thread.
+     */
+    private class Search {
+        
+        private final int id;
+        
+        private final MoveOrdering ordering = new MoveOrdering(width, 2, width * height);
+        private ConnectFourState state;
+        private int rootPlayer, rootDepth;
+        
+        //Set once the iteration has been abandoned, after which its results are meaningless.
+        private final SearchClock clock = new SearchClock();
+        private boolean aborted;
+        
+        private long nodes, expansions, ttProbes, ttHits;
         
-        int score = 0, move = -1;
+        Search(int id) { this.id = id; }
         
-        for(int x = 0; x < width; x++) {
+        void reset(ConnectFourState state, int rootPlayer, Deadline deadline) {
+            this.state = state.copy();
+            this.rootPlayer = rootPlayer;
+            ordering.newSearch();
+            clock.reset(deadline);
+            aborted = false;
+            nodes = expansions = ttProbes = ttHits = 0;
+        }
+        
+        int[] iterate() {
             
-            if(heights[x] >= height) continue;
-            board[x][heights[x]++] = playerId;
-             
-            if(checkWin(board, playerId, x, heights[x]-1)) {
-                board[x][--heights[x]] = 0;
-                return new int[] {depth*1000, x};
-            }
+            int score = 0, move = -1, depth = 1, completed = 0;
+            int maxDepth = width * height;
             
-            int h = heuristic + heuristic(board, playerId, x, heights[x]-1);
-            int s = depth<=1 ? h :
-                -minimax(board, heights, playerId%2+1, depth-1, -h, -b, -a)[0];
+            //Odd helpers start a ply deeper, so the threads' searches diverge.
+            //The main thread stops once out of time, or when the next iteration wouldn't finish.
+            //Helpers stop once the main thread has, and pondering once stopped by our next turn.
+            for(depth += id%2; depth < maxDepth; depth++) {
+                
+                if(id == 0 && !clock.startIteration()) break;
+                rootDepth = depth;
+                int[] result = minimax(state, rootPlayer, depth, 0,
+                        -Integer.MAX_VALUE, Integer.MAX_VALUE);
+                if(aborted) break;
+                score = result[0];
+                move = result[1];
+                completed = depth;
+            }
             
-            if(s > score || move == -1) {
-                score = s;
-                move = x;
-                a = score>a ? score:a;
+            //Should even the first iteration be abandoned, play the most central column with room.
+            for(int i = 0; move == -1 && i < width; i++) {
+                if(state.getStackHeight(order[i]) < height) move = order[i];
             }
-            board[x][--heights[x]] = 0;
-            if(a >= b) break;
+            return new int[] {score, move, completed};
         }
-        return new int[] {score, move};
-    }
-    
-    private final int[][] dirs = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
-    private final int[] signs = new int[] {-1, 1};
-    
-    private boolean checkWin(int[][] board, int playerId, int x, int y) {
         
-        for(int[] dir : dirs) {
+        //Whether to abandon the iteration: helpers once stopped, the main thread once out of time.
+        private boolean abort() {
+            if(!aborted) aborted = id > 0 ? stopped : clock.poll();
+            return aborted;
+        }
+        
+        private int[] minimax(ConnectFourState state, int playerId,
+                int depth, int heuristic, int a, int b) {
+            
+            if(abort()) return new int[] {0, -1};
+            
+            int score = 0, move = -1, alpha = a;
+            expansions++;
             
-            int streak = 1;
+            //Reuse the result of an earlier search of this position, if deep enough.
+            //Otherwise, try its best move first.
+            long key = state.hash();
+            long entry = table.probe(key);
+            int bestMove = entry != 0 ? TranspositionTable.move(entry) : -1;
+            ttProbes++;
             
-            for(int sign : signs) {
+            if(entry != 0) {
                 
-                for(int i = 1; i < target; i++) {
-                    
-                    int xx = x+i*dir[0]*sign;
-                    int yy = y+i*dir[1]*sign;
-                    
-                    if(xx < 0 || xx >= width) break;
-                    if(yy < 0 || yy >= height) break;
-                    
-                    if(board[xx][yy] != playerId) break;
-                    
-                    streak++;
+                ttHits++;
+                int flag = TranspositionTable.flag(entry);
+                int s = fromTable(TranspositionTable.score(entry), depth, heuristic);
+                
+                if(depth < rootDepth && TranspositionTable.depth(entry) >= depth
+                        && (flag == TranspositionTable.EXACT
+                        || flag == TranspositionTable.LOWER && s >= b
+                        || flag == TranspositionTable.UPPER && s <= a)) {
+                    return new int[] {s, bestMove};
+                }
+            }
+            
+            int ply = rootDepth - depth;
+            int[] moves = ordering.getMoves(ply);
+            int numMoves = 0;
+            
+            //Take an immediate win if there is one, before searching any other move.
+            for(int x : order) {
+                
+                if(state.getStackHeight(x) >= height) continue;
+                
+                if(state.isWinningMove(x)) {
+                    nodes++;
+                    return new int[] {WIN + depth, x};
+                }
+                moves[numMoves++] = x;
+            }
+            ordering.score(ply, playerId, bestMove, numMoves);
+            
+            for(int i = 0; i < numMoves; i++) {
+                
+                int x = ordering.next(ply, i, numMoves);
+                nodes++;
+                state.make(x);
+                
+                int h = heuristic + heuristic(state, playerId, x, state.getStackHeight(x)-1);
+                int s = depth<=1 ? h :
+                    -minimax(state, playerId%2+1, depth-1, -h, -b, -a)[0];
+                state.unmake(x);
+                if(aborted) return new int[] {0, -1};
+                
+                if(s > score || move == -1) {
+                    score = s;
+                    move = x;
+                    a = score>a ? score:a;
+                }
+                if(a >= b) {
+                    ordering.cutoff(ply, playerId, x, depth);
+                    break;
                 }
             }
-            if(streak >= target) return true;
+            
+            //A full board is a draw, whose score doesn't depend on the heuristic.
+            if(move != -1) {
+                int flag = score <= alpha ? TranspositionTable.UPPER
+                        : score >= b ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+                table.store(key, depth, flag, toTable(score, depth, heuristic), move);
+            }
+            return new int[] {score, move};
         }
-        return false;
     }
     
-    private int heuristic(int[][] board, int playerId, int x, int y) {
+    //Scores accumulate the heuristic along the path searched, so are stored relative to it.
+    //Wins and losses are instead stored relative to the remaining depth.
+    private static int toTable(int score, int depth, int heuristic) {
+        return score >= WIN/2 ? score - depth : score <= -WIN/2 ? score + depth : score - heuristic;
+    }
+    
+    private static int fromTable(int score, int depth, int heuristic) {
+        return score >= WIN/2 ? score + depth : score <= -WIN/2 ? score - depth : score + heuristic;
+    }
+    
+    private final int[][] dirs = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
+    
+    //Scores the lines through the stone at (x, y) for the given player. Visible for benchmarking.
+    int heuristic(ConnectFourState state, int playerId, int x, int y) {
         
         int score = 0;
         
@@ -134,16 +359,16 @@ public class SwagC4 implements Player<ConnectFour> {
                 int xx = v0[0] + dir[0]*i;
                 int yy = v0[1] + dir[1]*i;
                 
-                if(board[xx][yy] == playerId) myPieces++;
-                else if(board[xx][yy] != 0) otherPieces++;
+                if(state.get(xx, yy) == playerId) myPieces++;
+                else if(state.get(xx, yy) != 0) otherPieces++;
                 
                 if (i >= target) {
                     
                     int xx_end = xx - dir[0]*target;
                     int yy_end = yy - dir[1]*target;
                     
-                    if(board[xx_end][yy_end] == playerId) myPieces--;
-                    else if(board[xx_end][yy_end] != 0) otherPieces--;
+                    if(state.get(xx_end, yy_end) == playerId) myPieces--;
+                    else if(state.get(xx_end, yy_end) != 0) otherPieces--;
                 }
                 
                 if(i >= target-1) {
@@ -177,36 +402,6 @@ public class SwagC4 implements Player<ConnectFour> {
         };
     }
     
-    private int[][] getBoard() {
-        
-        int[][] board = new int[width][height];
-        game.forEachPosition((x, y) -> board[x][y] = game.getStone(x, y));
-        return board;
-    }
-    
-    private int[] getHeights() {
-        
-        int[] heights = new int[width];
-        for(int x = 0; x < width; x++) {
-            heights[x] = game.getStackHeight(x);
-        }
-        return heights;
-    }
-    
-    private void printStats(int score, int move, int depth, long start) {
-        
-        System.out.println("=======================");
-        System.out.println("SwagC4 Statistics:");
-        System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        System.out.println("Turn:        " + turn++);
-        System.out.println("Expectation: " + score);
-        System.out.println("Column:      " + (move+1));
-        System.out.println("Depth:       " + depth);
-        System.out.println("Time:        "
-                + (System.currentTimeMillis() - start) + "ms");
-    }
-    
     @Override
     public String getName() { return "SwagC4"; }
 }
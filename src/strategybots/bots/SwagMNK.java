@@ -2,8 +2,23 @@ package strategybots.bots;
 
 import static java.lang.Math.*;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
 import strategybots.games.TicTacToe;
+import strategybots.games.TicTacToeState;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.MoveOrdering;
+import strategybots.games.base.SearchClock;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.TranspositionTable;
 
 public class SwagMNK implements Player<TicTacToe> {
     
@@ -14,10 +29,31 @@ public class SwagMNK implements Player<TicTacToe> {
     private int turn = 1;
     private long time = 2000;
     
+    //Score of a win, plus the remaining depth at which it occurs (so sooner wins score higher).
+    private static final int WIN = 1 << 20;
+    
+    //Results of previous searches, kept between turns and shared by all threads.
+    private TranspositionTable table;
+    
+    //Cells in the order they are tried.
+    private int[] order;
+    
+    //Lazy SMP: helper threads search the same position at staggered depths,
+    //filling the shared table with results which speed up the main search.
+    private int numThreads = 1;
+    private Search[] searches;
+    private ExecutorService helpers;
+    private volatile boolean stopped;
+    
     public SwagMNK() {}
     
     public SwagMNK(long time) { this.time = time; }
     
+    public SwagMNK(long time, int numThreads) {
+        this.time = time;
+        this.numThreads = numThreads;
+    }
+    
     @Override
     public void init(TicTacToe game, int playerId) {
         
@@ -26,101 +62,243 @@ public class SwagMNK implements Player<TicTacToe> {
         width = game.getWidth();
         height = game.getHeight();
         target = game.getTarget();
+        table = new TranspositionTable(20);
+        
+        //Central cells are part of more lines, so are tried first.
+        order = IntStream.range(0, width * height).boxed()
+                .sorted(Comparator.comparingInt(i -> centreDistance(i / height, i % height)))
+                .mapToInt(i -> i).toArray();
+        
+        searches = new Search[numThreads];
+        for(int i = 0; i < numThreads; i++) searches[i] = new Search(i);
+        
+        if(numThreads > 1) {
+            helpers = Executors.newFixedThreadPool(numThreads - 1, r -> {
+                Thread thread = new Thread(r, getName() + " helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     @Override
     public void takeTurn(TicTacToe game, int playerId) {
+        takeTurn(game, playerId, Deadline.none());
+    }
+    
+    @Override
+    public void takeTurn(TicTacToe game, int playerId, Deadline deadline) {
+        
+        deadline = deadline.limit(time);
+        SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
         
-        long start = System.currentTimeMillis();
-        int[] move = getMove();
+        int[] move = getMove(deadline);
         game.placeStone(move[1], move[2]);
-        printStats(move[0], move[1], move[2], move[3], start);
+        
+        stats.setMove("(" + (move[1]+1) + ", " + (move[2]+1) + ")");
+        stats.setScore(move[0]);
+        stats.setDepth(move[3]);
+        for(Search search : searches) {
+            stats.addNodes(search.nodes);
+            stats.addExpansions(search.expansions, search.nodes);
+            stats.addTtProbes(search.ttProbes, search.ttHits);
+        }
+        stats.finish();
+        searches[0].clock.finish();
+    }
+    
+    @Override
+    public void gameEnd(TicTacToe game, int playerId, int winnerId) {
+        if(helpers != null) helpers.shutdownNow();
     }
     
-    private int[] getMove() {
+    /**
+     * @param numThreads the number of threads with which to search (default 1),
+     * taking effect from the next game.
+     */
+    public void setNumThreads(int numThreads) { this.numThreads = numThreads; }
+    
+    private int[] getMove(Deadline deadline) {
         
-        int score = 0, moveX = -1, moveY = -1, depth = 1;
-        int maxDepth = width * height;
-        long start = System.currentTimeMillis();
+        table.newSearch();
+        stopped = false;
+        for(Search search : searches) search.reset(deadline);
         
-        int[][] board = getBoard();
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            futures.add(helpers.submit(() -> helper.iterate()));
+        }
         
-        for(; depth < maxDepth; depth++) {
-            
-            int[] result = minimax(board, playerId, depth, 0,
-                    -Integer.MAX_VALUE, Integer.MAX_VALUE);
-            score = result[0];
-            moveX = result[1];
-            moveY = result[2];
-            
-            if(System.currentTimeMillis()-start > time) break;
+        int[] result = searches[0].iterate();
+        
+        //Wait for the helpers to abandon their searches, so none outlive the turn.
+        stopped = true;
+        try {
+            for(Future<?> future : futures) future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
-        return new int[] {score, moveX, moveY, depth};
+        return result;
     }
     
-    private int[] minimax(int[][] board, int playerId,
-            int depth, int heuristic, int a, int b) {
+    /**
+     * The state of the search being run by a single thread.
+     */
+    private class Search {
+        
+        private final int id;
+        
+        private final MoveOrdering ordering = new MoveOrdering(width * height, 2, width * height);
+        private TicTacToeState state;
+        private int rootDepth;
+        
+        //Set once the iteration has been abandoned, after which its results are meaningless.
+        private final SearchClock clock = new SearchClock();
+        private boolean aborted;
+        
+        private long nodes, expansions, ttProbes, ttHits;
+        
+        Search(int id) { this.id = id; }
+        
+        void reset(Deadline deadline) {
+            state = new TicTacToeState(game);
+            ordering.newSearch();
+            clock.reset(deadline);
+            aborted = false;
+            nodes = expansions = ttProbes = ttHits = 0;
+        }
+        
+        int[] iterate() {
+            
+            int score = 0, move = -1, depth = 1, completed = 0;
+            int maxDepth = width * height;
+            
+            //Odd helpers start a ply deeper, so the threads' searches diverge.
+            //The main thread stops once out of time, or when the next iteration wouldn't finish.
+            //Helpers stop once the main thread has.
+            for(depth += id%2; depth < maxDepth; depth++) {
+                
+                if(id == 0 && !clock.startIteration()) break;
+                rootDepth = depth;
+                int[] result = minimax(state, playerId, depth, 0,
+                        -Integer.MAX_VALUE, Integer.MAX_VALUE);
+                if(aborted) break;
+                score = result[0];
+                move = result[1];
+                completed = depth;
+            }
+            
+            //Should even the first iteration be abandoned, play on the first empty tile.
+            for(int i = 0; move == -1 && i < width * height; i++) {
+                if(state.get(i) == 0) move = i;
+            }
+            return new int[] {score, move / height, move % height, completed};
+        }
         
-        int score = 0, moveX = -1, moveY = -1;
+        //Whether to abandon the iteration: helpers once stopped, the main thread once out of time.
+        private boolean abort() {
+            if(!aborted) aborted = id > 0 ? stopped : clock.poll();
+            return aborted;
+        }
         
-        for(int x = 0; x < width; x++) {
-            for(int y = 0; y < height; y++) {
+        private int[] minimax(TicTacToeState state, int playerId,
+                int depth, int heuristic, int a, int b) {
+            
+            if(abort()) return new int[] {0, -1};
+            
+            int score = 0, move = -1, alpha = a;
+            expansions++;
+            
+            //Reuse the result of an earlier search of this position, if deep enough.
+            //Otherwise, try its best move first.
+            long key = state.hash();
+            long entry = table.probe(key);
+            int bestMove = entry != 0 ? TranspositionTable.move(entry) : -1;
+            ttProbes++;
+            
+            if(entry != 0) {
+                
+                ttHits++;
+                int flag = TranspositionTable.flag(entry);
+                int s = fromTable(TranspositionTable.score(entry), depth, heuristic);
+                
+                if(depth < rootDepth && TranspositionTable.depth(entry) >= depth
+                        && (flag == TranspositionTable.EXACT
+                        || flag == TranspositionTable.LOWER && s >= b
+                        || flag == TranspositionTable.UPPER && s <= a)) {
+                    return new int[] {s, bestMove};
+                }
+            }
+            
+            int ply = rootDepth - depth;
+            int[] moves = ordering.getMoves(ply);
+            int numMoves = 0;
+            
+            for(int index : order) {
+                if(state.get(index) == 0) moves[numMoves++] = index;
+            }
+            ordering.score(ply, playerId, bestMove, numMoves);
+            
+            for(int i = 0; i < numMoves; i++) {
                 
-                if(board[x][y] != 0) continue;
-                board[x][y] = playerId;
-                 
-                if(checkWin(board, playerId, x, y)) {
-                    board[x][y] = 0;
-                    return new int[] {depth*1000, x, y};
+                int index = ordering.next(ply, i, numMoves);
+                state.make(index);
+                nodes++;
+                
+                if(state.terminalResult() == playerId) {
+                    state.unmake(index);
+                    return new int[] {WIN + depth, index};
                 }
                 
-                int h = heuristic + heuristic(board, playerId, x, y);
+                int h = heuristic + heuristic(state, playerId, index / height, index % height);
                 int s = depth<=1 ? h :
-                    -minimax(board, playerId%2+1, depth-1, -h, -b, -a)[0];
+                    -minimax(state, playerId%2+1, depth-1, -h, -b, -a)[0];
+                state.unmake(index);
+                if(aborted) return new int[] {0, -1};
                 
-                if(s > score || moveX == -1) {
+                if(s > score || move == -1) {
                     score = s;
-                    moveX = x;
-                    moveY = y;
+                    move = index;
                     a = score>a ? score:a;
                 }
-                board[x][y] = 0;
-                if(a >= b) break;
+                if(a >= b) {
+                    ordering.cutoff(ply, playerId, index, depth);
+                    break;
+                }
             }
+            
+            //A full board is a draw, whose score doesn't depend on the heuristic.
+            if(move != -1) {
+                int flag = score <= alpha ? TranspositionTable.UPPER
+                        : score >= b ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+                table.store(key, depth, flag, toTable(score, depth, heuristic), move);
+            }
+            return new int[] {score, move};
         }
-        return new int[] {score, moveX, moveY};
     }
     
-    private final int[][] dirs = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
-    private final int[] signs = new int[] {-1, 1};
+    //Scores accumulate the heuristic along the path searched, so are stored relative to it.
+    //Wins and losses are instead stored relative to the remaining depth.
+    private static int toTable(int score, int depth, int heuristic) {
+        return score >= WIN/2 ? score - depth : score <= -WIN/2 ? score + depth : score - heuristic;
+    }
     
-    private boolean checkWin(int[][] board, int playerId, int x, int y) {
-        
-        for(int[] dir : dirs) {
-            
-            int streak = 1;
-            
-            for(int sign : signs) {
-                
-                for(int i = 1; i < target; i++) {
-                    
-                    int xx = x+i*dir[0]*sign;
-                    int yy = y+i*dir[1]*sign;
-                    
-                    if(xx < 0 || xx >= width) break;
-                    if(yy < 0 || yy >= height) break;
-                    
-                    if(board[xx][yy] != playerId) break;
-                    
-                    streak++;
-                }
-            }
-            if(streak >= target) return true;
-        }
-        return false;
+    private static int fromTable(int score, int depth, int heuristic) {
+        return score >= WIN/2 ? score + depth : score <= -WIN/2 ? score - depth : score + heuristic;
+    }
+    
+    //Squared distance (in half-cells) of a cell from the centre of the board.
+    private int centreDistance(int x, int y) {
+        int dx = 2*x - (width-1), dy = 2*y - (height-1);
+        return dx*dx + dy*dy;
     }
     
-    private int heuristic(int[][] board, int playerId, int x, int y) {
+    private final int[][] dirs = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
+    
+    private int heuristic(TicTacToeState state, int playerId, int x, int y) {
         
         int score = 0;
         
@@ -137,16 +315,16 @@ public class SwagMNK implements Player<TicTacToe> {
                 int xx = v0[0] + dir[0]*i;
                 int yy = v0[1] + dir[1]*i;
                 
-                if(board[xx][yy] == playerId) myPieces++;
-                else if(board[xx][yy] != 0) otherPieces++;
+                if(state.get(xx, yy) == playerId) myPieces++;
+                else if(state.get(xx, yy) != 0) otherPieces++;
                 
                 if (i >= target) {
                     
                     int xx_end = xx - dir[0]*target;
                     int yy_end = yy - dir[1]*target;
                     
-                    if(board[xx_end][yy_end] == playerId) myPieces--;
-                    else if(board[xx_end][yy_end] != 0) otherPieces--;
+                    if(state.get(xx_end, yy_end) == playerId) myPieces--;
+                    else if(state.get(xx_end, yy_end) != 0) otherPieces--;
                 }
                 
                 if(i >= target-1) {
@@ -180,27 +358,6 @@ public class SwagMNK implements Player<TicTacToe> {
         };
     }
     
-    private int[][] getBoard() {
-        
-        int[][] board = new int[width][height];
-        game.forEachPosition((x, y) -> board[x][y] = game.getStone(x, y));
-        return board;
-    }
-    
-    private void printStats(int score, int moveX, int moveY, int depth, long start) {
-        
-        System.out.println("=======================");
-        System.out.println("SwagMNK Statistics:");
-        System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        System.out.println("Turn:        " + turn++);
-        System.out.println("Expectation: " + score);
-        System.out.println("Position:    (" + (moveX+1) + ", " + (moveY+1) + ")");
-        System.out.println("Depth:       " + depth);
-        System.out.println("Time:        "
-                + (System.currentTimeMillis() - start) + "ms");
-    }
-    
     @Override
     public String getName() { return "SwagMNK"; }
 }
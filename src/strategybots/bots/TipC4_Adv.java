@@ -5,7 +5,11 @@ import java.util.Optional;
 import java.util.Random;
 
 import strategybots.games.ConnectFour;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.SearchTree;
+import strategybots.games.base.Telemetry;
 
 public class TipC4_Adv implements Player<ConnectFour> {
     
@@ -18,74 +22,89 @@ public class TipC4_Adv implements Player<ConnectFour> {
     private static int globalSims = 0;
     private static Random rand = new Random();
     
-    private Node root = null;
+    // The tree is stored in arrays rather than as objects, and can grow up to maxNodes
+    private int maxNodes = 1 << 22;
+    private SearchTree tree;
+    private int root = SearchTree.NONE;
+    
+    // The bitmaps at the root of the tree, as nodes only store the move leading to them
+    private long rootPosition, rootMask;
     
     public TipC4_Adv() {}
     
     public TipC4_Adv(long time) { this.time = time; }
+    
+    public TipC4_Adv(long time, int maxNodes) {
+    	this.time = time;
+    	this.maxNodes = maxNodes;
+    }
         
     @Override
     public void init(ConnectFour game, int playerId) {
         this.game = game;
         b = game.getWidth();
+        
+        // There must always be space for the root and its children
+        tree = new SearchTree(2, Math.max(maxNodes, b + 1));
     }
 
     @Override
     public void takeTurn(ConnectFour game, int playerId) {
+        takeTurn(game, playerId, Deadline.none());
+    }
+    
+    @Override
+    public void takeTurn(ConnectFour game, int playerId, Deadline deadline) {
+        
+        deadline = deadline.limit(time);
+        SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
         
-        long start = System.currentTimeMillis();
-                        
-        int move = bestMove(getBoard(), playerId);
+        int move = bestMove(getBoard(), playerId, deadline, stats);
         
-        root = root.getChildren()[move];
+        root = tree.getChild(root, move);
+        rootPosition ^= rootMask;
+        rootMask |= (rootMask + (1l << (move * 7)));
         
         game.placeStone(move);
         
-        System.out.println("=======================");
-        System.out.println("TipC4_Adv Statistics:");
-        System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        System.out.println("Turn:        " + turn++);
-        //System.out.println("Expectation: " + move[0]);
-        System.out.println("Column:      " + (move+1));
-        //System.out.println("Depth:       " + move[2]);
-        System.out.println("Global Sims: " + globalSims);
-        System.out.println("Time:        "
-                + (System.currentTimeMillis() - start) + "ms");
+        stats.setMove("Column " + (move+1));
+        stats.finish();
     }
     
-    private int bestMove(int[][] board, int playerId) {
-        
-        long start = System.currentTimeMillis();
+    /**
+     * @param maxNodes the greatest number of nodes in the tree (default 2^22), taking effect next game.
+     */
+    public void setMaxNodes(int maxNodes) { this.maxNodes = maxNodes; }
+    
+    private int bestMove(int[][] board, int playerId, Deadline deadline, SearchStats stats) {
         
         globalSims = 0;
         
-        if (root == null) {
-        	root = new Node(board, 3-playerId, 0, 0);
+        long[] boardBitmaps = getBitmaps(board, 3-playerId);
+        root = rebaseTree(boardBitmaps);
+        if (root == SearchTree.NONE) {
+        	root = tree.newRoot(3-playerId);
+        	rootPosition = boardBitmaps[0];
+        	rootMask = boardBitmaps[1];
         } else {
-        	System.out.println(root);
-        	rebaseTree(root, board, 3-playerId);
-        	globalSims = root.sims;
-        	System.out.println(root);
+        	globalSims = tree.getVisits(root);
         }
         
         //root = new Node(board, 3-playerId, 0, 0);
        
-        root.populateChildren();
+        int startSims = globalSims;
+        populateChildren(root, rootPosition, rootMask);
         //System.out.println(root.children[0]);
         
-        while (System.currentTimeMillis()-start < time) { 
+        while (!deadline.expired()) { 
         	// Do one iteration
-        	MCTS_rec(root, 0);
+        	MCTS_rec(root, rootPosition, rootMask, 0);
         }
+        stats.addSimulations(globalSims - startSims);
 
-        for (Node child : root.children) {
+        if (Telemetry.isVerbose()) for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
         	
-        	if (child == null) {
-        		System.out.println("Root's Child is null");
-        	} else {
-        		System.out.println("Root's Child has [" + child.wins[1] + " / " + child.wins[2] + "] of " + child.sims);
-        	}
+        	System.out.println("Root's Child has [" + tree.getWins(child, 1) + " / " + tree.getWins(child, 2) + "] of " + tree.getVisits(child));
         	
         }
         
@@ -95,45 +114,44 @@ public class TipC4_Adv implements Player<ConnectFour> {
     }
     
     // Get the bets child based on Wins / Sims
-    private float[] bestChild(Node root) {
+    private float[] bestChild(int root) {
     	
     	int maxChildId = 0; 
     	float maxChildValue = -1.f;
-    	int player = 3-root.player;
+    	int player = 3-tree.getPlayer(root);
     	
-    	for (int ii = 0 ; ii < b ; ii++) {
-    		if (root.getChildren()[ii] != null) { 
-    			float myWins = root.getChildren()[ii].wins[player] + 0.0001f;
-    			float mySims = root.getChildren()[ii].sims + 0.0001f;
-    			float finalScore = (float)myWins / (float)mySims;
-    			
-    			if (finalScore > maxChildValue) {
-    				maxChildId = ii;
-    				maxChildValue = finalScore;
-    			}
+    	for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+    		float myWins = tree.getWins(child, player) + 0.0001f;
+    		float mySims = tree.getVisits(child) + 0.0001f;
+    		float finalScore = (float)myWins / (float)mySims;
+    		
+    		if (finalScore > maxChildValue) {
+    			maxChildId = tree.getMove(child);
+    			maxChildValue = finalScore;
     		}
     	}
     	
     	return new float[] {maxChildId, maxChildValue};
     }
     
-    private void rebaseTree(Node root, int[][] newBoard, int player) {
+    // Find the subtree of the opponent's reply, the only stone added to the mask,
+    // or NONE if the tree can't be reused (e.g. in a new game)
+    private int rebaseTree(long[] boardBitmaps) {
     	
-    	long[] boardBitmaps = getBitmaps(newBoard, player);
+    	if (root == SearchTree.NONE) return SearchTree.NONE;
     	
-    	for (Node child : root.children) {
-    		
-    		if (child != null) {
-	    		
-				if (child.mask == boardBitmaps[1]) {
-	    			this.root = child;
-	    			break;
-	    		}
-	    		
-    		}
-    		
-    	}
+    	long added = boardBitmaps[1] & ~rootMask;
+    	if (Long.bitCount(added) != 1 || (rootMask & ~boardBitmaps[1]) != 0) return SearchTree.NONE;
     	
+    	int xMove = Long.numberOfTrailingZeros(added) / 7;
+    	int child = tree.getChild(root, xMove);
+    	if (child == SearchTree.NONE) return SearchTree.NONE;
+    	
+    	rootPosition ^= rootMask;
+    	rootMask |= (rootMask + (1l << (xMove * 7)));
+    	
+    	// Discard the rest of the tree, making space for the subtree to grow
+    	return tree.retain(child);
     }
     
     private int getStackSize(long mask, int col) {
@@ -145,16 +163,7 @@ public class TipC4_Adv implements Player<ConnectFour> {
     }
     
     private int[][] getBoard() {
-        
-        int[][] board = new int[game.getWidth()][game.getHeight()];
-        for(int x = 0; x < game.getWidth(); x++) {
-            for(int y = 0; y < game.getHeight(); y++) {
-                board[x][y] = game.getStone(x, y);
-            }
-        }
-        
-        return board;
-        
+        return game.getSnapshot().toArray();
     }
      
     private boolean isFull(long mask) {
@@ -186,66 +195,76 @@ public class TipC4_Adv implements Player<ConnectFour> {
 		
 	}
     
-    // begin MCTS
-    public int[] MCTS_rec(Node subroot, int depth) {
+    // begin MCTS, with the bitmaps at the subroot's position
+    public int[] MCTS_rec(int subroot, long position, long mask, int depth) {
     	
     	int[] newWins = new int[] {0, 0, 0, 1}; 
+    	int terminal = tree.getTerminal(subroot);
     	
     	//System.out.println("Recurse: " + depth);
     	
-    	if (subroot.terminal != -1) {
+    	if (terminal != SearchTree.IN_PROGRESS) {
     		
-    		newWins[0] += (subroot.terminal == 0 ? 1 : 0);
-    		newWins[1] += (subroot.terminal == 1 ? 1 : 0);
-    		newWins[2] += (subroot.terminal == 2 ? 1 : 0);
+    		newWins[0] += (terminal == 0 ? 1 : 0);
+    		newWins[1] += (terminal == 1 ? 1 : 0);
+    		newWins[2] += (terminal == 2 ? 1 : 0);
     		
-    		subroot.sims += newWins[3];
-        	subroot.updateWins(newWins);
+        	tree.update(subroot, newWins);
     		
     		return newWins;
     	}
     	
-    	if (subroot.hasUnexploredChildren()) {
-    		// Select rand child
-    		Node randChild = subroot.getRandomChild();
+    	// Select rand child
+    	int randChild = getRandomChild(subroot);
+    	
+    	if (randChild != SearchTree.NONE) {
+    		
+    		int childTerminal = tree.getTerminal(randChild);
     		
-    		if (randChild.terminal == -1) {
+    		if (childTerminal == SearchTree.IN_PROGRESS) {
     		
+	    		int xMove = tree.getMove(randChild);
+	    		int yMove = getStackSize(mask, xMove);
+	    		long childPosition = position ^ mask;
+	    		long childMask = mask | (mask + (1l << (xMove * 7)));
+	    		
 	    		// Rollout child
-	    		newWins = rollout(randChild);
+	    		newWins = rollout(new Playout(childPosition, childMask, tree.getPlayer(randChild), xMove, yMove));
 	    		
 	    		// Generate children of node
-	    		randChild.populateChildren();
+	    		populateChildren(randChild, childPosition, childMask);
 	    		
-	    		randChild.sims += newWins[3];
-	    		randChild.updateWins(newWins);
+	    		tree.update(randChild, newWins);
 	    		
     		} else {
     			
-        		newWins[0] += (randChild.terminal == 0 ? 1 : 0);
-        		newWins[1] += (randChild.terminal == 1 ? 1 : 0);
-        		newWins[2] += (randChild.terminal == 2 ? 1 : 0);
+        		newWins[0] += (childTerminal == 0 ? 1 : 0);
+        		newWins[1] += (childTerminal == 1 ? 1 : 0);
+        		newWins[2] += (childTerminal == 2 ? 1 : 0);
         		
-        		randChild.sims += newWins[3];
-        		randChild.updateWins(newWins);
+        		tree.update(randChild, newWins);
         		
     		}
     		
+    	} else if (tree.getFirstChild(subroot) == SearchTree.NONE) {
+    		// The tree was full when this node was reached, so rollout from here instead
+    		newWins = rollout(new Playout(position, mask, tree.getPlayer(subroot), 0, 0));
+    		
     	} else { // No unexpored, pick by value
-    		Node selected = selectNode(subroot);
+    		int selected = selectNode(subroot);
+    		int xMove = tree.getMove(selected);
     		//System.out.println("Recursing depth " + depth);
-    		newWins = MCTS_rec(selected, depth + 1);
+    		newWins = MCTS_rec(selected, position ^ mask, mask | (mask + (1l << (xMove * 7))), depth + 1);
     	}
     	
-    	subroot.sims += newWins[3];
-    	subroot.updateWins(newWins);
+    	tree.update(subroot, newWins);
     	
 		return newWins;
 		
     }
     
     // Returns 0 for draw, 1 for win 1, and b+1 for win 2
-    private Integer moveResult(Node tempNode) {
+    private Integer moveResult(Playout tempNode) {
     	Integer result = 0;
     	
     	int playerMove = tempNode.player;
@@ -285,7 +304,7 @@ public class TipC4_Adv implements Player<ConnectFour> {
     	return result;
     }
     
-    public int[] rollout(Node child) {
+    public int[] rollout(Playout child) {
     	
     	// TODO add multiple rollouts
     	ArrayList<Integer> moves = getValidMoves(child.mask);
@@ -295,9 +314,9 @@ public class TipC4_Adv implements Player<ConnectFour> {
     	results[3] = moves.size();
     	
     	// new code
-    	ArrayList<Node> childTemps = new ArrayList<Node>();
+    	ArrayList<Playout> childTemps = new ArrayList<Playout>();
     	for (Integer move : moves) {
-    		Node tempChild = new Node(child.position, child.mask, child.player, child.x, child.y);
+    		Playout tempChild = new Playout(child.position, child.mask, child.player, child.x, child.y);
     		
 	    	int xMove = (int)move;
     		int yMove = getStackSize(tempChild.mask, xMove);
@@ -329,21 +348,20 @@ public class TipC4_Adv implements Player<ConnectFour> {
     }
     
     // Select the best node from the subroot's list of children
-    private Node selectNode(Node subroot) {
+    private int selectNode(int subroot) {
     	
-    	int maxChild = 0; 
+    	int maxChild = tree.getFirstChild(subroot); 
     	float maxChildValue = 0.0f;
     	    	
-    	for (int ii = 0 ; ii < b ; ii++) {
-    		if (subroot.getChildren()[ii] != null) { 
-    			if (subroot.getChildren()[ii].score() > maxChildValue) {
-    				maxChild = ii;
-    				maxChildValue = subroot.getChildren()[ii].score();
-    			}
+    	for (int child = maxChild; child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+    		float childValue = score(child);
+    		if (childValue > maxChildValue) {
+    			maxChild = child;
+    			maxChildValue = childValue;
     		}
     	}
     	
-    	return subroot.getChildren()[maxChild];
+    	return maxChild;
     }
     
     public long[] getBitmaps(int[][] board, int playerId) {
@@ -368,8 +386,10 @@ public class TipC4_Adv implements Player<ConnectFour> {
 		long pos = Long.parseUnsignedLong(position, 2);
 		long mas = Long.parseUnsignedLong(mask, 2);
 		
-		System.out.println(position + " " + pos);
-		System.out.println(mask + " " + mas);
+		if (Telemetry.isVerbose()) {
+			System.out.println(position + " " + pos);
+			System.out.println(mask + " " + mas);
+		}
 		
 		return new long[] {pos, mas};
 		
@@ -428,145 +448,82 @@ public class TipC4_Adv implements Player<ConnectFour> {
     @Override
     public String getName() { return "TipTacos's Advanced MCTS"; }
     
-    // NODE CLASS
-	class Node {
+    // NODES, stored in the tree by index
+    
+	// Return the score including the learning rate parameter
+	private float score(int node) {
+		
+		int parent = tree.getParent(node);
+		int parentSims = 0;
+		if (parent == SearchTree.NONE) {
+			parentSims = globalSims;
+		} else {
+			parentSims = tree.getVisits(parent);
+		}
 		
-		private Node parent;
-		private Node[] children = new Node[b];
-		private long position, mask;
-		private int x, y;
-		private int wins[] = new int[3], sims;
-		private int player;
-		private int terminal = -1;
+		int sims = tree.getVisits(node);
+		int wins = tree.getWins(node, tree.getPlayer(node));
+		return (float) (((float)(wins) / (float)sims) + learningRate * Math.sqrt(Math.log(parentSims) / (float)sims));
 		
-		public Node(Node parent, long pos, long mask, int player, int x, int y) {
-			
-			this(pos, mask, player, x, y);
-			this.parent = parent;
+	}
+	
+	// Return a random child that has been unexpored, or NONE if there are none
+	private int getRandomChild(int node) {
 		
+		int unexplored = 0;
+		for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.getVisits(child) == 0) unexplored++;
 		}
+		if (unexplored == 0) return SearchTree.NONE;
 		
-		public Node(long pos, long mask, int player, int x, int y) {
-			
-			this.position = pos;
-			this.mask = mask;
-			this.player = player;
-			this.x = x;
-			this.y = y;
-			
+		int index = rand.nextInt(unexplored);
+		for (int child = tree.getFirstChild(node); ; child = tree.getNextSibling(child)) {
+			if (tree.getVisits(child) == 0 && index-- == 0) return child;
 		}
 		
-		public Node(int[][] board, int player, int x, int y) {
-			
-			long result[] = getBitmaps(board, player);
-			this.position = result[0];
-			this.mask = result[1];
-			this.player = player;
-			this.x = x;
-			this.y = y;
-			
-		}
-
-		// Return the score including the learning rate parameter
-		public float score() {
-			
-			int parentSims = 0;
-			if (parent == null) {
-				parentSims = globalSims;
-			} else {
-				parentSims = parent.sims;
-			}
-			
-			return (float) (((float)(wins[player]) / (float)sims) + learningRate * Math.sqrt(Math.log(parentSims) / (float)sims));
-			
-		}
+	}
+	
+	// Populate any missing children, given the bitmaps at the node's position
+	private void populateChildren(int node, long position, long mask) {
 		
-		// If there is at least one unexplored child. TODO make this a stored value
-		public boolean hasUnexploredChildren() {
-			
-			return getUnexploredChildren().size() > 0;
-			
-		}
+		ArrayList<Integer> validMoves = getValidMoves(mask);
+		int player = tree.getPlayer(node);
 		
-		public void updateWins(int[] newWins) {
+		for (Integer xMove : validMoves) {
 			
-			for (int ii = 0; ii < 3; ii++) {
-				//System.out.print("chnaged from " + wins[ii]);
-				wins[ii] += newWins[ii];
-				//System.out.println(" to " + wins[ii]);
-			}
+			// Keep any children already searched (e.g. in an earlier turn)
+			if (tree.getChild(node, xMove) != SearchTree.NONE) continue;
 			
-		}
-		
-		// Get the integer for index of each of the non-null children
-		private ArrayList<Integer> getUnexploredChildren() {
+			long childPosition = position ^ mask;
+			long childMask = mask | (mask + (1l << (xMove * 7)));
 			
-			ArrayList<Integer> unexplored = new ArrayList<Integer>();
-						
-			for (int ii = 0 ; ii < b; ii++) {
-				if (children[ii] != null) {
-					if (children[ii].sims == 0) {
-						unexplored.add(ii);
-					}
-				}
-			}
+			boolean full = isFull(childMask);
+			boolean win = isWin(childPosition);
 			
-			return unexplored;
+			int terminal = full ? 0 : -1;
+			terminal = win ? 3-player : terminal;
 			
+			// Stop once the tree is full
+			if (tree.addChild(node, xMove, 3-player, terminal) == SearchTree.NONE) break;
 		}
 		
-		// Populate children
-		public void populateChildren() {
-			
-			ArrayList<Integer> validMoves = getValidMoves(mask);
-			
-			for (Integer xMove : validMoves) {
-				int yMove = getStackSize(mask, xMove);
-				children[xMove] = new Node(this, position, mask, 3-player, xMove, yMove);
-				
-				children[xMove].position ^= children[xMove].mask;
-				children[xMove].mask |= (children[xMove].mask + (1l << (xMove * 7)));
-								
-				boolean full = isFull(children[xMove].mask);
-				boolean win = isWin(children[xMove].position);
-				
-				children[xMove].terminal = full ? 0 : -1;
-				children[xMove].terminal = win ? 3-player : children[xMove].terminal;
-			}
-			
-		}
+	}
+	
+	// The position during a rollout
+	class Playout {
 		
-		// Return a random child that has been unexpored
-		public Node getRandomChild() {
-			
-			ArrayList<Integer> unexplored = getUnexploredChildren();
-			int index = rand.nextInt(unexplored.size());
-			
-			return children[(int)unexplored.get(index)];
-			
-		}
+		private long position, mask;
+		private int x, y;
+		private int player;
 		
-		public Node[] getChildren() {
+		public Playout(long pos, long mask, int player, int x, int y) {
 			
-			return children;
+			this.position = pos;
+			this.mask = mask;
+			this.player = player;
+			this.x = x;
+			this.y = y;
 			
 		}
-		
-		public long getMask() {
-			return mask;
-		}
-		
-		public long getPosition() {
-			return position;
-		}
-		
-		public long getPlayerPosition(int playerId) {
-			if (playerId == player) {
-				return position;
-			} else {
-				return position ^ mask;
-			}
-		}
-
 	}
 }
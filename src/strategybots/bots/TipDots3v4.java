@@ -17,7 +17,11 @@ import java.util.Set;
 
 import strategybots.games.DotsAndBoxes;
 import strategybots.games.DotsAndBoxes.Side;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.SearchClock;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.Telemetry;
 
 public class TipDots3v4 implements Player<DotsAndBoxes>{
 
@@ -31,11 +35,17 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 	private int width, height;
 	private int topMoves, topDepth;
 	
+	// Search statistics
+	private long nodes, expansions, ttProbes, ttHits;
+	
+	// Abandons an iteration which runs out of time
+	private final SearchClock clock = new SearchClock();
+	
 	// Zobrist Variables
 	Zobrist zobrist;
 	
 	public TipDots3v4() {
-		System.out.println("Tip's Dots and Boxes Bot 3 v4 Loaded");
+		if (Telemetry.isVerbose()) System.out.println("Tip's Dots and Boxes Bot 3 v4 Loaded");
 	}
 	
 	public TipDots3v4(long millis) {
@@ -58,42 +68,87 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 	
 	@Override
 	public void takeTurn(DotsAndBoxes game, int playerId) {
-		getBestMove(game, playerId);
-		System.out.println("Zobrist R=" + zobrist.getFillRatio());
+		takeTurn(game, playerId, Deadline.none());
+	}
+	
+	@Override
+	public void takeTurn(DotsAndBoxes game, int playerId, Deadline deadline) {
+		getBestMove(game, playerId, deadline.limit(time));
+		if (Telemetry.isVerbose()) System.out.println("Zobrist R=" + zobrist.getFillRatio());
+		clock.finish();
 	}
 	
 	/**
 	 * Method to get the best move from the current board state and player
 	 * @param game The game object
 	 * @param playerId The playerId to maximize for
+	 * @param deadline The time budget for this move
 	 */
-	private void getBestMove(DotsAndBoxes game, int playerId) {
+	private void getBestMove(DotsAndBoxes game, int playerId, Deadline deadline) {
+		
+		SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
+		nodes = expansions = ttProbes = ttHits = 0;
 		
-		long start = System.currentTimeMillis();
 		Board board = getGraph(game, playerId);
 		int[] scores = getScores(game);
 		
 		List<Edge> bestEdges = null;
-		int depth = 1, score = 0;
+		int depth = 1, score = 0, completed = 0;
 		maxDepth = board.getEdges().size() + 1;
+		clock.reset(deadline);
 		
 		// Use iterative deepening to run negaMax until the board is searched or we run out of time.
+		// An iteration is skipped if it wouldn't finish, or abandoned if it runs out of time.
         for(; depth <= maxDepth; depth++) {
         	
+        	if(!clock.startIteration()) break;
+        	
         	//System.out.println("running depth " + depth);
         	//zobrist.resetTable();
         	topMoves = board.edges.size();
         	topDepth = depth;
         	Triple result = negamax(board.verts, board.edges, scores, playerId, depth, -Integer.MAX_VALUE, Integer.MAX_VALUE);
+        	if(clock.isAborted()) break;
+        	
         	score = result.score;
         	bestEdges = result.edges;
-        	
-        	if(System.currentTimeMillis()-start > time) break;
+        	completed = depth;
         }
 
+        // Should even the first iteration be abandoned, draw any remaining edge
+        if (bestEdges == null) bestEdges = board.getEdges().subList(0, 1);
+
         // Execute the best move and then display stats about this turn
 		playMove(game, bestEdges);
-		printStats(score, playerId, bestEdges, depth, start);
+		
+		stats.setMove(String.valueOf(bestEdges.get(0)));
+		stats.setScore(score);
+		stats.setDepth(completed);
+		stats.addNodes(nodes);
+		stats.addExpansions(expansions, nodes);
+		stats.addTtProbes(ttProbes, ttHits);
+		stats.finish();
+	}
+	
+	/**
+	 * Run negamax on the game's position to a fixed depth, with an empty table and no time limit.
+	 * For benchmarking, once initialised.
+	 * @param game The game object
+	 * @param playerId The playerId to maximize for
+	 * @param depth The depth to search to
+	 * @return The number of nodes visited
+	 */
+	long searchToDepth(DotsAndBoxes game, int playerId, int depth) {
+		
+		nodes = 0;
+		zobrist.resetTable();
+		clock.reset(Deadline.none());
+		
+		Board board = getGraph(game, playerId);
+		topMoves = board.edges.size();
+		topDepth = depth;
+		negamax(board.verts, board.edges, getScores(game), playerId, depth, -Integer.MAX_VALUE, Integer.MAX_VALUE);
+		return nodes;
 	}
 	
 	/**
@@ -207,14 +262,19 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 	 */
 	private Triple negamax(Set<Vertex> verts, List<Edge> edges, int[] captures, int playerId, int depth, int alpha, int beta) {
 		
+		// Out of time, so the result will be discarded
+		if (clock.poll()) return new Triple(0, null);
+		
 		// Save original alpha
 		int previousAlpha = alpha;
 		
 		// TT lookup
 		long ttHash = zobrist.getHash(edges);
 		ZobristEntry ttEntry = zobrist.get(edges);
+		ttProbes++;
 		
 		if (ttEntry != null && ttEntry.getDepth() >= depth) {
+			ttHits++;
 			if (ttEntry.getType() == Type.EXACT) {
 				return new Triple(ttEntry.getScore(), ttEntry.getBestMove());
 			} else if (ttEntry.getType() == Type.LOWER) {
@@ -244,6 +304,7 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 		// generate next moves and order them
 		edges.sort(prioritySort);
 		List<List<Edge>> compMoves = generateMoves(verts, edges, beamFactor*2);
+		expansions++;
 		
 		int score = -Integer.MAX_VALUE, iters = 0;
 		List<Edge> bestMove = null;
@@ -253,6 +314,7 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 			
 			// apply the edge removal
 			boolean hasCaptured = successor(move, captures, playerId);
+			nodes++;
 
 			List<Edge> nextEdges = new ArrayList<Edge>();
 			nextEdges.addAll(edges);
@@ -276,6 +338,12 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 				}           		
 			}
 			
+			// Abandon the search, leaving the captures as they were
+			if (clock.isAborted()) {
+				predecessor(move, captures, playerId);
+				return new Triple(0, null);
+			}
+			
 			// Update scores or set the score to the first element when first run
             if(s > score || bestMove == null ) {
                 score = s;
@@ -471,29 +539,6 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 		return captures[playerId-1] - captures[(3-playerId) - 1];
 	}
 	
-	
-	/**
-	 * Prints a neat summary after each completed bot move.
-	 * @param score
-	 * @param playerId
-	 * @param moveX
-	 * @param moveY
-	 * @param moveSide
-	 * @param depth
-	 * @param start
-	 */
-    private void printStats(int score, int playerId, List<Edge> ee, int depth, long start) {
-        
-        System.out.println("=======================");
-        System.out.println("Tiptaco's Dots Bot 3 v4 Statistics:");
-        System.out.println("Player:      " + playerId + " ("+(playerId==1?"Blue":"Red")+")");
-        System.out.println("Turn:        " + turn++);
-        System.out.println("Expectation: " + score);
-        System.out.println("Edge:    	(" + ee.get(0));
-        System.out.println("Depth:       " + depth);
-        System.out.println("Time:        "  + (System.currentTimeMillis() - start) + "ms");
-    }
-
 	private int[] getScores(DotsAndBoxes game) {
 		return new int[] { game.getScore(1), game.getScore(2) };
 	}
@@ -822,7 +867,7 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
     			ZobristEntry zE = get(hashSym);
     			if (zE != null && zE.getKey() == hashSym) {
     				match = zE;
-    				if (ii != 0) System.out.println("Matched with " + ii);
+    				if (ii != 0 && Telemetry.isVerbose()) System.out.println("Matched with " + ii);
     				break;
     			}
     		}
@@ -5,7 +5,13 @@ import java.util.Optional;
 import java.util.Random;
 
 import strategybots.games.ConnectFour;
+import strategybots.games.ConnectFourState;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.Ponderer;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.SearchTree;
+import strategybots.games.base.Telemetry;
 
 public class TipMCTS implements Player<ConnectFour> {
     
@@ -13,78 +19,128 @@ public class TipMCTS implements Player<ConnectFour> {
     private long time = 2000;
     private int turn = 1;
     
-    private static int b = 7; // Branching
+    private int b = 7; // Branching
     private static float learningRate = 1.41f;  // Learning rate
-    private static int globalSims = 0;
-    private static Random rand = new Random();
+    private int globalSims = 0;
+    private Random rand = new Random();
     
-    private Node root = null;
+    // The tree is stored in arrays rather than as objects, and can grow up to maxNodes
+    private int maxNodes = 1 << 22;
+    private SearchTree tree;
+    private int root = SearchTree.NONE;
+    
+    // The position at the root of the tree, as nodes only store the move leading to them
+    private ConnectFourState rootState = null;
+    
+    // Keep growing the tree on the opponent's time (off by default)
+    private boolean pondering = false;
+    private Ponderer ponderer = new Ponderer(getName() + " ponderer");
     
     public TipMCTS() {}
     
     public TipMCTS(long time) { this.time = time; }
+    
+    public TipMCTS(long time, int maxNodes) {
+    	this.time = time;
+    	this.maxNodes = maxNodes;
+    }
         
     @Override
     public void init(ConnectFour game, int playerId) {
         this.game = game;
         b = game.getWidth();
+        
+        // There must always be space for the root and its children
+        tree = new SearchTree(2, Math.max(maxNodes, b + 1));
+        root = SearchTree.NONE;
+        rootState = null;
     }
 
     @Override
     public void takeTurn(ConnectFour game, int playerId) {
+        takeTurn(game, playerId, Deadline.none());
+    }
+    
+    @Override
+    public void takeTurn(ConnectFour game, int playerId, Deadline deadline) {
         
-        long start = System.currentTimeMillis();
+        ponderer.stop();
+        deadline = deadline.limit(time);
+        SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
         
-        int move = bestMove(getBoard(), playerId);
+        ConnectFourState state = new ConnectFourState(game);
+        int move = bestMove(state, playerId, deadline, stats);
         
-        root = root.getChildren()[move];
+        // Keep the subtree below our move, for reuse next turn
+        root = tree.getChild(root, move);
+        state.make(move);
+        rootState = state;
         
         game.placeStone(move);
         
-        System.out.println("=======================");
-        System.out.println("TipMCTS Statistics:");
-        System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        System.out.println("Turn:        " + turn++);
-        //System.out.println("Expectation: " + move[0]);
-        System.out.println("Column:      " + (move+1));
-        //System.out.println("Depth:       " + move[2]);
-        System.out.println("Global Sims: " + globalSims);
-        System.out.println("Time:        "
-                + (System.currentTimeMillis() - start) + "ms");
+        stats.setMove("Column " + (move+1));
+        stats.finish();
+        
+        if (pondering) ponder();
     }
     
-    private int bestMove(int[][] board, int playerId) {
-        
-        long start = System.currentTimeMillis();
+    @Override
+    public void gameEnd(ConnectFour game, int playerId, int winnerId) {
+        ponderer.shutdown();
+    }
+    
+    /**
+     * @param pondering whether to keep searching on the opponent's time (default false).
+     */
+    public void setPondering(boolean pondering) { this.pondering = pondering; }
+    
+    /**
+     * @param maxNodes the greatest number of nodes in the tree (default 2^22), taking effect next game.
+     */
+    public void setMaxNodes(int maxNodes) { this.maxNodes = maxNodes; }
+    
+    // Grow the tree below our move while the opponent thinks, so that whichever reply they make
+    // has already been searched when our next turn begins
+    private void ponder() {
+    	
+    	if (tree.getTerminal(root) != SearchTree.IN_PROGRESS) return;
+    	int ponderRoot = root;
+    	ConnectFourState ponderState = rootState.copy();
+    	
+    	ponderer.start(deadline -> {
+    		populateChildren(ponderRoot, ponderState);
+    		while (!deadline.expired()) {
+    			MCTS_rec(ponderRoot, ponderState, 0);
+    		}
+    	});
+    }
+    
+    private int bestMove(ConnectFourState state, int playerId, Deadline deadline, SearchStats stats) {
         
         globalSims = 0;
         
-        if (root == null) {
-        	root = new Node(board, 3-playerId, 0, 0);
+        root = rebaseTree(state);
+        if (root == SearchTree.NONE) {
+        	root = tree.newRoot(3-playerId);
         } else {
-        	System.out.println(root);
-        	rebaseTree(root, board);
-        	globalSims = root.sims;
-        	System.out.println(root);
-
+        	globalSims = tree.getVisits(root);
         }
+        rootState = state;
         
-       
-        root.populateChildren();
+        // Moves are made and unmade on a single copy of the root position during each iteration
+        ConnectFourState searchState = state.copy();
+        int startSims = globalSims;
+        populateChildren(root, searchState);
         
-        while (System.currentTimeMillis()-start < time) { 
+        while (!deadline.expired()) {
         	// Do one iteration
-        	MCTS_rec(root, 0);
+        	MCTS_rec(root, searchState, 0);
         }
+        stats.addSimulations(globalSims - startSims);
 
-        for (Node child : root.children) {
+        if (Telemetry.isVerbose()) for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
         	
-        	if (child == null) {
-        		System.out.println("Root's Child is null");
-        	} else {
-        		System.out.println("Root's Child has [" + child.wins[1] + " / " + child.wins[2] + "] of " + child.sims);
-        	}
+        	System.out.println("Root's Child has [" + tree.getWins(child, 1) + " / " + tree.getWins(child, 2) + "] of " + tree.getVisits(child));
         	
         }
         
@@ -94,269 +150,145 @@ public class TipMCTS implements Player<ConnectFour> {
     }
     
     // Get the bets child based on Wins / Sims
-    private float[] bestChild(Node root) {
+    private float[] bestChild(int root) {
     	
     	int maxChildId = 0; 
     	float maxChildValue = -1.f;
-    	int player = 3-root.player;
+    	int player = 3-tree.getPlayer(root);
     	
-    	for (int ii = 0 ; ii < b ; ii++) {
-    		if (root.getChildren()[ii] != null) { 
-    			float myWins = root.getChildren()[ii].wins[player] + 0.0001f;
-    			float mySims = root.getChildren()[ii].sims + 0.0001f;
-    			float finalScore = (float)myWins / (float)mySims;
-    			
-    			if (finalScore > maxChildValue) {
-    				maxChildId = ii;
-    				maxChildValue = finalScore;
-    			}
+    	for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+    		float myWins = tree.getWins(child, player) + 0.0001f;
+    		float mySims = tree.getVisits(child) + 0.0001f;
+    		float finalScore = (float)myWins / (float)mySims;
+    		
+    		if (finalScore > maxChildValue) {
+    			maxChildId = tree.getMove(child);
+    			maxChildValue = finalScore;
     		}
     	}
     	
     	return new float[] {maxChildId, maxChildValue};
     }
     
-    private void rebaseTree(Node root, int[][] newBoard) {
+    // Find the subtree of the opponent's reply, in the only column whose height has changed,
+    // or NONE if the tree can't be reused (e.g. in a new game)
+    private int rebaseTree(ConnectFourState newState) {
     	
-    	for (Node child : root.children) {
-    		
-    		boolean equal = true;
+    	if (root == SearchTree.NONE || rootState.getWidth() != newState.getWidth()) return SearchTree.NONE;
+    	
+    	for (int x = 0; x < b; x++) {
     		
-    		if (child != null) {
-	    		
-	    		int[][] oldBoard = child.getBoard();
-	    		
-	    		for (int xx = 0; xx < game.getWidth(); xx++) {
-	    			
-	    			for (int yy = 0 ; yy < game.getHeight(); yy++) {
-	    				
-	    				if (oldBoard[xx][yy] != newBoard[xx][yy]) {
-	    					
-	    					equal = false;
-	    					break;
-	    					
-	    				}
-	    				
-	    				if (!equal) break;
-	    			}
-	    			
-	    		}
-	    		
-	    		if (equal) {
-	    			this.root = child;
-	    			break;
-	    		}
-	    		
+    		if (newState.getStackHeight(x) != rootState.getStackHeight(x)) {
+    			
+    			// The hash guards against the rest of the board having changed too
+    			int child = tree.getChild(root, x);
+    			rootState.make(x);
+    			if (child == SearchTree.NONE || rootState.hash() != newState.hash()) return SearchTree.NONE;
+    			
+    			// Discard the rest of the tree, making space for the subtree to grow
+    			return tree.retain(child);
     		}
     		
     	}
-    	
+    	return SearchTree.NONE;
     }
     
-    private boolean isWin(int[][] board, int playerId, int x, int y) {
-        
-        int[][] dirs = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
-        int[] signs = new int[] {-1, 1};
-        
-        if (board[x][y] != playerId) return false;
-        
-        for(int[] dir : dirs) {
-        	
-            int streak = 1;
-            
-            for(int sign : signs) {
-                
-                for(int i = 1; i < game.getTarget(); i++) {
-                    
-                    int xx = x+i*dir[0]*sign;
-                    int yy = y+i*dir[1]*sign;
-                    
-                    if(xx < 0 || xx >= game.getWidth()) break;
-                    if(yy < 0 || yy >= game.getHeight()) break;
-                    
-                    if(board[xx][yy] != playerId) break;
-                    
-                    streak++;
-                }
-            }
-            if(streak >= game.getTarget()) return true;
-        }
-        return false;
-    }
-    
-    private int getStackSize(int[][] board, int x) {
-        
-        for(int y = 0; y < game.getHeight(); y++) {
-            if(board[x][y] == 0) return y;
-        }
-        return game.getHeight();
-    }
-    
-    private int[][] getBoard() {
-        
-        int[][] board = new int[game.getWidth()][game.getHeight()];
-        for(int x = 0; x < game.getWidth(); x++) {
-            for(int y = 0; y < game.getHeight(); y++) {
-                board[x][y] = game.getStone(x, y);
-            }
-        }
-        
-        return board;
-        
-    }
-     
-    private boolean isFull(int[][] board) {
-    	
-    	return getValidMoves(board).size() == 0;
-    	
-    }
-    
-    private int[][] playMove(int[][] board, int player, int x, int y) {
-    	
-    	board[x][y] = player;
-    	return board;
-    	
-    }
-    
-	private int getRandomMove(int[][] board) {
-		
-		ArrayList<Integer> moves = getValidMoves(board);
-		
-		int index = rand.nextInt(moves.size());
-		return moves.get(index);
-		
-	}
-	
-	private ArrayList<Integer> getValidMoves(int[][] board) {
-		
-		ArrayList<Integer> moves = new ArrayList<Integer>();
-		
-		for (int ii = 0 ; ii < b; ii++) {
-			if (board[ii][game.getHeight() - 1] == 0) {
-				moves.add(ii);
-			}
-		}
-		
-		return moves;
-		
-	}
-    
-    // begin MCTS
-    public int[] MCTS_rec(Node subroot, int depth) {
+    // begin MCTS, with the state at the subroot's position (which is restored before returning)
+    public int[] MCTS_rec(int subroot, ConnectFourState state, int depth) {
     	
     	int[] newWins = new int[] {0, 0, 0, 1}; 
+    	int terminal = tree.getTerminal(subroot);
     	
-    	if (subroot.terminal != -1) {
+    	if (terminal != SearchTree.IN_PROGRESS) {
     		
-    		newWins[0] += (subroot.terminal == 0 ? 1 : 0);
-    		newWins[1] += (subroot.terminal == 1 ? 1 : 0);
-    		newWins[2] += (subroot.terminal == 2 ? 1 : 0);
+    		newWins[0] += (terminal == 0 ? 1 : 0);
+    		newWins[1] += (terminal == 1 ? 1 : 0);
+    		newWins[2] += (terminal == 2 ? 1 : 0);
     		
-    		subroot.sims += newWins[3];
-        	subroot.updateWins(newWins);
+        	tree.update(subroot, newWins);
     		
     		return newWins;
     	}
     	
-    	if (subroot.hasUnexploredChildren()) {
-    		// Select rand child
-    		Node randChild = subroot.getRandomChild();
+    	// Select rand child
+    	int randChild = getRandomChild(subroot);
+    	
+    	if (randChild != SearchTree.NONE) {
+    		
+    		int childTerminal = tree.getTerminal(randChild);
+    		int move = tree.getMove(randChild);
     		
-    		if (randChild.terminal == -1) {
+    		if (childTerminal == SearchTree.IN_PROGRESS) {
     		
 	    		// Rollout child
-	    		newWins = rollout(randChild);
+	    		state.make(move);
+	    		newWins = rollout(state);
 	    		
 	    		// Generate children of node
-	    		randChild.populateChildren();
+	    		populateChildren(randChild, state);
+	    		state.unmake(move);
 	    		
-	    		randChild.sims += newWins[3];
-	    		randChild.updateWins(newWins);
+	    		tree.update(randChild, newWins);
 	    		
     		} else {
     			
-        		newWins[0] += (randChild.terminal == 0 ? 1 : 0);
-        		newWins[1] += (randChild.terminal == 1 ? 1 : 0);
-        		newWins[2] += (randChild.terminal == 2 ? 1 : 0);
+        		newWins[0] += (childTerminal == 0 ? 1 : 0);
+        		newWins[1] += (childTerminal == 1 ? 1 : 0);
+        		newWins[2] += (childTerminal == 2 ? 1 : 0);
         		
-        		randChild.sims += newWins[3];
-        		randChild.updateWins(newWins);
+        		tree.update(randChild, newWins);
         		
     		}
     		
+    	} else if (tree.getFirstChild(subroot) == SearchTree.NONE) {
+    		// The tree was full when this node was reached, so rollout from here instead
+    		newWins = rollout(state);
+    		
     	} else { // No unexpored, pick by value
-    		Node selected = selectNode(subroot);
+    		int selected = selectNode(subroot);
+    		int move = tree.getMove(selected);
     		//System.out.println("Recursing depth " + depth);
-    		newWins = MCTS_rec(selected, depth + 1);
+    		state.make(move);
+    		newWins = MCTS_rec(selected, state, depth + 1);
+    		state.unmake(move);
     	}
     	
-    	subroot.sims += newWins[3];
-    	subroot.updateWins(newWins);
+    	tree.update(subroot, newWins);
     	
 		return newWins;
 		
     }
     
     // Returns 0 for draw, 1 for win 1, and b+1 for win 2
-    private Integer moveResult(Node tempNode) {
-    	Integer result = 0;
+    private Integer moveResult(ConnectFourState state) {
     	
-    	int playerMove = tempNode.player;
-    	int xMove = 0, yMove = 0;
-    	// Check if the opposition has just placed a winning piece and the board is not Full
-    	boolean isTerminal = isWin(tempNode.getBoard(), playerMove, tempNode.x, tempNode.y);
-    	boolean isFull = isFull(tempNode.getBoard());
+    	int[] moves = new int[b];
+    	int numMoves;
     	
-    	// Continue until someone wins
-    	while (!isTerminal && !isFull) {
-    		
-    		// Starting at the base child node, select a move and update the playerID and last position as well as board
-    		// Get column move, randomly
-    		xMove = getRandomMove(tempNode.getBoard());
-    		// get Y of col
-    		yMove = getStackSize(tempNode.getBoard(), xMove);
-    		// do move and swap PlayerID
-    		playerMove = 3 - tempNode.player;
-    		playMove(tempNode.getBoard(), playerMove, xMove, yMove);
-    		tempNode.x = xMove;
-    		tempNode.y = yMove;
-    		tempNode.player = playerMove;
-
-    		// Update the terminal condition
-    		isTerminal = isWin(tempNode.getBoard(), playerMove, tempNode.x, tempNode.y);
-        	isFull = isFull(tempNode.getBoard());
+    	// Continue until someone wins, or the board is full
+    	while ((numMoves = state.legalMoves(moves)) > 0) {
+    		state.make(moves[rand.nextInt(numMoves)]);
     	}
     	
-    	// Check if the last valid move in the rollout was ours, and a win
-    	if (isWin(tempNode.getBoard(), 1, tempNode.x, tempNode.y)) result += 1;
-    	if (isWin(tempNode.getBoard(), 2, tempNode.x, tempNode.y)) result += (b+1);
-    	
-    	return result;
+    	int winner = state.terminalResult();
+    	return winner == 1 ? 1 : winner == 2 ? b+1 : 0;
     }
     
-    public int[] rollout(Node child) {
+    public int[] rollout(ConnectFourState child) {
     	
     	// TODO add multiple rollouts
-    	ArrayList<Integer> moves = getValidMoves(child.getBoard());
+    	int[] moves = new int[b];
+    	int numMoves = child.legalMoves(moves);
     	
     	int[] results = new int[] {0, 0, 0, 0};
     	
-    	results[3] = moves.size();
+    	results[3] = numMoves;
     	
     	// new code
-    	ArrayList<Node> childTemps = new ArrayList<Node>();
-    	for (Integer move : moves) {
-    		Node tempChild = new Node(child.getBoard(), child.player, child.x, child.y);
-    		
-	    	int xMove = (int)move;
-    		int yMove = getStackSize(tempChild.getBoard(), xMove);
-    		// do move and swap PlayerID
-    		int playerMove = 3 - tempChild.player;
-    		tempChild.board = playMove(tempChild.board, playerMove, xMove, yMove);
-    		tempChild.x = xMove;
-    		tempChild.y = yMove;
-    		tempChild.player = playerMove;
-    		
+    	ArrayList<ConnectFourState> childTemps = new ArrayList<ConnectFourState>();
+    	for (int ii = 0; ii < numMoves; ii++) {
+    		ConnectFourState tempChild = child.copy();
+    		tempChild.make(moves[ii]);
     		childTemps.add(tempChild);
     	}
     	
@@ -377,155 +309,81 @@ public class TipMCTS implements Player<ConnectFour> {
     }
     
     // Select the best node from the subroot's list of children
-    private Node selectNode(Node subroot) {
+    private int selectNode(int subroot) {
     	
-    	int maxChild = 0; 
+    	int maxChild = tree.getFirstChild(subroot); 
     	float maxChildValue = 0.0f;
     	
-    	for (int ii = 0 ; ii < b ; ii++) {
-    		if (subroot.getChildren()[ii] != null) { 
-    			if (subroot.getChildren()[ii].score() > maxChildValue) {
-    				maxChild = ii;
-    				maxChildValue = subroot.getChildren()[ii].score();
-    			}
+    	for (int child = maxChild; child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+    		float childValue = score(child);
+    		if (childValue > maxChildValue) {
+    			maxChild = child;
+    			maxChildValue = childValue;
     		}
     	}
     	
-    	return subroot.getChildren()[maxChild];
+    	return maxChild;
     }
     
     @Override
     public String getName() { return "TipTacos's MCTS"; }
     
-    // NODE CLASS
-	class Node {
-		
-		private Node parent;
-		private Node[] children = new Node[b];
-		private int[][] board;
-		private int x, y;
-		private int wins[] = new int[3], sims;
-		private int player;
-		private int terminal = -1;
-		
-		public Node(Node parent, int[][] board, int player, int x, int y) {
-			
-			this(board, player, x, y);
-			this.parent = parent;
-		
-		}
+    // NODES, stored in the tree by index
+    
+	// Return the score including the learning rate parameter
+	private float score(int node) {
 		
-		public Node(int[][] board, int player, int x, int y) {
-			
-			this.board = deepCopy(board);
-			this.player = player;
-			this.x = x;
-			this.y = y;
-			
+		int parent = tree.getParent(node);
+		int parentSims = 0;
+		if (parent == SearchTree.NONE) {
+			parentSims = globalSims;
+		} else {
+			parentSims = tree.getVisits(parent);
 		}
 		
-		// Return the score including the learning rate parameter
-		public float score() {
-			
-			int parentSims = 0;
-			if (parent == null) {
-				parentSims = globalSims;
-			} else {
-				parentSims = parent.sims;
-			}
-			
-			return (float) (((float)(wins[player]) / (float)sims) + learningRate * Math.sqrt(Math.log(parentSims) / (float)sims));
-			
-		}
+		int sims = tree.getVisits(node);
+		int wins = tree.getWins(node, tree.getPlayer(node));
+		return (float) (((float)(wins) / (float)sims) + learningRate * Math.sqrt(Math.log(parentSims) / (float)sims));
 		
-		// If there is at least one unexplored child. TODO make this a stored value
-		public boolean hasUnexploredChildren() {
-			
-			return getUnexploredChildren().size() > 0;
-			
-		}
+	}
+	
+	// Return a random child that has been unexpored, or NONE if there are none
+	private int getRandomChild(int node) {
 		
-		public void updateWins(int[] newWins) {
-			
-			for (int ii = 0; ii < 3; ii++) {
-				//System.out.print("chnaged from " + wins[ii]);
-				wins[ii] += newWins[ii];
-				//System.out.println(" to " + wins[ii]);
-			}
-			
+		int unexplored = 0;
+		for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.getVisits(child) == 0) unexplored++;
 		}
+		if (unexplored == 0) return SearchTree.NONE;
 		
-		// Get the integer for index of each of the non-null children
-		private ArrayList<Integer> getUnexploredChildren() {
-			
-			ArrayList<Integer> unexplored = new ArrayList<Integer>();
-						
-			for (int ii = 0 ; ii < b; ii++) {
-				if (children[ii] != null) {
-					if (children[ii].sims == 0) {
-						unexplored.add(ii);
-					}
-				}
-			}
-			
-			return unexplored;
-			
+		int index = rand.nextInt(unexplored);
+		for (int child = tree.getFirstChild(node); ; child = tree.getNextSibling(child)) {
+			if (tree.getVisits(child) == 0 && index-- == 0) return child;
 		}
 		
-		// Populate children
-		public void populateChildren() {
-			
-			ArrayList<Integer> validMoves = getValidMoves(board);
-			
-			for (Integer xMove : validMoves) {
-				int yMove = getStackSize(board, xMove);
-				children[xMove] = new Node(this, board, 3-player, xMove, yMove);
-				
-				playMove(children[xMove].getBoard(), 3-player, xMove, yMove);
-				
-				boolean full = isFull(children[xMove].getBoard());
-				boolean win = isWin(children[xMove].getBoard(), 3-player, xMove, yMove);
-				
-				children[xMove].terminal = full ? 0 : -1;
-				children[xMove].terminal = win ? 3-player : children[xMove].terminal;
-			}
-			
-		}
+	}
+	
+	// Populate any missing children, given the state at the node's position
+	private void populateChildren(int node, ConnectFourState state) {
 		
-		// Return a random child that has been unexpored
-		public Node getRandomChild() {
-			
-			ArrayList<Integer> unexplored = getUnexploredChildren();
-			int index = rand.nextInt(unexplored.size());
-			
-			return children[(int)unexplored.get(index)];
-			
-		}
+		int[] validMoves = new int[b];
+		int numMoves = state.legalMoves(validMoves);
+		int player = 3-tree.getPlayer(node);
 		
-		public Node[] getChildren() {
-			
-			return children;
+		for (int ii = 0; ii < numMoves; ii++) {
+			int xMove = validMoves[ii];
 			
-		}
-		
-		public int[][] getBoard() {
+			// Keep any children already searched (e.g. while pondering)
+			if (tree.getChild(node, xMove) != SearchTree.NONE) continue;
 			
-			return board;
+			// The winner, or 0 if the board is full
+			state.make(xMove);
+			int result = state.terminalResult();
+			state.unmake(xMove);
 			
+			// Stop once the tree is full
+			if (tree.addChild(node, xMove, player, result) == SearchTree.NONE) break;
 		}
 		
-		private int[][] deepCopy(int[][] board) {
-			
-			int[][] newBoard = new int[board.length][board[0].length];
-			
-			for (int xx = 0 ; xx < board.length; xx++ ) {
-				for (int yy = 0; yy < board[xx].length; yy++) {
-					newBoard[xx][yy] = board[xx][yy];
-				}
-			}
-			
-			return newBoard;
-			
-		}
 	}
 }
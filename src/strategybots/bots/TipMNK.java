@@ -7,7 +7,11 @@ import java.util.Random;
 
 import strategybots.games.ConnectFour;
 import strategybots.games.TicTacToe;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.SearchTree;
+import strategybots.games.base.Telemetry;
 
 public class TipMNK implements Player<TicTacToe> {
     
@@ -21,95 +25,108 @@ public class TipMNK implements Player<TicTacToe> {
     private static int globalSims = 0;
     private static Random rand = new Random();
     
-    private Node root = null;
+    // The tree is stored in arrays rather than as objects, and can grow up to maxNodes
+    private int maxNodes = 1 << 22;
+    private SearchTree tree;
+    private int root = SearchTree.NONE;
+    
+    // The board at the root of the tree, as nodes only store the move leading to them
+    private int[][] rootBoard = null;
     
     public TipMNK() {}
     
     public TipMNK(long time) { this.time = time; }
+    
+    public TipMNK(long time, int maxNodes) {
+    	this.time = time;
+    	this.maxNodes = maxNodes;
+    }
         
     @Override
     public void init(TicTacToe game, int playerId) {
         this.game = game;
         b = game.getWidth() * game.getHeight();
+        
+        // There must always be space for the root and its children
+        tree = new SearchTree(2, Math.max(maxNodes, b + 1));
     }
 
     @Override
     public void takeTurn(TicTacToe game, int playerId) {
+        takeTurn(game, playerId, Deadline.none());
+    }
+    
+    @Override
+    public void takeTurn(TicTacToe game, int playerId, Deadline deadline) {
         
-        long start = System.currentTimeMillis();
+        deadline = deadline.limit(time);
+        SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
         
-        Vec2 move = bestMove(getBoard(), playerId);
+        Vec2 move = bestMove(getBoard(), playerId, deadline, stats);
         
-        root = root.getChildFromMove(move);
+        root = tree.getChild(root, move.x * game.getHeight() + move.y);
+        playMove(rootBoard, playerId, move.x, move.y);
         
         game.placeStone(move.x, move.y);
         
-        System.out.println("=======================");
-        System.out.println("TipMCTS Statistics:");
-        System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        System.out.println("Turn:        " + turn++);
-        //System.out.println("Expectation: " + move[0]);
-        System.out.println("Move:        [" + move.x + ", " + move.y + "]");
-        //System.out.println("Depth:       " + move[2]);
-        System.out.println("Global Sims: " + globalSims);
-        System.out.println("Time:        "
-                + (System.currentTimeMillis() - start) + "ms");
+        stats.setMove("(" + (move.x+1) + ", " + (move.y+1) + ")");
+        stats.finish();
     }
     
-    private Vec2 bestMove(int[][] board, int playerId) {
-        
-        long start = System.currentTimeMillis();
+    /**
+     * @param maxNodes the greatest number of nodes in the tree (default 2^22), taking effect next game.
+     */
+    public void setMaxNodes(int maxNodes) { this.maxNodes = maxNodes; }
+    
+    private Vec2 bestMove(int[][] board, int playerId, Deadline deadline, SearchStats stats) {
         
         globalSims = 0;
         
-        if (root == null) {
-        	root = new Node(board, 3-playerId, 0, 0);
+        root = rebaseTree(board);
+        if (root == SearchTree.NONE) {
+        	root = tree.newRoot(3-playerId);
         } else {
-        	System.out.println(root);
-        	rebaseTree(root, board);
-        	globalSims = root.sims;
-        	System.out.println(root);
+        	globalSims = tree.getVisits(root);
         }
+        rootBoard = board;
         
     	//root = new Node(board, 3-playerId, 0, 0);
 
         
-       
-        root.populateChildren();
+        // Moves are played and taken back on a single copy of the root board during each iteration
+        int[][] searchBoard = deepCopy(board);
+        int startSims = globalSims;
+        populateChildren(root, searchBoard);
         
-        while (System.currentTimeMillis()-start < time) { 
+        while (!deadline.expired()) { 
         	// Do one iteration
-        	MCTS_rec(root, 0);
+        	MCTS_rec(root, searchBoard, 0);
         }
+        stats.addSimulations(globalSims - startSims);
 
-        for (Node child : root.children) {
+        if (Telemetry.isVerbose()) for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
         	
-        	if (child == null) {
-        		System.out.println("Root's Child is null");
-        	} else {
-        		System.out.println("Root's Child has [" + child.wins[1] + " / " + child.wins[2] + "] of " + child.sims);
-        	}
+        	System.out.println("Root's Child has [" + tree.getWins(child, 1) + " / " + tree.getWins(child, 2) + "] of " + tree.getVisits(child));
         	
         }
         
-        Node bestChild = bestChild(root);
-        Vec2 move = bestChild.move;
+        int bestChild = bestChild(root);
+        Vec2 move = getMove(bestChild);
         
         return move;
     }
     
     // Get the bets child based on Wins / Sims
-    private Node bestChild(Node root) {
+    private int bestChild(int root) {
     	
-    	Node maxChild = null; 
+    	int maxChild = SearchTree.NONE; 
     	float maxChildValue = -1.f;
-    	int player = 3-root.player;
+    	int player = 3-tree.getPlayer(root);
     	
-    	for (Node child : root.getChildren()) {
+    	for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
     		
-    		float myWins = child.wins[player] + 0.0001f;
-			float mySims = child.sims + 0.0001f;
+    		float myWins = tree.getWins(child, player) + 0.0001f;
+			float mySims = tree.getVisits(child) + 0.0001f;
 			float finalScore = (float)myWins / (float)mySims;
 			
 			if (finalScore > maxChildValue) {
@@ -122,41 +139,35 @@ public class TipMNK implements Player<TicTacToe> {
     	return maxChild;
     }
     
-    private void rebaseTree(Node root, int[][] newBoard) {
+    // Find the subtree of the opponent's reply, the only stone added to the board,
+    // or NONE if the tree can't be reused (e.g. in a new game)
+    private int rebaseTree(int[][] newBoard) {
+    	
+    	if (root == SearchTree.NONE || rootBoard.length != newBoard.length
+    			|| rootBoard[0].length != newBoard[0].length) return SearchTree.NONE;
     	
-    	for (Node child : root.children) {
+    	int move = SearchTree.NONE;
+    	
+    	for (int xx = 0; xx < game.getWidth(); xx++) {
     		
-    		boolean equal = true;
+    		for (int yy = 0 ; yy < game.getHeight(); yy++) {
     		
-    		if (child != null) {
-	    		
-	    		int[][] oldBoard = child.getBoard();
+    			if (rootBoard[xx][yy] != newBoard[xx][yy]) {
 	    		
-	    		for (int xx = 0; xx < game.getWidth(); xx++) {
+    				// Only a single stone may have been added
+    				if (rootBoard[xx][yy] != 0 || move != SearchTree.NONE) return SearchTree.NONE;
+    				move = xx * game.getHeight() + yy;
 	    			
-	    			for (int yy = 0 ; yy < game.getHeight(); yy++) {
-	    				
-	    				if (oldBoard[xx][yy] != newBoard[xx][yy]) {
-	    					
-	    					equal = false;
-	    					break;
-	    					
-	    				}
-	    				
-	    				if (!equal) break;
-	    			}
-	    			
-	    		}
-	    		
-	    		if (equal) {
-	    			this.root = child;
-	    			break;
-	    		}
-	    		
+    			}
     		}
     		
     	}
     	
+    	int child = move == SearchTree.NONE ? SearchTree.NONE : tree.getChild(root, move);
+    	if (child == SearchTree.NONE) return SearchTree.NONE;
+    	
+    	// Discard the rest of the tree, making space for the subtree to grow
+    	return tree.retain(child);
     }
     
     private boolean isWin(int[][] board, int playerId, int x, int y) {
@@ -191,16 +202,7 @@ public class TipMNK implements Player<TicTacToe> {
     }
     
     private int[][] getBoard() {
-        
-        int[][] board = new int[game.getWidth()][game.getHeight()];
-        for(int x = 0; x < game.getWidth(); x++) {
-            for(int y = 0; y < game.getHeight(); y++) {
-                board[x][y] = game.getStone(x, y);
-            }
-        }
-        
-        return board;
-        
+        return game.getSnapshot().toArray();
     }
      
     private boolean isFull(int[][] board) {
@@ -240,65 +242,75 @@ public class TipMNK implements Player<TicTacToe> {
 		
 	}
     
-    // begin MCTS
-    public int[] MCTS_rec(Node subroot, int depth) {
+    // begin MCTS, with the board at the subroot's position (which is restored before returning)
+    public int[] MCTS_rec(int subroot, int[][] board, int depth) {
     	
     	int[] newWins = new int[] {0, 0, 0, 1}; 
+    	int terminal = tree.getTerminal(subroot);
     	
-    	if (subroot.terminal != -1) {
+    	if (terminal != SearchTree.IN_PROGRESS) {
     		
-    		newWins[0] += (subroot.terminal == 0 ? 1 : 0);
-    		newWins[1] += (subroot.terminal == 1 ? 1 : 0);
-    		newWins[2] += (subroot.terminal == 2 ? 1 : 0);
+    		newWins[0] += (terminal == 0 ? 1 : 0);
+    		newWins[1] += (terminal == 1 ? 1 : 0);
+    		newWins[2] += (terminal == 2 ? 1 : 0);
     		
-    		subroot.sims += newWins[3];
-        	subroot.updateWins(newWins);
+        	tree.update(subroot, newWins);
     		
     		return newWins;
     	}
     	
-    	if (subroot.hasUnexploredChildren()) {
-    		// Select rand child
-    		Node randChild = subroot.getRandomChild();
+    	// Select rand child
+    	int randChild = getRandomChild(subroot);
+    	
+    	if (randChild != SearchTree.NONE) {
     		
-    		if (randChild.terminal == -1) {
+    		int childTerminal = tree.getTerminal(randChild);
     		
+    		if (childTerminal == SearchTree.IN_PROGRESS) {
+    		
+	    		Vec2 move = getMove(randChild);
+	    		playMove(board, tree.getPlayer(randChild), move.x, move.y);
+	    		
 	    		// Rollout child
-	    		newWins = rollout(randChild);
+	    		newWins = rollout(new Playout(board, tree.getPlayer(randChild), move.x, move.y));
 	    		
 	    		// Generate children of node
-	    		randChild.populateChildren();
+	    		populateChildren(randChild, board);
+	    		playMove(board, 0, move.x, move.y);
 	    		
-	    		randChild.visited = true;
-	    		
-	    		randChild.sims += newWins[3];
-	    		randChild.updateWins(newWins);
+	    		tree.update(randChild, newWins);
 	    		
     		} else {
     			
-        		newWins[0] += (randChild.terminal == 0 ? 1 : 0);
-        		newWins[1] += (randChild.terminal == 1 ? 1 : 0);
-        		newWins[2] += (randChild.terminal == 2 ? 1 : 0);
+        		newWins[0] += (childTerminal == 0 ? 1 : 0);
+        		newWins[1] += (childTerminal == 1 ? 1 : 0);
+        		newWins[2] += (childTerminal == 2 ? 1 : 0);
         		
-        		randChild.sims += newWins[3];
-        		randChild.updateWins(newWins);
+        		tree.update(randChild, newWins);
         		
     		}
     		
+    	} else if (tree.getFirstChild(subroot) == SearchTree.NONE) {
+    		// The tree was full when this node was reached, so rollout from here instead
+    		Vec2 move = tree.getMove(subroot) == SearchTree.NONE ? new Vec2() : getMove(subroot);
+    		newWins = rollout(new Playout(board, tree.getPlayer(subroot), move.x, move.y));
+    		
     	} else { // No unexpored, pick by value
-    		Node selected = selectNode(subroot);
-      		newWins = MCTS_rec(selected, depth + 1);
+    		int selected = selectNode(subroot);
+    		Vec2 move = getMove(selected);
+    		playMove(board, tree.getPlayer(selected), move.x, move.y);
+      		newWins = MCTS_rec(selected, board, depth + 1);
+      		playMove(board, 0, move.x, move.y);
     	}
     	
-    	subroot.sims += newWins[3];
-    	subroot.updateWins(newWins);
+    	tree.update(subroot, newWins);
     	
 		return newWins;
 		
     }
     
     // Returns 0 for draw, 1 for win 1, and b+1 for win 2
-    private Integer moveResult(Node tempNode) {
+    private Integer moveResult(Playout tempNode) {
     	Integer result = 0;
     	
     	int playerMove = tempNode.player;
@@ -332,7 +344,7 @@ public class TipMNK implements Player<TicTacToe> {
     	return result;
     }
     
-    public int[] rollout(Node child) {
+    public int[] rollout(Playout child) {
     	
     	// TODO add multiple rollouts
     	ArrayList<Vec2> moves = getValidMoves(child.getBoard());
@@ -342,11 +354,11 @@ public class TipMNK implements Player<TicTacToe> {
     	results[3] = moves.size();
     	
     	// new code
-    	ArrayList<Node> childTemps = new ArrayList<Node>();
+    	ArrayList<Playout> childTemps = new ArrayList<Playout>();
     	
     	for (int ii = 0 ; ii < Math.min(moves.size(), bottomIterations); ii++) {
     		
-    		Node tempChild = new Node(child.getBoard(), child.player, child.move.x, child.move.y);
+    		Playout tempChild = new Playout(child.getBoard(), child.player, child.move.x, child.move.y);
     		Vec2 move = moves.remove(rand.nextInt(moves.size()));
     		
     		// do move and swap PlayerID
@@ -377,15 +389,16 @@ public class TipMNK implements Player<TicTacToe> {
     }
     
     // Select the best node from the subroot's list of children
-    private Node selectNode(Node subroot) {
+    private int selectNode(int subroot) {
     	
-    	Node maxChild = null; 
+    	int maxChild = tree.getFirstChild(subroot); 
     	float maxChildValue = 0.0f;
     	
-    	for (Node child : subroot.getChildren()) {
-			if (child.score() > maxChildValue) {
+    	for (int child = maxChild; child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+    		float childValue = score(child);
+			if (childValue > maxChildValue) {
 				maxChild = child;
-				maxChildValue = child.score();
+				maxChildValue = childValue;
 			}
     	}
 
@@ -413,163 +426,150 @@ public class TipMNK implements Player<TicTacToe> {
     	}
     }
     
-    // NODE CLASS
-	class Node {
+    // NODES, stored in the tree by index
+    
+	// Return the score including the learning rate parameter
+	private float score(int node) {
 		
-		private Node parent;
-		private ArrayList<Node> children = new ArrayList<Node>();
-		private boolean visited = false;
-		private int[][] board;
-		private Vec2 move;
-		private int wins[] = new int[3], sims;
-		private int player;
-		private int terminal = -1;
+		int parent = tree.getParent(node);
+		int parentSims = 0;
+		if (parent == SearchTree.NONE) {
+			parentSims = globalSims;
+		} else {
+			parentSims = tree.getVisits(parent);
+		}
 		
-		public Node(Node parent, int[][] board, int player, int x, int y) {
+		int sims = tree.getVisits(node);
+		int wins = tree.getWins(node, tree.getPlayer(node));
+		return (float) (((float)(wins) / (float)sims) + learningRate * Math.sqrt(Math.log(parentSims) / (float)sims));
 			
-			this(board, player, x, y);
-			this.parent = parent;
+	}
+	
+	// Children are unexplored until they are expanded, which those ending the game never are
+	private boolean isUnexplored(int node) {
 		
-		}
+		return tree.getTerminal(node) != SearchTree.IN_PROGRESS || tree.getVisits(node) == 0;
 		
-		public Node(int[][] board, int player, int x, int y) {
-			
-			this(board, player, new Vec2(x, y));
-			
-		}
+	}
+	
+	// Return a random child that has been unexpored, or NONE if there are none
+	private int getRandomChild(int node) {
 		
-		public Node(int[][] board, int player, Vec2 move) {
-			
-			this.board = deepCopy(board);
-			this.player = player;
-			this.move = move;
-			
+		int unexplored = 0;
+		for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+			if (isUnexplored(child)) unexplored++;
 		}
+		if (unexplored == 0) return SearchTree.NONE;
 		
-		// Return the score including the learning rate parameter
-		public float score() {
-			
-			int parentSims = 0;
-			if (parent == null) {
-				parentSims = globalSims;
-			} else {
-				parentSims = parent.sims;
-			}
-			
-			return (float) (((float)(wins[player]) / (float)sims) + learningRate * Math.sqrt(Math.log(parentSims) / (float)sims));
-			
+		int index = rand.nextInt(unexplored);
+		for (int child = tree.getFirstChild(node); ; child = tree.getNextSibling(child)) {
+			if (isUnexplored(child) && index-- == 0) return child;
 		}
 		
-		// If there is at least one unexplored child. TODO make this a stored value
-		public boolean hasUnexploredChildren() {
-			
-			return getUnexploredChildren().size() > 0;
-			
+	}
+	
+	// Populate children, given the board at the node's position, in order of priority
+	private void populateChildren(int node, int[][] board) {
+		
+		// Keep any children already searched (e.g. in an earlier turn)
+		if (tree.getFirstChild(node) != SearchTree.NONE) return;
+		
+		ArrayList<Vec2> validMoves = getValidMoves(board);
+		int player = 3-tree.getPlayer(node);
+		
+		int[][] prios = generatePriorities(board);
+		
+		for (Vec2 move : validMoves) {
+			move.prio = prios[move.x][move.y];
 		}
+		validMoves.sort(movePriorityComparator);
 		
-		public void updateWins(int[] newWins) {
+		for (Vec2 move : validMoves) {
+			playMove(board, player, move.x, move.y);
 			
-			for (int ii = 0; ii < 3; ii++) {
-				//System.out.print("chnaged from " + wins[ii]);
-				wins[ii] += newWins[ii];
-				//System.out.println(" to " + wins[ii]);
-			}
+			boolean full = isFull(board);
+			boolean win = isWin(board, player, move.x, move.y);
 			
-		}
-		
-		// Get the integer for index of each of the non-null children
-		private ArrayList<Node> getUnexploredChildren() {
+			int terminal = full ? 0 : -1;
+			terminal = win ? player : terminal;
 			
-			ArrayList<Node> unexplored = new ArrayList<Node>();
-						
-			for (Node child : children) {
-				
-				if (!child.visited) { 
-					unexplored.add(child);
-				}
-
-			}
-			return unexplored;
+			playMove(board, 0, move.x, move.y);
 			
+			// Stop once the tree is full
+			if (tree.addChild(node, move.x * game.getHeight() + move.y, player, terminal) == SearchTree.NONE) break;
 		}
 		
-		// Populate children
-		public void populateChildren() {
-			
-			ArrayList<Vec2> validMoves = getValidMoves(board);
-			
-			int[][] prios = generatePriorities(board);
-			
-			for (Vec2 move : validMoves) {
-				Node newChild = new Node(this, board, 3-player, move.x, move.y);
-				newChild.move.prio = prios[move.x][move.y];
-				playMove(newChild.getBoard(), 3-player, move.x, move.y);
+	}
+	
+	private int[][] generatePriorities(int[][] board) {
+		
+		int lims = 2;
+		int[][] prios = new int[board.length][board[0].length];
+		
+		for (int x = 0 ; x < game.getWidth(); x++) {
+			for (int y = 0 ; y < game.getHeight(); y++) {
 				
-				boolean full = isFull(newChild.getBoard());
-				boolean win = isWin(newChild.getBoard(), 3-player, move.x, move.y);
+				if (board[x][y] != 0) {
 				
-				newChild.terminal = full ? 0 : -1;
-				newChild.terminal = win ? 3-player : newChild.terminal;
+					for (int xx = x - lims; xx <= x + lims; xx++) {
+						for (int yy = y - lims ; yy <= y + lims; yy++ ) {
 				
-				children.add(newChild);
-			}
-			
-			children.sort(movePriorityComparator);
-			
-		}
-		
-		private int[][] generatePriorities(int[][] board) {
-			
-			int lims = 2;
-			int[][] prios = new int[board.length][board[0].length];
-			
-			for (int x = 0 ; x < game.getWidth(); x++) {
-				for (int y = 0 ; y < game.getHeight(); y++) {
-					
-					if (board[x][y] != 0) {
-					
-						for (int xx = x - lims; xx <= x + lims; xx++) {
-							for (int yy = y - lims ; yy <= y + lims; yy++ ) {
+							if(xx >= 0 && xx < game.getWidth() && yy >= 0 && yy < game.getHeight()) {
 								
-								if(xx >= 0 && xx < game.getWidth() && yy >= 0 && yy < game.getHeight()) {
+								prios[xx][yy]++;
 									
-									prios[xx][yy]++;
-									
-								}
 							}
 						}
 					}
 				}
 			}
-			return prios;
-			
 		}
+		return prios;
 		
-		// Return a random child that has been unexpored
-		public Node getRandomChild() {
-			
-			ArrayList<Node> unexplored = getUnexploredChildren();
-			int index = rand.nextInt(unexplored.size());
-			
-			return unexplored.get(index);
-			
-		}
+	}
+	
+	// The move leading to a node
+	private Vec2 getMove(int node) {
 		
-		public Node getChildFromMove(Vec2 move) {
-			
-			for (Node child : children) {
-				
-				if (child.move.x == move.x && child.move.y == move.y) {
-					return child;
-				}
-
+		int move = tree.getMove(node);
+		return new Vec2(move / game.getHeight(), move % game.getHeight());
+		
+	}
+	
+	private int[][] deepCopy(int[][] board) {
+		
+		int[][] newBoard = new int[board.length][board[0].length];
+		
+		for (int xx = 0 ; xx < board.length; xx++ ) {
+			for (int yy = 0; yy < board[xx].length; yy++) {
+				newBoard[xx][yy] = board[xx][yy];
 			}
-			return null;
 		}
 		
-		public ArrayList<Node> getChildren() {
+		return newBoard;
+		
+	}
+	
+	public final Comparator<Vec2> movePriorityComparator = new Comparator<Vec2>() {         
+		@Override         
+		public int compare(Vec2 m1, Vec2 m2) {             
+			return (m2.prio < m1.prio ? -1 :                     
+				(m2.prio == m1.prio ? 0 : 1));           
+		}     
+	}; 
+	
+	// The position during a rollout
+	class Playout {
+		
+		private int[][] board;
+		private Vec2 move;
+		private int player;
+		
+		public Playout(int[][] board, int player, int x, int y) {
 			
-			return children;
+			this.board = deepCopy(board);
+			this.player = player;
+			this.move = new Vec2(x, y);
 			
 		}
 		
@@ -578,29 +578,6 @@ public class TipMNK implements Player<TicTacToe> {
 			return board;
 			
 		}
-		
-		private int[][] deepCopy(int[][] board) {
-			
-			int[][] newBoard = new int[board.length][board[0].length];
-			
-			for (int xx = 0 ; xx < board.length; xx++ ) {
-				for (int yy = 0; yy < board[xx].length; yy++) {
-					newBoard[xx][yy] = board[xx][yy];
-				}
-			}
-			
-			return newBoard;
-			
-		}
-		
-		public final Comparator<Node> movePriorityComparator = new Comparator<Node>() {         
-			@Override         
-			public int compare(Node n1, Node n2) {             
-				return (n2.move.prio < n1.move.prio ? -1 :                     
-					(n2.move.prio == n1.move.prio ? 0 : 1));           
-			}     
-		}; 
-		
 	}
 	
 }
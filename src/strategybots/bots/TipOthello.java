@@ -7,27 +7,48 @@ package strategybots.bots;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
 
 import strategybots.games.Reversi;
+import strategybots.games.base.Deadline;
 import strategybots.games.base.Game.Player;
+import strategybots.games.base.Ponderer;
+import strategybots.games.base.SearchStats;
+import strategybots.games.base.SearchTree;
+import strategybots.games.base.Telemetry;
 
 public class TipOthello implements Player<Reversi>{
 
 	private long time = 2000l;
 	private Random rand;
 	private int globalSims = 0;
+	private int turn = 1;
 	private static float learningRate = 1.41f;
 	private static int branch = 64;
 	
-    private Node root = null;
+	// The tree is stored in arrays rather than as objects, and can grow up to maxNodes
+	private int maxNodes = 1 << 22;
+	private SearchTree tree;
+	private int root = SearchTree.NONE;
+	
+	// The position at the root of the tree, as nodes only store the move leading to them
+	private Position rootPosition = null;
+	private int height = 8;
+	
+	// Bits stored with each node: whether it has been expanded, and whether it is a pass
+	private static final int VISITED = 1, SUB_TERMINAL = 2;
+	
+	// Keep growing the tree on the opponent's time (off by default)
+	private boolean pondering = false;
+	private Ponderer ponderer = new Ponderer(getName() + " ponderer");
 	
 	public TipOthello() {
 		rand = new Random();
-		System.out.println("Tip's Othello Bot Loaded");
+		if (Telemetry.isVerbose()) System.out.println("Tip's Othello Bot Loaded");
 	}
 	
 	public TipOthello(long millis) {
@@ -35,125 +56,206 @@ public class TipOthello implements Player<Reversi>{
 		this.time = millis;
 	}
 	
+	public TipOthello(long millis, int maxNodes) {
+		this(millis);
+		this.maxNodes = maxNodes;
+	}
+	
+	@Override
+	public void init(Reversi game, int playerId) {
+		
+		// There must always be space for the root and its children
+		tree = new SearchTree(2, Math.max(maxNodes, branch + 1));
+		root = SearchTree.NONE;
+	}
+	
 	@Override
 	public void takeTurn(Reversi game, int playerId) {
+		takeTurn(game, playerId, Deadline.none());
+	}
+	
+	@Override
+	public void takeTurn(Reversi game, int playerId, Deadline deadline) {
 
-		long start = System.currentTimeMillis();
+		ponderer.stop();
+		deadline = deadline.limit(time);
+		SearchStats stats = new SearchStats(getName(), playerId, turn++, deadline);
 		int[][] board = getBoard(game);
         
         globalSims = 0;
         
-        Vec2 move = UCTSearch(board, playerId); //bestMove(board, playerId);
+        Vec2 move = UCTSearch(board, playerId, deadline); //bestMove(board, playerId);
         
-        for (Node child : root.children) {
-        	if (child == null) {
-        		System.out.println("Root's Child is null");
-        	} else {
-        		System.out.println("Root's Child has [" + child.wins[1] + " / " + child.wins[2] + "] of " + child.sims);
-        	}
+        if (Telemetry.isVerbose()) for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+        	System.out.println("Root's Child has [" + tree.getWins(child, 1) + " / " + tree.getWins(child, 2) + "] of " + tree.getVisits(child));
         }
 	            
         game.placeDisc(move.x, move.y);
-		printStats(playerId, move, start, bestChild(root));
 		
+		int best = bestChild(root);
+		stats.setMove("(" + (move.x+1) + ", " + (move.y+1) + ")");
+		stats.setScore(tree.getWins(best, playerId) / (double)tree.getVisits(best));
+		stats.addSimulations(globalSims);
+		stats.finish();
+		
+		if (pondering) ponder(best);
+	}
+	
+	@Override
+	public void gameEnd(Reversi game, int playerId, int winnerId) {
+		ponderer.shutdown();
 	}
 	
+	/**
+	 * @param pondering whether to keep searching on the opponent's time (default false).
+	 */
+	public void setPondering(boolean pondering) { this.pondering = pondering; }
+	
+	/**
+	 * @param maxNodes the greatest number of nodes in the tree (default 2^22), taking effect next game.
+	 */
+	public void setMaxNodes(int maxNodes) { this.maxNodes = maxNodes; }
+	
 	//Done
-	private Vec2 UCTSearch(int[][] board, int playerId) {
-		long start = System.currentTimeMillis();
+	private Vec2 UCTSearch(int[][] board, int playerId, Deadline deadline) {
 		int opp = 3-playerId;
-		root = new Node(board, opp, 0, 0);
-		root.populateChildren();
+		height = board[0].length;
+		
+		// Reuse the tree grown while pondering, if it reached this position
+		root = reuseRoot(board, opp);
+		if (root == SearchTree.NONE) {
+			root = tree.newRoot(opp);
+			rootPosition = new Position(board, opp, new Vec2(0, 0));
+			rootPosition.recount();
+		}
+		if (tree.getFirstChild(root) == SearchTree.NONE) populateChildren(root, rootPosition);
 		
 		// use up all the time
-		while (System.currentTimeMillis() - start < time) {
-
-			Node leaf = treePolicy(root);
+		search(root, rootPosition, deadline);
+		
+		return getMove(bestChild(root));
+	}
+	
+	// Run iterations from the root until the deadline expires, replaying the moves
+	// down the tree on a copy of the root position
+	private void search(int root, Position rootPosition, Deadline deadline) {
+		
+		while (!deadline.expired()) {
+			
+			Position position = rootPosition.copy();
+			int leaf = treePolicy(root, position);
 			
-			int[] result = defaultPolicyMulti(leaf);
-			leaf.visited = true;
+			int[] result = defaultPolicyMulti(position);
+			tree.setFlags(leaf, tree.getFlags(leaf) | VISITED);
 			
 			backup(leaf, result);
 		}
+	}
+	
+	// Grow the tree below our move while the opponent thinks, so that whichever reply they make
+	// has already been searched when our next turn begins
+	private void ponder(int next) {
+		
+		if (next == SearchTree.NONE || tree.getTerminal(next) != -1) {
+			root = SearchTree.NONE;
+			return;
+		}
+		
+		descend(rootPosition, next);
+		root = tree.retain(next);
+		if (tree.getFirstChild(root) == SearchTree.NONE) populateChildren(root, rootPosition);
 		
-		return bestChild(root).move;
+		int ponderRoot = root;
+		Position ponderPosition = rootPosition;
+		ponderer.start(deadline -> search(ponderRoot, ponderPosition, deadline));
 	}
 	
-	//Done
-	private Node treePolicy(Node nodeIn) {
+	// Find the opponent's reply (or pass) among the children of the pondered tree, if there is one
+	private int reuseRoot(int[][] board, int opp) {
 		
-		Node node = nodeIn;
+		if (root == SearchTree.NONE || rootPosition.getBoard().length != board.length) return SearchTree.NONE;
 		
-		if (node != null) {
-			while (generateTerminal(node) == -1) {
-							
-				if (node.hasUnexploredChildren()) {
-					
-					//System.out.println(node.pieces[0] + ", " + node.pieces[1]);
-					Node temp = expand(node);
-					if (temp == null) System.out.println("we got him boys");
-					return temp;
+		for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+			
+			Position position = rootPosition.copy();
+			descend(position, child);
+			
+			if (position.player == opp && Arrays.deepEquals(position.getBoard(), board)) {
+				rootPosition = position;
+				return tree.retain(child);
+			}
+		}
+		return SearchTree.NONE;
+	}
+	
+	//Done, leaving the position at that of the node returned
+	private int treePolicy(int nodeIn, Position position) {
+		
+		int node = nodeIn;
+		
+		while (generateTerminal(position) == -1) {
+			
+			if (hasUnexploredChildren(node)) {
+				
+				return expand(node, position);
+				
+			} else {
+				
+				if (tree.getFirstChild(node) == SearchTree.NONE) {
 					
-				} else {
+					// The tree is full, so rollout from here
+					if (tree.isFull()) return node;
 					
 					// This is some hacky workaround for a problem I dont understand
-					if (node.children.size() == 0) {
-						
-						// Swap Players
-						if (!node.subTerminal) {
-							Node flipChild = new Node(node.getBoard(), 3-node.player, node.move);
-							flipChild.pieces[0] = node.pieces[0];
-							flipChild.pieces[1] = node.pieces[1];
-							flipChild.subTerminal = true;
-							node.children.add(flipChild);
-						} else { 
-							node.terminal = node.pieces[0] > node.pieces[1] ? 1 : (node.pieces[0] == node.pieces[1] ? 0 : 2);
-						}
-
+					// Swap Players
+					if ((tree.getFlags(node) & SUB_TERMINAL) == 0) {
+						int flipChild = tree.addChild(node, tree.getMove(node), 3-tree.getPlayer(node), -1);
+						tree.setFlags(flipChild, SUB_TERMINAL);
+					} else {
+						tree.setTerminal(node, position.pieces[0] > position.pieces[1] ? 1 : (position.pieces[0] == position.pieces[1] ? 0 : 2));
 					}
 					
-					Node temp = bestChildUTC(node);
-					if (temp == null) {
-						//System.out.println("better luck next time");
-						//System.out.println(node.pieces[0] + " , " + node.pieces[1]);
-						return node;
-					}
-					node = temp;
 				}
 							
+				int temp = bestChildUTC(node);
+				if (temp == SearchTree.NONE) {
+					return node;
+				}
+				descend(position, temp);
+				node = temp;
 			}
+			
 		}
 		
 		return node;
 	}
 	
 	//Done
-	private Node expand(Node parent) {
-		
-		ArrayList<Node> children = parent.getUnexploredChildren();
-		int rando = rand.nextInt(children.size());
+	private int expand(int parent, Position position) {
 		
-		Node child = children.get(rando);
-		child.visited = true;
+		int child = getRandomChild(parent);
+		tree.setFlags(child, tree.getFlags(child) | VISITED);
 		
-		if (generateTerminal(child) == -1) { child.populateChildren(); }
+		descend(position, child);
+		if (generateTerminal(position) == -1) { populateChildren(child, position); }
 		
 		return child;
 		
 	}
 	
 	//Done
-	private Node bestChildUTC(Node parent) {
+	private int bestChildUTC(int parent) {
 		
-		Node bestChild = null;
+		int bestChild = SearchTree.NONE;
 		double bestChildValue = -1.0f;
 		
-		if (parent.children.size() == 0) System.out.println("There are " + parent.children.size() + " childs");
+		int parentSims = tree.getVisits(parent);
+		int player = tree.getPlayer(parent);
 		
-		for (Node child : parent.children) {
+		for (int child = tree.getFirstChild(parent); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
 			
-			int parentSims = (child.parent == null ? globalSims : parent.sims) ;
-			double value = (child.wins[parent.player] / (double)child.sims) + learningRate * Math.sqrt(2.0 * Math.log(parentSims) / (double)child.sims);
+			double sims = tree.getVisits(child);
+			double value = (tree.getWins(child, player) / sims) + learningRate * Math.sqrt(2.0 * Math.log(parentSims) / sims);
 			
 			if (value > bestChildValue) {
 				bestChildValue = value;
@@ -164,7 +266,7 @@ public class TipOthello implements Player<Reversi>{
 		return bestChild;
 	}
 	
-	private int[] defaultPolicyMulti(Node leafIn) {
+	private int[] defaultPolicyMulti(Position leafIn) {
 		int[] reward = new int[4];
 		
 		int player = 3-leafIn.player;
@@ -187,10 +289,25 @@ public class TipOthello implements Player<Reversi>{
 		
 	}
 	
+	// Play out a game from each of the player's moves on the board, one at a time, returning
+	// the number of playouts and the sum of their rewards. For benchmarking
+	int[] playouts(int[][] board, int playerId) {
+
+		Position position = new Position(board, 3-playerId, new Vec2(0, 0));
+		position.recount();
+
+		int[] result = new int[2];
+		for (Vec2 move : getValidPositions(position.getBoard(), playerId)) {
+			result[1] += defaultPolicy(position, move);
+			result[0]++;
+		}
+		return result;
+	}
+
 	// Done
-	private int defaultPolicy(Node leafIn, Vec2 move) {
+	private int defaultPolicy(Position leafIn, Vec2 move) {
 		
-		Node leaf = new Node(leafIn.getBoard(), leafIn.player, leafIn.move);
+		Position leaf = new Position(leafIn.getBoard(), leafIn.player, leafIn.move);
 		
 		int reward = 0;
 
@@ -227,29 +344,28 @@ public class TipOthello implements Player<Reversi>{
 	}
 	
 	// Done
-	private void backup(Node childIn, int[] result) {
+	private void backup(int childIn, int[] result) {
 		
-		Node child = childIn;
+		int child = childIn;
 		
 		do {
-			child.sims += result[3];
-			child.updateWins(result);
+			tree.update(child, result);
 			
-			child = child.parent;
-		} while (child != null);
+			child = tree.getParent(child);
+		} while (child != SearchTree.NONE);
 	}
 	
     // Get the bets child based on Wins / Sims
-    private Node bestChild(Node root) {
+    private int bestChild(int root) {
     	
-    	Node maxChild = null; 
+    	int maxChild = SearchTree.NONE;
     	float maxChildValue = -1.f;
-    	int player = 3-root.player;
+    	int player = 3-tree.getPlayer(root);
     	
-    	for (Node child : root.getChildren()) {
+    	for (int child = tree.getFirstChild(root); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
     		
-    		float myWins = child.wins[player] + 0.0001f;
-			float mySims = child.sims + 0.0001f;
+    		float myWins = tree.getWins(child, player) + 0.0001f;
+			float mySims = tree.getVisits(child) + 0.0001f;
 			float finalScore = (float)myWins / (float)mySims;
 			
 			if (finalScore > maxChildValue) {
@@ -367,29 +483,68 @@ public class TipOthello implements Player<Reversi>{
     }
     
 	// Play move
-	public Node generateChild(Node parent, Vec2 move) {
+	public Position generateChild(Position parent, Vec2 move) {
 		
 		// encode new child with its ID, a Move and a tempBoard.
-		Node newChild = new Node(parent, parent.getBoard(), 3-parent.player, move);
+		Position newChild = new Position(parent.getBoard(), parent.player, move);
+		newChild.recount();
 		
 		// Board will now have been deepCopied, we can edit in place.
-		Set<Vec2> toFlip = getFlipped(newChild.getBoard(), newChild.player, move);
+		place(newChild, move);
 		
-		newChild.getBoard()[move.x][move.y] = newChild.player;
-		newChild.pieces[newChild.player-1]++;
+		return newChild;
+	}
+	
+	// Play the move (or pass) leading to a child in place, on the position of its parent
+	private void descend(Position position, int child) {
 		
-		for (Vec2 stone : toFlip) {
-			newChild.getBoard()[stone.x][stone.y] = newChild.player;
-			newChild.pieces[newChild.player-1]++;
-			newChild.pieces[(3-newChild.player)-1]--;
+		if ((tree.getFlags(child) & SUB_TERMINAL) != 0) {
+			position.player = 3-position.player;
+		} else {
+			place(position, getMove(child));
 		}
+	}
+	
+	// Place a disc for the next player, flipping any it captures (in place, unlike getFlipped())
+	private void place(Position position, Vec2 move) {
 		
-		newChild.terminal = generateTerminal(newChild);
+		int player = 3-position.player;
+		int[][] board = position.getBoard();
 		
-		return newChild;
+		board[move.x][move.y] = player;
+		position.pieces[player-1]++;
+		
+		for (int i = -1; i <= 1; i++) {
+			for (int j = -1; j <= 1; j++) {
+				
+				if (i == 0 && j == 0) continue;
+				
+				// Find the end of the run of opposing discs in this direction
+				int dist = 1;
+				while (isOnBoard(board, move.x + i*dist, move.y + j*dist)
+						&& board[move.x + i*dist][move.y + j*dist] == 3-player) dist++;
+				
+				// The run is only captured if enclosed by a friendly disc
+				if (dist == 1 || !isOnBoard(board, move.x + i*dist, move.y + j*dist)
+						|| board[move.x + i*dist][move.y + j*dist] != player) continue;
+				
+				for (int d = 1; d < dist; d++) {
+					board[move.x + i*d][move.y + j*d] = player;
+					position.pieces[player-1]++;
+					position.pieces[(3-player)-1]--;
+				}
+			}
+		}
+		
+		position.player = player;
+		position.move = move;
 	}
 	
-	private int generateTerminal(Node leaf) {
+	private boolean isOnBoard(int[][] board, int x, int y) {
+		return x >= 0 && x < board.length && y >= 0 && y < board[0].length;
+	}
+	
+	private int generateTerminal(Position leaf) {
 		int terminal = -1;
 
 		if (leaf.pieces[0] + leaf.pieces[1] >= branch || 
@@ -409,38 +564,12 @@ public class TipOthello implements Player<Reversi>{
 	}
 	
 	private int[][] getBoard(Reversi game) {
-
-		int[][] board = new int[game.getWidth()][game.getHeight()];
-		
-		for (int xx = 0 ; xx < game.getWidth(); xx++) {
-			for (int yy = 0 ; yy < game.getHeight(); yy++) {
-				board[xx][yy] = game.getDisc(xx, yy);
-			}
-			
-		}
-		
-		return board;
-		
+		return game.getSnapshot().toArray();
 	}
 	
     @Override
     public String getName() { return "TipTacos's Othello MCTS"; }
 	
-	private void printStats(int playerId, Vec2 move, long start, Node best) {
-        System.out.println("=======================");
-        System.out.println("TipMCTS Statistics:");
-        System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        //System.out.println("Turn:        " + turn++);
-        //System.out.println("Expectation: " + move[0]);
-        System.out.println("Move:        [" + move.x + ", " + move.y + "]"); 
-        System.out.println("Win Probab.  " + Math.round((best.wins[playerId] / (double)best.sims) * 1000.0) / 10.0 + "%"); 
-        //System.out.println("Depth:       " + move[2]);
-        System.out.println("Global Sims: " + globalSims);
-        System.out.println("Time:        "
-                + (System.currentTimeMillis() - start) + "ms");
-	}
-	
     class Vec2 {
     	
     	int x = 0, y = 0;
@@ -459,40 +588,75 @@ public class TipOthello implements Player<Reversi>{
     	}
     }
     
-    // NODE CLASS
-	class Node {
+    // NODES, stored in the tree by index
+	
+	// If there is at least one unexplored child.
+	private boolean hasUnexploredChildren(int node) {
 		
-		private Node parent;
-		private ArrayList<Node> children = new ArrayList<Node>();
-		private boolean visited = false;
-		private int[][] board;
-		private Vec2 move;
-		private int wins[] = new int[3], sims;
-		private int player;
-		private int[] pieces = new int[] {2, 2};
-		private int terminal = -1;
-		private boolean subTerminal = false;
+		for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+			if ((tree.getFlags(child) & VISITED) == 0) return true;
+		}
+		return false;
 		
-		public Node(Node parent, int[][] board, int player, int x, int y) {
-			
-			this(board, player, x, y);
-			recount();
+	}
+	
+	// Return a random child that has been unexpored
+	private int getRandomChild(int node) {
+		
+		int unexplored = 0;
+		for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+			if ((tree.getFlags(child) & VISITED) == 0) unexplored++;
 		}
 		
-		public Node(Node parent, int[][] board, int player, Vec2 move) {
-			
-			this(board, player, move);
-			this.parent = parent;
-			recount();
+		int index = rand.nextInt(unexplored);
+		for (int child = tree.getFirstChild(node); ; child = tree.getNextSibling(child)) {
+			if ((tree.getFlags(child) & VISITED) == 0 && index-- == 0) return child;
 		}
 		
-		public Node(int[][] board, int player, int x, int y) {
-			
-			this(board, player, new Vec2(x, y));
+	}
+	
+	// Populate children, given the position at the node, in order of priority
+	private void populateChildren(int node, Position position) {
+		
+		ArrayList<Vec2> validMoves = getValidPositions(position.getBoard(), 3-position.player);
+		
+		// TODO
+		validMoves.sort(movePriorityComparator);
+		
+		for (Vec2 move : validMoves) {
+			Position newChild = generateChild(position, move);
 			
+			// Stop once the tree is full
+			if (tree.addChild(node, move.x * height + move.y, newChild.player, generateTerminal(newChild)) == SearchTree.NONE) break;
+		}
+		
+	}
+	
+	// The move leading to a node
+	private Vec2 getMove(int node) {
+		
+		int move = tree.getMove(node);
+		return new Vec2(move / height, move % height);
+		
+	}
+	
+	public final Comparator<Vec2> movePriorityComparator = new Comparator<Vec2>() {
+		@Override
+		public int compare(Vec2 m1, Vec2 m2) {
+			return (m2.prio < m1.prio ? -1 :
+				(m2.prio == m1.prio ? 0 : 1));
 		}
+	};
+	
+	// A board position, with the player who made the last move and the number of discs of each
+	class Position {
 		
-		public Node(int[][] board, int player, Vec2 move) {
+		private int[][] board;
+		private Vec2 move;
+		private int player;
+		private int[] pieces = new int[] {2, 2};
+		
+		public Position(int[][] board, int player, Vec2 move) {
 			
 			this.board = deepCopy(board);
 			this.player = player;
@@ -512,93 +676,11 @@ public class TipOthello implements Player<Reversi>{
 			}
 		}
 		
-		// Return the score including the learning rate parameter
-		public float score() {
+		public Position copy() {
 			
-			int parentSims = 0;
-			if (parent == null) {
-				parentSims = globalSims;
-			} else {
-				parentSims = parent.sims;
-			}
-			
-			return (float) (((float)(wins[player]) / (float)sims) + learningRate * Math.sqrt(2.0 * Math.log(parentSims) / (float)sims));
-			
-		}
-		
-		// If there is at least one unexplored child.
-		public boolean hasUnexploredChildren() {
-			
-			return getUnexploredChildren().size() > 0;
-			
-		}
-		
-		public void updateWins(int[] newWins) {
-			
-			for (int ii = 0; ii < 3; ii++) {
-				//System.out.print("chnaged from " + wins[ii]);
-				wins[ii] += newWins[ii];
-			}
-			
-		}
-		
-		// Get the integer for index of each of the non-null children
-		private ArrayList<Node> getUnexploredChildren() {
-			
-			ArrayList<Node> unexplored = new ArrayList<Node>();
-								
-			for (Node child : children) {
-								
-				if (!child.visited) { 
-					unexplored.add(child);
-				}
-
-			}
-						
-			return unexplored;
-			
-		}
-		
-		// Populate children
-		public void populateChildren() {
-			
-			ArrayList<Vec2> validMoves = getValidPositions(board, 3-player);
-			
-			for (Vec2 move : validMoves) {
-				Node newChild = generateChild(this, move);
-				children.add(newChild);
-			}
-			
-			// TODO
-			children.sort(movePriorityComparator);
-						
-		}
-		
-		// Return a random child that has been unexpored
-		public Node getRandomChild() {
-			
-			ArrayList<Node> unexplored = getUnexploredChildren();
-			int index = rand.nextInt(unexplored.size());
-			
-			return unexplored.get(index);
-			
-		}
-		
-		public Node getChildFromMove(Vec2 move) {
-			
-			for (Node child : children) {
-				
-				if (child.move.x == move.x && child.move.y == move.y) {
-					return child;
-				}
-
-			}
-			return null;
-		}
-		
-		public ArrayList<Node> getChildren() {
-			
-			return children;
+			Position copy = new Position(board, player, move);
+			copy.pieces = pieces.clone();
+			return copy;
 			
 		}
 		
@@ -622,14 +704,6 @@ public class TipOthello implements Player<Reversi>{
 			
 		}
 		
-		public final Comparator<Node> movePriorityComparator = new Comparator<Node>() {         
-			@Override         
-			public int compare(Node n1, Node n2) {             
-				return (n2.move.prio < n1.move.prio ? -1 :                     
-					(n2.move.prio == n1.move.prio ? 0 : 1));           
-			}     
-		}; 
-		
 	}
 	
 }
@@ -2,6 +2,7 @@ package strategybots.games;
 
 import java.util.Optional;
 
+import strategybots.games.base.Snapshot;
 import strategybots.games.base.TileGame;
 
 /**
@@ -10,7 +11,8 @@ import strategybots.games.base.TileGame;
  * Rules: <a href="https://en.wikipedia.org/wiki/Game_of_the_Amazons">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Amazons>'.<br>
- * Human players can be made by instantiating 'AmazonsController'.
+ * Human players can be made by instantiating 'AmazonsController'.<br>
+ * The rules are modelled by 'AmazonsState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -143,6 +145,19 @@ public class Amazons extends TileGame {
         else return getPieceInst(x, y).get().getOwnerId();
     }
     
+    /**
+     * Returns an immutable snapshot of the current contents of the board.<br>
+     * <table border="1">
+     * <tr><td>0</td><td>Empty tile.</td></tr>
+     * <tr><td>1</td><td>Amazon owned by player 1.</td></tr>
+     * <tr><td>2</td><td>Amazon owned by player 2.</td></tr>
+     * <tr><td>3</td><td>Arrow.</td></tr>
+     * </table>
+     * @return a snapshot of the board.
+     */
+    @Override
+    public Snapshot getSnapshot() { return super.getSnapshot(); }
+    
     @Override
     protected void init() {
         
@@ -358,6 +373,9 @@ public class Amazons extends TileGame {
             super(ownerId, x, y, ARROW_TEXTURES[ownerId - 1]);
         }
         
+        @Override
+        protected int getValue() { return 3; }
+        
         @Override
         public boolean movePiece(int x_to, int y_to) {
             //Arrows can't be moved.
@@ -0,0 +1,184 @@
+package strategybots.games;
+
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Game of the Amazons state, for use in searching.</b><br>
+ * <br>
+ * Each move combines the movement of an amazon with the shooting of an arrow,
+ * encoded as ((from * size + to) * size + arrow), where each is a position index
+ * (x * height + y) and 'size' is the number of positions on the board.<br>
+ * Values on the grid are as given by 'Amazons.getSnapshot()'.<br>
+ * A player who cannot move loses the game.
+ *
+ * @author Alec Dorrington
+ */
+public class AmazonsState extends GridState {
+    
+    /** Value of arrows on the grid. */
+    private static final int ARROW = 3;
+    
+    /** The x and y components of each of the eight directions. */
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    
+    /** The maximum number of amazons owned by either player. */
+    private final int numAmazons;
+    
+    /**
+     * Constructs the state of a new game, with the amazons in their starting positions.
+     * @param width the width of the game board.
+     * @param height the height of the game board.
+     */
+    public AmazonsState(int width, int height) {
+        
+        super(width, height, 1);
+        
+        //Determine appropriate spacing for pieces given board size.
+        int h_indent = (width - 1) / 3;
+        int v_indent = (height - 1) / 3;
+        
+        //Place the amazons in their starting positions.
+        set(0*height + v_indent, 1);
+        set(h_indent*height + 0, 1);
+        set((width - 1 - h_indent)*height + 0, 1);
+        set((width - 1)*height + v_indent, 1);
+        
+        set(0*height + height - 1 - v_indent, 2);
+        set(h_indent*height + height - 1, 2);
+        set((width - 1 - h_indent)*height + height - 1, 2);
+        set((width - 1)*height + height - 1 - v_indent, 2);
+        
+        numAmazons = 4;
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.<br>
+     * Must be constructed before an amazon is moved on the current turn.
+     * @param game the game being played.
+     */
+    public AmazonsState(Amazons game) {
+        
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+        
+        int[] count = new int[4];
+        for(byte cell : cells) count[cell]++;
+        numAmazons = Math.max(count[1], count[2]);
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected AmazonsState(AmazonsState state) {
+        super(state);
+        numAmazons = state.numAmazons;
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(Amazons game, int move) {
+        
+        int arrow = move % cells.length, to = move / cells.length % cells.length;
+        int from = move / cells.length / cells.length;
+        
+        return game.moveAmazon(from / height, from % height, to / height, to % height)
+                && game.shootArrow(arrow / height, arrow % height);
+    }
+    
+    @Override
+    public int getMaxMoves() {
+        
+        //Bound on the number of positions reachable in a straight line from any position.
+        int reach = (width - 1) + (height - 1) + 2 * (Math.min(width, height) - 1);
+        return numAmazons * reach * reach;
+    }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        int numMoves = 0, playerId = getCurrentPlayerId();
+        
+        for(int from = 0; from < cells.length; from++) {
+            
+            if(cells[from] != playerId) continue;
+            
+            //Lift the amazon from the board, so arrows may pass through its old position.
+            cells[from] = 0;
+            
+            for(int dir = 0; dir < 8; dir++) {
+                
+                //For each position to which the amazon can move.
+                int x = from / height + DX[dir], y = from % height + DY[dir];
+                while(inBounds(x, y) && get(x, y) == 0) {
+                    
+                    int to = x*height + y;
+                    cells[to] = (byte) playerId;
+                    
+                    //For each position at which it can then shoot.
+                    for(int arrowDir = 0; arrowDir < 8; arrowDir++) {
+                        
+                        int xx = x + DX[arrowDir], yy = y + DY[arrowDir];
+                        while(inBounds(xx, yy) && get(xx, yy) == 0) {
+                            out[numMoves++] = (from*cells.length + to)*cells.length + xx*height + yy;
+                            xx += DX[arrowDir];
+                            yy += DY[arrowDir];
+                        }
+                    }
+                    cells[to] = 0;
+                    x += DX[dir];
+                    y += DY[dir];
+                }
+            }
+            cells[from] = (byte) playerId;
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        int arrow = move % cells.length, to = move / cells.length % cells.length;
+        int from = move / cells.length / cells.length;
+        
+        set(from, 0);
+        set(to, getCurrentPlayerId());
+        set(arrow, ARROW);
+        switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        int arrow = move % cells.length, to = move / cells.length % cells.length;
+        int from = move / cells.length / cells.length;
+        
+        switchPlayer();
+        set(arrow, 0);
+        set(to, 0);
+        set(from, getCurrentPlayerId());
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        //The player to move loses if none of their amazons have anywhere to move.
+        for(int i = 0; i < cells.length; i++) {
+            
+            if(cells[i] != getCurrentPlayerId()) continue;
+            
+            for(int dir = 0; dir < 8; dir++) {
+                int xx = i / height + DX[dir], yy = i % height + DY[dir];
+                if(inBounds(xx, yy) && get(xx, yy) == 0) return IN_PROGRESS;
+            }
+        }
+        return getCurrentPlayerId() % 2 + 1;
+    }
+    
+    @Override
+    public AmazonsState copy() { return new AmazonsState(this); }
+}
@@ -2,6 +2,7 @@ package strategybots.games;
 
 import java.util.Optional;
 
+import strategybots.games.base.Snapshot;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -12,7 +13,8 @@ import strategybots.games.graphics.Colour;
  * Rules: <a href="https://en.wikipedia.org/wiki/English_draughts">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Checkers>'.<br>
- * Human players can be made by instantiating 'CheckersController'.
+ * Human players can be made by instantiating 'CheckersController'.<br>
+ * The rules are modelled by 'CheckersState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -169,11 +171,36 @@ public class Checkers extends TileGame {
         else return 2;
     }
     
+    /**
+     * @return the index (x * height + y) of the piece which must
+     * continue capturing on this turn, or -1 if there is none.
+     */
+    int getChainIndex() {
+        //May be called before the fields of this game have been initialised.
+        Optional<Piece> moved = this.moved;
+        if(moved == null || !moved.isPresent()) return -1;
+        return moved.get().getCol() * getHeight() + moved.get().getRow();
+    }
+    
+    /**
+     * Returns an immutable snapshot of the current contents of the board.<br>
+     * <table border="1">
+     * <tr><td>0</td><td>Empty tile.</td></tr>
+     * <tr><td>1</td><td>Regular piece owned by player 1.</td></tr>
+     * <tr><td>2</td><td>Regular piece owned by player 2.</td></tr>
+     * <tr><td>3</td><td>King owned by player 1.</td></tr>
+     * <tr><td>4</td><td>King owned by player 2.</td></tr>
+     * </table>
+     * @return a snapshot of the board.
+     */
+    @Override
+    public Snapshot getSnapshot() { return super.getSnapshot(); }
+    
     @Override
     protected void init() {
         
         //Set the board colours.
-        getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
+        if(!isHeadless()) getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
         setHighlightColour(Colour.rgb(74, 105, 189));
         
         //Place the initial pieces.
@@ -191,8 +218,9 @@ public class Checkers extends TileGame {
     @Override
     protected void checkEnd() {
         
-        //This player wins if the opponent has no remaining pieces.
-        if(getPieces(getCurrentPlayerId()%2+1).size()==0)
+        //This player wins if the opponent has no remaining pieces, or none of them can move.
+        if(getPieces(getCurrentPlayerId()%2+1).stream()
+                .noneMatch(piece -> ((CheckersPiece)piece).canMove()))
             endGame(getCurrentPlayerId());
     }
     
@@ -362,6 +390,20 @@ public class Checkers extends TileGame {
          * @return whether this piece is currently able to make a capture.
          */
         abstract boolean canCapture();
+        
+        /**
+         * @return whether this piece is currently able to make any move.
+         */
+        abstract boolean canMove();
+        
+        /**
+         * @param x the x position to check.
+         * @param y the y position to check.
+         * @return whether the position is in bounds and unoccupied.
+         */
+        boolean isFree(int x, int y) {
+            return inBounds(x, y) && !getPieceInst(x, y).isPresent();
+        }
     }
     
     /**
@@ -404,6 +446,16 @@ public class Checkers extends TileGame {
             }
             return false;
         }
+        
+        @Override
+        boolean canMove() {
+            
+            //Check if the forward diagonal step in each diagonal is free.
+            for(int xx = -1; xx <= 1; xx += 2) {
+                if(isFree(getCol()+xx, getRow() + (getOwnerId()==1?-1:1))) return true;
+            }
+            return canCapture();
+        }
     }
     
     /**
@@ -418,6 +470,9 @@ public class Checkers extends TileGame {
             super(ownerId, x, y, KING_TEXTURES[ownerId-1]);
         }
         
+        @Override
+        protected int getValue() { return getOwnerId() + 2; }
+        
         @Override
         boolean canCapture() {
             
@@ -429,5 +484,17 @@ public class Checkers extends TileGame {
             }
             return false;
         }
+        
+        @Override
+        boolean canMove() {
+            
+            //Check if the diagonal step in each diagonal is free.
+            for(int xx = -1; xx <= 1; xx += 2) {
+                for(int yy = -1; yy <= 1; yy += 2) {
+                    if(isFree(getCol()+xx, getRow()+yy)) return true;
+                }
+            }
+            return canCapture();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+package strategybots.games;
+
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Checkers state, for use in searching.</b><br>
+ * <br>
+ * Each move is a single step or jump, encoded as (from * size + to), where 'from' and 'to'
+ * are position indices (x * height + y) and 'size' is the number of positions on the board.
+ * As in the game, a player who can continue capturing with the same piece moves again.<br>
+ * Values on the grid are as given by 'Checkers.getSnapshot()'.<br>
+ * A player who cannot move loses the game.
+ *
+ * @author Alec Dorrington
+ */
+public class CheckersState extends GridState {
+    
+    /** The number of pieces owned by each player. */
+    private final int[] numPieces = new int[3];
+    
+    /** The index of the piece which must continue capturing this turn, or -1. */
+    private int chain = -1;
+    
+    /**
+     * Constructs the state of a new game, with the initial pieces.
+     * @param width the width of the game board.
+     * @param height the height of the game board.
+     * @param pieceRows the number of rows in which initial pieces should be placed.
+     */
+    public CheckersState(int width, int height, int pieceRows) {
+        
+        super(width, height, 1);
+        
+        //Place the initial pieces.
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < pieceRows; y++) {
+                
+                //Player one's pieces (red).
+                if((x+height-y-1)%2==0) place(x*height + height-y-1, 1);
+                //Player two's pieces (white).
+                if((x+y)%2==0) place(x*height + y, 2);
+            }
+        }
+    }
+    
+    /**
+     * Constructs the state of a new game, using the default 8x8 board with 3 rows of pieces.
+     */
+    public CheckersState() {
+        this(8, 8, 3);
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public CheckersState(Checkers game) {
+        
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+        for(byte cell : cells) {
+            if(cell != 0) numPieces[getOwner(cell)]++;
+        }
+        chain = game.getChainIndex();
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected CheckersState(CheckersState state) {
+        super(state);
+        System.arraycopy(state.numPieces, 0, numPieces, 0, numPieces.length);
+        chain = state.chain;
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(Checkers game, int move) {
+        
+        int from = move / cells.length, to = move % cells.length;
+        return game.movePiece(from / height, from % height, to / height, to % height);
+    }
+    
+    @Override
+    public int getMaxMoves() { return cells.length * 4; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        if(numPieces[getCurrentPlayerId()] == 0) return 0;
+        
+        //A piece partway through a chain of captures must continue capturing.
+        if(chain != -1) return addMoves(chain, 2, out, 0);
+        
+        //Captures are mandatory if any are available.
+        int numMoves = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] != 0 && getOwner(cells[i]) == getCurrentPlayerId()) {
+                numMoves = addMoves(i, 2, out, numMoves);
+            }
+        }
+        if(numMoves > 0) return numMoves;
+        
+        //Otherwise, any piece may make a simple diagonal move.
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] != 0 && getOwner(cells[i]) == getCurrentPlayerId()) {
+                numMoves = addMoves(i, 1, out, numMoves);
+            }
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        int from = move / cells.length, to = move % cells.length;
+        int piece = cells[from], playerId = getOwner(piece);
+        boolean jump = Math.abs(to / height - from / height) == 2;
+        
+        push(chain);
+        
+        //Capture the piece which was jumped over.
+        int captured = 0;
+        if(jump) {
+            int mid = (from + to) / 2;
+            captured = cells[mid];
+            set(mid, 0);
+            numPieces[getOwner(captured)]--;
+        }
+        push(captured);
+        
+        //Move the piece, crowning it if it reached the other end of the board.
+        int row = to % height;
+        boolean crowned = piece <= 2 && (playerId == 1 ? row == 0 : row == height-1);
+        set(from, 0);
+        set(to, crowned ? piece + 2 : piece);
+        push(crowned ? 1 : 0);
+        
+        //The turn continues if further captures are possible, and the piece wasn't crowned.
+        if(jump && !crowned && canCapture(to)) {
+            chain = to;
+            push(0);
+        } else {
+            chain = -1;
+            switchPlayer();
+            push(1);
+        }
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        int from = move / cells.length, to = move % cells.length;
+        
+        if(pop() == 1) switchPlayer();
+        boolean crowned = pop() == 1;
+        int captured = pop();
+        
+        //Move the piece back, uncrowning it if it was crowned.
+        int piece = cells[to];
+        set(to, 0);
+        set(from, crowned ? piece - 2 : piece);
+        
+        //Restore the captured piece.
+        if(captured != 0) {
+            set((from + to) / 2, captured);
+            numPieces[getOwner(captured)]++;
+        }
+        chain = pop();
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        //A player with no pieces or no legal moves loses.
+        if(numPieces[getCurrentPlayerId()] == 0 || !hasMove()) {
+            return getCurrentPlayerId() % 2 + 1;
+        }
+        return IN_PROGRESS;
+    }
+    
+    @Override
+    public CheckersState copy() { return new CheckersState(this); }
+    
+    /**
+     * @param piece the value of a piece.
+     * @return the ID of the owner of the piece.
+     */
+    private static int getOwner(int piece) { return (piece - 1) % 2 + 1; }
+    
+    /**
+     * Places a piece without moving, for setting up the board.
+     * @param index the index of the position at which to place the piece.
+     * @param piece the value of the piece.
+     */
+    private void place(int index, int piece) {
+        set(index, piece);
+        numPieces[getOwner(piece)]++;
+    }
+    
+    /**
+     * Adds the moves of a given distance which can be made by a piece.
+     * @param index the index of the piece.
+     * @param dist 1 for simple moves, 2 for jumps.
+     * @param out the array to which to add moves.
+     * @param numMoves the number of moves already in the array.
+     * @return the new number of moves in the array.
+     */
+    private int addMoves(int index, int dist, int[] out, int numMoves) {
+        
+        int x = index / height, y = index % height, piece = cells[index];
+        int forward = getOwner(piece) == 1 ? -1 : 1;
+        
+        for(int dx = -1; dx <= 1; dx += 2) {
+            for(int dy = -1; dy <= 1; dy += 2) {
+                
+                //Men may only move forwards.
+                if(piece <= 2 && dy != forward) continue;
+                
+                if(isValid(x, y, x + dx*dist, y + dy*dist, piece)) {
+                    out[numMoves++] = index * cells.length + (x + dx*dist) * height + y + dy*dist;
+                }
+            }
+        }
+        return numMoves;
+    }
+    
+    /**
+     * Determines whether a step or jump is valid, ignoring direction and mandatory captures.
+     * @param x the x position of the piece.
+     * @param y the y position of the piece.
+     * @param x_to the x position to which the piece is to move.
+     * @param y_to the y position to which the piece is to move.
+     * @param piece the value of the piece.
+     * @return whether the move is valid.
+     */
+    private boolean isValid(int x, int y, int x_to, int y_to, int piece) {
+        
+        //Ensure destination is in bounds and unoccupied.
+        if(!inBounds(x_to, y_to) || get(x_to, y_to) != 0) return false;
+        
+        //Ensure a jump is over an opponent piece.
+        if(Math.abs(x_to - x) == 2) {
+            int captured = get((x + x_to) / 2, (y + y_to) / 2);
+            return captured != 0 && getOwner(captured) != getOwner(piece);
+        }
+        return true;
+    }
+    
+    /**
+     * @param index the index of the piece to check.
+     * @return whether this piece is currently able to make a capture.
+     */
+    private boolean canCapture(int index) {
+        
+        int x = index / height, y = index % height, piece = cells[index];
+        int forward = getOwner(piece) == 1 ? -1 : 1;
+        
+        for(int dx = -2; dx <= 2; dx += 4) {
+            for(int dy = -2; dy <= 2; dy += 4) {
+                if(piece <= 2 && dy != 2*forward) continue;
+                if(isValid(x, y, x + dx, y + dy, piece)) return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return whether the current player has any legal moves.
+     */
+    private boolean hasMove() {
+        
+        if(chain != -1) return true;
+        
+        for(int i = 0; i < cells.length; i++) {
+            
+            if(cells[i] != 0 && getOwner(cells[i]) == getCurrentPlayerId()) {
+                
+                int x = i / height, y = i % height, piece = cells[i];
+                int forward = getOwner(piece) == 1 ? -1 : 1;
+                
+                for(int dist = 1; dist <= 2; dist++) {
+                    for(int dx = -dist; dx <= dist; dx += 2*dist) {
+                        for(int dy = -dist; dy <= dist; dy += 2*dist) {
+                            if(piece <= 2 && Integer.signum(dy) != forward) continue;
+                            if(isValid(x, y, x + dx, y + dy, piece)) return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
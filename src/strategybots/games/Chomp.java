@@ -1,5 +1,6 @@
 package strategybots.games;
 
+import strategybots.games.base.Snapshot;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -12,7 +13,8 @@ import strategybots.games.graphics.Tile;
  * Rules: <a href="https://en.wikipedia.org/wiki/Chomp">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Chomp>'.<br>
- * Human players can be made by instantiating 'ChompController'.
+ * Human players can be made by instantiating 'ChompController'.<br>
+ * The rules are modelled by 'ChompState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -91,12 +93,15 @@ public class Chomp extends TileGame {
                     
                     //Set the tile to chomped and increment the chomp counter.
                     chomped[xx][yy] = true;
+                    setCell(xx, yy, getCurrentPlayerId());
                     numChomped++;
                     
                     //Recolour the tile to indicate that it was chomped by the current player.
-                    getBoard().setColour(xx, yy, (xx + yy) % 2 == 0 ?
-                            PLAYER_COLOURS[getCurrentPlayerId()-1].lighten(0.05F) :
-                            PLAYER_COLOURS[getCurrentPlayerId()-1]);
+                    if(!isHeadless()) {
+                        getBoard().setColour(xx, yy, (xx + yy) % 2 == 0 ?
+                                PLAYER_COLOURS[getCurrentPlayerId()-1].lighten(0.05F) :
+                                PLAYER_COLOURS[getCurrentPlayerId()-1]);
+                    }
                 }
             }
         }
@@ -112,10 +117,23 @@ public class Chomp extends TileGame {
      */
     public boolean isTileChomped(int x, int y) { return chomped[x][y]; }
     
+    /**
+     * Returns an immutable snapshot of the current contents of the board.<br>
+     * <table border="1">
+     * <tr><td>0</td><td>Tile not yet chomped.</td></tr>
+     * <tr><td>1</td><td>Tile chomped by player 1.</td></tr>
+     * <tr><td>2</td><td>Tile chomped by player 2.</td></tr>
+     * </table>
+     * @return a snapshot of the board.
+     */
+    @Override
+    public Snapshot getSnapshot() { return super.getSnapshot(); }
+    
     @Override
     protected void init() {
         
         chomped = new boolean[getWidth()][getHeight()];
+        if(isHeadless()) return;
         
         //Set the board colours.
         getBoard().setBackground(Pattern.CHECKER, BOARD_COLOUR1, BOARD_COLOUR2);
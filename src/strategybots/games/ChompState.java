@@ -0,0 +1,121 @@
+package strategybots.games;
+
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Chomp state, for use in searching.</b><br>
+ * <br>
+ * Each move is the index (x * height + y) of the tile from which to chomp.<br>
+ * Values on the grid are as given by 'Chomp.getSnapshot()'.
+ *
+ * @author Alec Dorrington
+ */
+public class ChompState extends GridState {
+    
+    /** The running total number of tiles which have been chomped. */
+    private int numChomped = 0;
+    
+    /**
+     * Constructs the state of a new game, with no tiles chomped.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     */
+    public ChompState(int width, int height) {
+        super(width, height, 1);
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public ChompState(Chomp game) {
+        
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+        for(byte cell : cells) {
+            if(cell != 0) numChomped++;
+        }
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected ChompState(ChompState state) {
+        super(state);
+        numChomped = state.numChomped;
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(Chomp game, int move) {
+        return game.chompTile(move / height, move % height);
+    }
+    
+    @Override
+    public int getMaxMoves() { return cells.length; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        if(terminalResult() != IN_PROGRESS) return 0;
+        
+        //Any tile which isn't yet chomped may be chomped.
+        int numMoves = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] == 0) out[numMoves++] = i;
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        int x = move / height, y = move % height, count = 0;
+        
+        //Chomp all tiles above and to the right, remembering which they were.
+        for(int xx = x; xx < width; xx++) {
+            for(int yy = y; yy < height; yy++) {
+                
+                if(get(xx, yy) == 0) {
+                    set(xx*height + yy, getCurrentPlayerId());
+                    push(xx*height + yy);
+                    count++;
+                }
+            }
+        }
+        push(count);
+        numChomped += count;
+        switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        switchPlayer();
+        
+        int count = pop();
+        for(int i = 0; i < count; i++) {
+            set(pop(), 0);
+        }
+        numChomped -= count;
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        //The player who chomped the poison tile loses.
+        if(cells[0] != 0) return getCurrentPlayerId();
+        
+        //The player who leaves only the poison tile wins.
+        if(numChomped == cells.length - 1) return getCurrentPlayerId() % 2 + 1;
+        
+        return IN_PROGRESS;
+    }
+    
+    @Override
+    public ChompState copy() { return new ChompState(this); }
+}
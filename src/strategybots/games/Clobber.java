@@ -8,7 +8,8 @@ import strategybots.games.base.TileGame;
  * Rules: <a href="https://en.wikipedia.org/wiki/Clobber">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Clobber>'.<br>
- * Human players can be made by instantiating 'ClobberController'.
+ * Human players can be made by instantiating 'ClobberController'.<br>
+ * The rules are modelled by 'ClobberState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -122,8 +123,7 @@ public class Clobber extends TileGame {
                     //If this piece is adjacent to the opponents piece,
                     if((x==piece.getCol() ^ y==piece.getRow()) &&
                     //And is itself a friendly piece:
-                            getPieceInst(x, y).isPresent() &&
-                            getPieceInst(x, y).get().getOwnerId() == getCurrentPlayerId()) {
+                            isOwnedBy(x, y, getCurrentPlayerId())) {
                         
                         //Then there is a piece left for the opponent to clobber.
                         //Thus, you haven't yet won.
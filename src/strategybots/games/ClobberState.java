@@ -0,0 +1,134 @@
+package strategybots.games;
+
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Clobber state, for use in searching.</b><br>
+ * <br>
+ * Each move is encoded as (from * 4 + dir), where 'from' is the index (x * height + y)
+ * of the stone to move and 'dir' is the direction in which to move it (+x, -x, +y, -y).<br>
+ * Values on the grid are the ID of the owner of each stone, or 0 if empty.<br>
+ * A player who cannot move loses the game.
+ *
+ * @author Alec Dorrington
+ */
+public class ClobberState extends GridState {
+    
+    /** The x and y components of each of the four directions. */
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+    
+    /**
+     * Constructs the state of a new game, with the board filled by alternating stones.
+     * @param width the width of the game board.
+     * @param height the height of the game board.
+     */
+    public ClobberState(int width, int height) {
+        
+        super(width, height, 1);
+        
+        //The stones should be placed in an alternating pattern.
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < height; y++) {
+                set(x*height + y, (x + y + 1) % 2 + 1);
+            }
+        }
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public ClobberState(Clobber game) {
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected ClobberState(ClobberState state) {
+        super(state);
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(Clobber game, int move) {
+        
+        int from = move / 4, dir = move % 4;
+        int x = from / height, y = from % height;
+        return game.moveStone(x, y, x + DX[dir], y + DY[dir]);
+    }
+    
+    @Override
+    public int getMaxMoves() { return cells.length * 4; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        int numMoves = 0;
+        for(int i = 0; i < cells.length; i++) {
+            
+            if(cells[i] != getCurrentPlayerId()) continue;
+            
+            //Stones may move on top of any adjacent opponent stone.
+            for(int dir = 0; dir < 4; dir++) {
+                if(canClobber(i, dir)) out[numMoves++] = i*4 + dir;
+            }
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        int from = move / 4, dir = move % 4;
+        
+        set(from + DX[dir]*height + DY[dir], getCurrentPlayerId());
+        set(from, 0);
+        switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        int from = move / 4, dir = move % 4;
+        
+        switchPlayer();
+        set(from, getCurrentPlayerId());
+        set(from + DX[dir]*height + DY[dir], getCurrentPlayerId() % 2 + 1);
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        //The player to move loses if none of their stones can move.
+        for(int i = 0; i < cells.length; i++) {
+            
+            if(cells[i] != getCurrentPlayerId()) continue;
+            
+            for(int dir = 0; dir < 4; dir++) {
+                if(canClobber(i, dir)) return IN_PROGRESS;
+            }
+        }
+        return getCurrentPlayerId() % 2 + 1;
+    }
+    
+    @Override
+    public ClobberState copy() { return new ClobberState(this); }
+    
+    /**
+     * @param index the index of the stone to move.
+     * @param dir the direction in which to move.
+     * @return whether there is an opponent stone to clobber in this direction.
+     */
+    private boolean canClobber(int index, int dir) {
+        
+        int xx = index / height + DX[dir], yy = index % height + DY[dir];
+        return inBounds(xx, yy) && cells[xx*height + yy] == cells[index] % 2 + 1;
+    }
+}
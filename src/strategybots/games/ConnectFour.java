@@ -9,7 +9,8 @@ import strategybots.games.graphics.Colour;
  * Rules: <a href="https://en.wikipedia.org/wiki/Connect_Four">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<ConnectFour>'.<br>
- * Human players can be made by instantiating 'ConnectFourController'.
+ * Human players can be made by instantiating 'ConnectFourController'.<br>
+ * The rules are modelled by 'ConnectFourState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -112,7 +113,7 @@ public class ConnectFour extends TicTacToe {
     @Override
     protected void init() {
         setTitle(TITLE);
-        getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
+        if(!isHeadless()) getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
     }
     
     @Override
@@ -0,0 +1,207 @@
+package strategybots.games;
+
+/**
+ * <b>Connect Four state, for use in searching.</b><br>
+ * <br>
+ * Each move is the x position of the column in which to drop a stone.<br>
+ * Values on the grid are the ID of the owner of each stone, or 0 if empty.<br>
+ * <br>
+ * Boards of up to 64 bits (with a spare bit atop each column) also store the stones of
+ * each player as a bitboard, with bit (x * (height + 1) + y) set for the stone at (x, y).
+ * Wins are then found by shifting and masking the bitboard, rather than by walking the grid.
+ * Larger boards fall back to walking the grid.
+ *
+ * @author Alec Dorrington
+ */
+public class ConnectFourState extends TicTacToeState {
+    
+    /** The number of stones in each column. */
+    private final int[] heights;
+    
+    /** The number of bits per column in a bitboard: one per row, and one always clear. */
+    private final int stride;
+    
+    /** Whether the board fits in a bitboard. False while the superclass is being constructed. */
+    private final boolean bitboard;
+    
+    /** The stones of each player, indexed by ID - 1, if the board fits in a bitboard. */
+    private final long[] stones;
+    
+    /**
+     * Constructs the state of a new game, with an empty board.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param target stones in a row required to win.
+     */
+    public ConnectFourState(int width, int height, int target) {
+        
+        super(width, height, target);
+        heights = new int[width];
+        stride = height + 1;
+        bitboard = width * stride <= 64;
+        stones = new long[2];
+    }
+    
+    /**
+     * Constructs the state of a new game, using a default board size of 7x6 and a target of 4.
+     */
+    public ConnectFourState() {
+        this(7, 6, 4);
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public ConnectFourState(ConnectFour game) {
+        
+        super(game);
+        heights = new int[width];
+        stride = height + 1;
+        bitboard = width * stride <= 64;
+        stones = new long[2];
+        
+        for(int x = 0; x < width; x++) {
+            while(heights[x] < height && get(x, heights[x]) != 0) {
+                stones[get(x, heights[x]) - 1] |= bit(x, heights[x]);
+                heights[x]++;
+            }
+        }
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected ConnectFourState(ConnectFourState state) {
+        super(state);
+        heights = state.heights.clone();
+        stride = state.stride;
+        bitboard = state.bitboard;
+        stones = state.stones.clone();
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(ConnectFour game, int move) {
+        return game.placeStone(move);
+    }
+    
+    /**
+     * @param x the x position of the column to check.
+     * @return the number of stones in the column.
+     */
+    public int getStackHeight(int x) { return heights[x]; }
+    
+    /**
+     * @return whether the board fits in a bitboard, so that 'getStones()' may be used.
+     */
+    public boolean isBitboard() { return bitboard; }
+    
+    /**
+     * Only available if 'isBitboard()'.
+     * @param playerId the ID of a player.
+     * @return the stones of the player, with bit (x * (height + 1) + y) set for the stone at (x, y).
+     */
+    public long getStones(int playerId) { return stones[playerId - 1]; }
+    
+    /**
+     * @param x the x position of a column which isn't full.
+     * @return whether dropping a stone in the column would win the game for the current player.
+     */
+    public boolean isWinningMove(int x) {
+        
+        if(bitboard) {
+            return isStreak(stones[getCurrentPlayerId() - 1] | bit(x, heights[x]));
+        }
+        //Without a bitboard, try the move on the grid instead.
+        set(x*height + heights[x], getCurrentPlayerId());
+        boolean win = super.isWin(x*height + heights[x]);
+        set(x*height + heights[x], 0);
+        return win;
+    }
+    
+    @Override
+    public int getMaxMoves() { return width; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        if(terminalResult() != IN_PROGRESS) return 0;
+        
+        //Stones may be dropped in any column which isn't full.
+        int numMoves = 0;
+        for(int x = 0; x < width; x++) {
+            if(heights[x] < height) out[numMoves++] = x;
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        if(bitboard) stones[getCurrentPlayerId() - 1] |= bit(move, heights[move]);
+        super.make(move*height + heights[move]++);
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        super.unmake(move*height + --heights[move]);
+        if(bitboard) stones[getCurrentPlayerId() - 1] &= ~bit(move, heights[move]);
+    }
+    
+    @Override
+    public ConnectFourState copy() { return new ConnectFourState(this); }
+    
+    @Override
+    protected boolean isWin(int index) {
+        //Checking the whole bitboard is as cheap as checking around the new stone.
+        return bitboard ? isStreak(stones[cells[index] - 1]) : super.isWin(index);
+    }
+    
+    /**
+     * @param stones the stones of a player, as a bitboard.
+     * @return whether the stones include a streak of the target length in any direction.
+     */
+    private boolean isStreak(long stones) {
+        
+        //Vertical, horizontal and both diagonals. The clear bit atop each column stops streaks wrapping.
+        return isStreak(stones, 1) || isStreak(stones, stride)
+                || isStreak(stones, stride - 1) || isStreak(stones, stride + 1);
+    }
+    
+    /**
+     * @param stones the stones of a player, as a bitboard.
+     * @param shift the distance between adjacent positions in the direction to check.
+     * @return whether the stones include a streak of the target length in the given direction.
+     */
+    private boolean isStreak(long stones, int shift) {
+        
+        //A streak this long can't fit in a bitboard.
+        if((target - 1) * shift >= 64) return false;
+        
+        //Each set bit marks the start of a streak of (at least) the given length,
+        //which is doubled at each step until the target is reached.
+        long streaks = stones;
+        int length = 1;
+        while(2 * length <= target) {
+            streaks &= streaks >>> (length * shift);
+            length *= 2;
+        }
+        //The remaining length needn't be a power of two, so overlapping streaks suffice.
+        if(length < target) streaks &= streaks >>> ((target - length) * shift);
+        return streaks != 0;
+    }
+    
+    /**
+     * @param x the x position of a stone.
+     * @param y the y position of a stone.
+     * @return the bit representing the position in a bitboard.
+     */
+    private long bit(int x, int y) { return 1L << (x * stride + y); }
+}
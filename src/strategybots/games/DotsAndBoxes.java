@@ -1,5 +1,6 @@
 package strategybots.games;
 
+import strategybots.games.base.Snapshot;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -10,7 +11,8 @@ import strategybots.games.graphics.Colour;
  * Rules: <a href="https://en.wikipedia.org/wiki/Dots_and_Boxes">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Dots>'.<br>
- * Human players can be made by instantiating 'DotsController'.
+ * Human players can be made by instantiating 'DotsController'.<br>
+ * The rules are modelled by 'DotsAndBoxesState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -113,7 +115,10 @@ public class DotsAndBoxes extends TileGame {
         //Draw the line.
         int xx = x*2 + (orien==Orien.HORZ?1:0);
         int yy = y*2 + (orien==Orien.VERT?1:0);
-        getBoard().setColour(xx, yy, PLAYER_COLOURS[getCurrentPlayerId()-1].darken(0.1F));
+        setCell(xx, yy, getCurrentPlayerId());
+        if(!isHeadless()) {
+            getBoard().setColour(xx, yy, PLAYER_COLOURS[getCurrentPlayerId()-1].darken(0.1F));
+        }
         
         //Capture any squares which this move completed.
         //The turn is over when a move is made which captures no squares.
@@ -182,6 +187,21 @@ public class DotsAndBoxes extends TileGame {
         }
     }
     
+    /**
+     * Returns an immutable snapshot of the current state of the board.<br>
+     * The snapshot is (2 * width + 1) by (2 * height + 1), with dots at each
+     * even position, lines between them, and squares at each odd position.
+     * For example, the left side of square (x, y) is at (2x, 2y + 1).<br>
+     * <table border="1">
+     * <tr><td>0</td><td>Dot, or no line drawn/square captured.</td></tr>
+     * <tr><td>1</td><td>Line drawn/square captured by player 1.</td></tr>
+     * <tr><td>2</td><td>Line drawn/square captured by player 2.</td></tr>
+     * </table>
+     * @return a snapshot of the board.
+     */
+    @Override
+    public Snapshot getSnapshot() { return super.getSnapshot(); }
+    
     @Override
     public int getWidth() { return width; }
     
@@ -215,13 +235,15 @@ public class DotsAndBoxes extends TileGame {
         //Check the square on the negative side of the line.
         if(xx>=0 && yy>=0 && ++numSides[xx][yy] == 4) {
             score++; totalScore++;
-            getBoard().setColour(2*xx+1, 2*yy+1, colour);
+            setCell(2*xx+1, 2*yy+1, getCurrentPlayerId());
+            if(!isHeadless()) getBoard().setColour(2*xx+1, 2*yy+1, colour);
         }
         
         //Check the square on the positive side of the line.
         if(x<width && y<height && ++numSides[x][y] == 4) {
             score++; totalScore++;
-            getBoard().setColour(2*x+1, 2*y+1, colour);
+            setCell(2*x+1, 2*y+1, getCurrentPlayerId());
+            if(!isHeadless()) getBoard().setColour(2*x+1, 2*y+1, colour);
         }
         scores[getCurrentPlayerId()-1] += score;
         return score;
@@ -230,6 +252,15 @@ public class DotsAndBoxes extends TileGame {
     @Override
     protected void init() {
         
+        //Create boolean arrays for storing lines.
+        h_lines = new boolean[width][height+1];
+        v_lines = new boolean[width+1][height];
+        
+        numSides = new int[width][height];
+        scores = new int[getNumPlayers()];
+        
+        if(isHeadless()) return;
+        
         //Set the background colours on the board.
         getBoard().setBackground(Pattern.GINGHAM, BACKGROUND_COLOUR, LINE_COLOUR, DOT_COLOUR);
         
@@ -242,13 +273,6 @@ public class DotsAndBoxes extends TileGame {
         for(int y = 1; y < getBoard().getWidth(); y += 2) {
             getBoard().setRowHeight(y, SQUARE_WIDTH);
         }
-        
-        //Create boolean arrays for storing lines.
-        h_lines = new boolean[width][height+1];
-        v_lines = new boolean[width+1][height];
-        
-        numSides = new int[width][height];
-        scores = new int[getNumPlayers()];
     }
     
     @Override
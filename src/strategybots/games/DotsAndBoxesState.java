@@ -0,0 +1,177 @@
+package strategybots.games;
+
+import strategybots.games.DotsAndBoxes.Orien;
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Dots and Boxes state, for use in searching.</b><br>
+ * <br>
+ * Uses the same (2 * width + 1) by (2 * height + 1) grid as 'DotsAndBoxes.getSnapshot()'.
+ * Each move is the index (x * height + y) on this grid of the line to draw.
+ * As in the game, a player who completes a square moves again.
+ *
+ * @author Alec Dorrington
+ */
+public class DotsAndBoxesState extends GridState {
+    
+    /** The size of the board, in number of squares. */
+    private final int numSquares;
+    
+    /** The number of squares captured by each player. */
+    private final int[] scores = new int[3];
+    
+    /**
+     * Constructs the state of a new game, with no lines drawn.
+     * @param width the width of the board, in squares.
+     * @param height the height of the board, in squares.
+     */
+    public DotsAndBoxesState(int width, int height) {
+        super(2 * width + 1, 2 * height + 1, 1);
+        numSquares = width * height;
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public DotsAndBoxesState(DotsAndBoxes game) {
+        
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+        numSquares = game.getWidth() * game.getHeight();
+        
+        scores[1] = game.getScore(1);
+        scores[2] = game.getScore(2);
+        mixHash(scores[1]);
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected DotsAndBoxesState(DotsAndBoxesState state) {
+        super(state);
+        numSquares = state.numSquares;
+        System.arraycopy(state.scores, 0, scores, 0, scores.length);
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(DotsAndBoxes game, int move) {
+        
+        int x = move / height, y = move % height;
+        return x % 2 == 1 ?
+                game.drawLine(Orien.HORZ, x / 2, y / 2) :
+                game.drawLine(Orien.VERT, x / 2, y / 2);
+    }
+    
+    /**
+     * @param playerId the ID of the player whose score to get.
+     * @return the number of squares captured by this player.
+     */
+    public int getScore(int playerId) { return scores[playerId]; }
+    
+    @Override
+    public int getMaxMoves() { return (cells.length - 1) / 2; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        //Lines may be drawn at any position between two dots.
+        int numMoves = 0;
+        for(int x = 0; x < width; x++) {
+            for(int y = 1 - x%2; y < height; y += 2) {
+                if(get(x, y) == 0) out[numMoves++] = x*height + y;
+            }
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        int playerId = getCurrentPlayerId();
+        set(move, playerId);
+        
+        //Capture any squares which this line completed.
+        mixHash(scores[1]);
+        int captured = 0;
+        for(int side = -1; side <= 1; side += 2) {
+            
+            int square = adjacentSquare(move, side);
+            if(square != -1 && isComplete(square)) {
+                set(square, playerId);
+                captured++;
+            }
+        }
+        scores[playerId] += captured;
+        mixHash(scores[1]);
+        
+        //The turn is over when a line is drawn which captures no squares.
+        if(captured == 0) switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        //Any captured squares adjacent to this line must have been captured by it.
+        int captured = 0;
+        for(int side = -1; side <= 1; side += 2) {
+            int square = adjacentSquare(move, side);
+            if(square != -1 && cells[square] != 0) captured++;
+        }
+        if(captured == 0) switchPlayer();
+        
+        //Uncapture the squares.
+        mixHash(scores[1]);
+        for(int side = -1; side <= 1; side += 2) {
+            int square = adjacentSquare(move, side);
+            if(square != -1) set(square, 0);
+        }
+        scores[getCurrentPlayerId()] -= captured;
+        mixHash(scores[1]);
+        
+        set(move, 0);
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        //The game is over once all squares are claimed.
+        if(scores[1] + scores[2] < numSquares) return IN_PROGRESS;
+        
+        //The player with the highest score wins.
+        return scores[1] > scores[2] ? 1 : scores[2] > scores[1] ? 2 : DRAW;
+    }
+    
+    @Override
+    public DotsAndBoxesState copy() { return new DotsAndBoxesState(this); }
+    
+    /**
+     * @param line the index of a line.
+     * @param side -1 for the square on the negative side of the line, 1 for the positive side.
+     * @return the index of the square on the given side of the line, or -1 if there is none.
+     */
+    private int adjacentSquare(int line, int side) {
+        
+        int x = line / height, y = line % height;
+        
+        //Horizontal lines border squares above and below, vertical lines left and right.
+        if(x % 2 == 1) y += side;
+        else x += side;
+        
+        return inBounds(x, y) ? x*height + y : -1;
+    }
+    
+    /**
+     * @param square the index of a square.
+     * @return whether all four sides of the square have lines.
+     */
+    private boolean isComplete(int square) {
+        return cells[square - 1] != 0 && cells[square + 1] != 0
+                && cells[square - height] != 0 && cells[square + height] != 0;
+    }
+}
@@ -1,5 +1,7 @@
 package strategybots.games;
 
+import java.util.Optional;
+
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.event.Event;
 import strategybots.games.event.Event.EventHandler;
@@ -14,7 +16,8 @@ import strategybots.games.graphics.Window.WindowResizeEvent;
  * Rules: <a href="https://en.wikipedia.org/wiki/Pentago">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Pentago>'.<br>
- * Human players can be made by instantiating 'PentagoController'.
+ * Human players can be made by instantiating 'PentagoController'.<br>
+ * The rules are modelled by 'PentagoState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -97,21 +100,20 @@ public class Pentago extends TicTacToe {
         //Ensure rotation is valid.
         if(!validateRotation(x, y, clockwise)) return false;
         
-        int[][] pieces = new int[QUADRANT_SIZE][QUADRANT_SIZE];
+        Piece[][] pieces = new Piece[QUADRANT_SIZE][QUADRANT_SIZE];
         
         //For each square in the quadrant.
         for(int xx = 0; xx < QUADRANT_SIZE; xx++) {
             for(int yy = 0; yy < QUADRANT_SIZE; yy++) {
                 
                 //Get the piece in this position.
-                int ownerId = getStone(x*QUADRANT_SIZE+xx, y*QUADRANT_SIZE+yy);
+                Optional<Piece> piece = getPieceInst(x*QUADRANT_SIZE+xx, y*QUADRANT_SIZE+yy);
                 
                 //Add the piece to the pieces array, rotated by 90 degrees.
-                pieces[clockwise?yy:QUADRANT_SIZE-yy-1][clockwise?QUADRANT_SIZE-xx-1:xx] = ownerId;
-                
-                //Delete the piece.
-                if(ownerId != 0) {
-                    getPieceInst(x*QUADRANT_SIZE+xx, y*QUADRANT_SIZE+yy).get().delete();
+                //Lift the piece off the board, so it may be moved onto another rotated piece.
+                if(piece.isPresent()) {
+                    pieces[clockwise?yy:QUADRANT_SIZE-yy-1][clockwise?QUADRANT_SIZE-xx-1:xx] = piece.get();
+                    piece.get().lift();
                 }
             }
         }
@@ -120,10 +122,9 @@ public class Pentago extends TicTacToe {
         for(int xx = 0; xx < QUADRANT_SIZE; xx++) {
             for(int yy = 0; yy < QUADRANT_SIZE; yy++) {
                 
-                if(pieces[xx][yy] != 0) {
+                if(pieces[xx][yy] != null) {
                     //Move each piece to its new rotated position.
-                    new Stone(pieces[xx][yy],
-                            x*QUADRANT_SIZE+xx, y*QUADRANT_SIZE+yy);
+                    pieces[xx][yy].setBoardPos(x*QUADRANT_SIZE+xx, y*QUADRANT_SIZE+yy);
                 }
             }
         }
@@ -166,6 +167,8 @@ public class Pentago extends TicTacToe {
     protected void init() {
         
         setTitle(TITLE);
+        if(isHeadless()) return;
+        
         getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
         
         //Add visual separation between quadrants.
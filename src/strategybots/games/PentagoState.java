@@ -0,0 +1,186 @@
+package strategybots.games;
+
+/**
+ * <b>Pentago state, for use in searching.</b><br>
+ * <br>
+ * Each move combines the placement of a stone with the rotation of a quadrant.
+ * See 'encode()' for details.<br>
+ * Values on the grid are the ID of the owner of each stone, or 0 if empty.
+ *
+ * @author Alec Dorrington
+ */
+public class PentagoState extends TicTacToeState {
+    
+    /** Board size, quadrant size and target. */
+    private static final int WIDTH = 6, HEIGHT = 6, QUADRANT_SIZE = 3, TARGET = 5;
+    
+    /** The number of quadrants high the board is. */
+    private final int numQuadrantRows;
+    
+    /** The number of distinct rotations (two for each quadrant). */
+    private final int numRotations;
+    
+    /** Buffer used while rotating a quadrant. */
+    private final int[] quadrant = new int[QUADRANT_SIZE * QUADRANT_SIZE];
+    
+    /**
+     * Constructs the state of a new game, with an empty board.
+     */
+    public PentagoState() {
+        
+        super(WIDTH, HEIGHT, TARGET);
+        numQuadrantRows = height / QUADRANT_SIZE;
+        numRotations = (width / QUADRANT_SIZE) * numQuadrantRows * 2;
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.<br>
+     * Must be constructed before a stone is placed on the current turn.
+     * @param game the game being played.
+     */
+    public PentagoState(Pentago game) {
+        
+        super(game);
+        numQuadrantRows = height / QUADRANT_SIZE;
+        numRotations = (width / QUADRANT_SIZE) * numQuadrantRows * 2;
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected PentagoState(PentagoState state) {
+        
+        super(state);
+        numQuadrantRows = state.numQuadrantRows;
+        numRotations = state.numRotations;
+    }
+    
+    /**
+     * Encodes a move.
+     * @param x the x position at which to place a stone.
+     * @param y the y position at which to place a stone.
+     * @param qx the x coordinate of the quadrant to rotate.
+     * @param qy the y coordinate of the quadrant to rotate.
+     * @param clockwise true=clockwise, false=anticlockwise.
+     * @return the encoded move.
+     */
+    public int encode(int x, int y, int qx, int qy, boolean clockwise) {
+        return (x*height + y) * numRotations + (qx*numQuadrantRows + qy) * 2 + (clockwise ? 1 : 0);
+    }
+    
+    /**
+     * Plays a move in a game.<br>
+     * No rotation is made if the placement alone wins the game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(Pentago game, int move) {
+        
+        int index = move / numRotations, rotation = move % numRotations;
+        
+        if(!game.placeStone(index / height, index % height)) return false;
+        if(!game.isRunning()) return true;
+        
+        int q = rotation / 2;
+        return game.rotateQuadrant(q / numQuadrantRows, q % numQuadrantRows, rotation % 2 == 1);
+    }
+    
+    @Override
+    public int getMaxMoves() { return cells.length * numRotations; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        if(terminalResult() != IN_PROGRESS) return 0;
+        
+        //Stones may be placed at any empty position, followed by any rotation.
+        int numMoves = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] == 0) {
+                for(int r = 0; r < numRotations; r++) {
+                    out[numMoves++] = i * numRotations + r;
+                }
+            }
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        int index = move / numRotations, rotation = move % numRotations;
+        int playerId = getCurrentPlayerId();
+        
+        set(index, playerId);
+        numStones++;
+        
+        //A win upon placement ends the game before the rotation.
+        if(isWin(index)) {
+            winner = playerId;
+            push(0);
+            
+        } else {
+            //Rotate the quadrant, then check for a win anywhere on the board.
+            int q = rotation / 2;
+            rotate(q / numQuadrantRows, q % numQuadrantRows, rotation % 2 == 1);
+            push(1);
+            
+            for(int i = 0; i < cells.length; i++) {
+                if(cells[i] == playerId && isWin(i)) {
+                    winner = playerId;
+                    break;
+                }
+            }
+        }
+        switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        int index = move / numRotations, rotation = move % numRotations;
+        
+        switchPlayer();
+        
+        //Undo the rotation, if one was made.
+        if(pop() == 1) {
+            int q = rotation / 2;
+            rotate(q / numQuadrantRows, q % numQuadrantRows, rotation % 2 == 0);
+        }
+        set(index, 0);
+        numStones--;
+        winner = 0;
+    }
+    
+    @Override
+    public PentagoState copy() { return new PentagoState(this); }
+    
+    /**
+     * Rotates a quadrant by 90 degrees.
+     * @param x the x coordinate of the quadrant to rotate.
+     * @param y the y coordinate of the quadrant to rotate.
+     * @param clockwise true=clockwise, false=anticlockwise.
+     */
+    private void rotate(int x, int y, boolean clockwise) {
+        
+        //Copy the quadrant, rotated by 90 degrees.
+        for(int xx = 0; xx < QUADRANT_SIZE; xx++) {
+            for(int yy = 0; yy < QUADRANT_SIZE; yy++) {
+                
+                int xr = clockwise ? yy : QUADRANT_SIZE-yy-1;
+                int yr = clockwise ? QUADRANT_SIZE-xx-1 : xx;
+                quadrant[xr*QUADRANT_SIZE + yr] = get(x*QUADRANT_SIZE+xx, y*QUADRANT_SIZE+yy);
+            }
+        }
+        
+        //Write the rotated quadrant back to the board.
+        for(int xx = 0; xx < QUADRANT_SIZE; xx++) {
+            for(int yy = 0; yy < QUADRANT_SIZE; yy++) {
+                set((x*QUADRANT_SIZE+xx)*height + y*QUADRANT_SIZE+yy,
+                        quadrant[xx*QUADRANT_SIZE + yy]);
+            }
+        }
+    }
+}
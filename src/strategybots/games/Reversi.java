@@ -13,7 +13,8 @@ import strategybots.games.graphics.Colour;
  * Rules: <a href="https://en.wikipedia.org/wiki/Reversi">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<Reversi>'.<br>
- * Human players can be made by instantiating 'ReversiController'.
+ * Human players can be made by instantiating 'ReversiController'.<br>
+ * The rules are modelled by 'ReversiState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -88,10 +89,9 @@ public class Reversi extends TileGame {
         //Create a new piece at the chosen location.
         new Disc(getCurrentPlayerId(), x, y);
         
-        //Replace all the flipped enemy pieces with friendly pieces.
+        //Flip all the enclosed enemy pieces to become friendly pieces.
         for(Disc disc : flipped) {
-            disc.delete();
-            new Disc(getCurrentPlayerId(), disc.getCol(), disc.getRow());
+            disc.setOwner(getCurrentPlayerId(), DISC_TEXTURES[getCurrentPlayerId() - 1]);
         }
         
         endTurn();
@@ -168,7 +168,7 @@ public class Reversi extends TileGame {
     protected void init() {
         
         //Set the board colours.
-        getBoard().setBackground(Pattern.CHECKER, BOARD_COLOUR1, BOARD_COLOUR2);
+        if(!isHeadless()) getBoard().setBackground(Pattern.CHECKER, BOARD_COLOUR1, BOARD_COLOUR2);
         
         //Place the initial pieces on the board.
         new Disc(1, getWidth()/2-1, getHeight()/2);
@@ -212,12 +212,12 @@ public class Reversi extends TileGame {
         for(int i = 1; i <= getNumPlayers(); i++) {
             
             //If this player beat the current highest score, they are the new winner.
-            if(getPieces(i).size() > winnerScore) {
+            if(getNumPieces(i) > winnerScore) {
                 winnerId = i;
-                winnerScore = getPieces(i).size();
+                winnerScore = getNumPieces(i);
             
             //If this player matched the current highest score, there may be a draw.
-            } else if(getPieces(i).size() == winnerScore) {
+            } else if(getNumPieces(i) == winnerScore) {
                 winnerId = -1;
             }
         }
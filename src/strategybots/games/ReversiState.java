@@ -0,0 +1,215 @@
+package strategybots.games;
+
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Reversi state, for use in searching.</b><br>
+ * <br>
+ * Each move is the index (x * height + y) of the position at which to place a disc,
+ * or 'getPassMove()' if the current player has no legal placements.<br>
+ * Values on the grid are the ID of the owner of each disc, or 0 if empty.
+ *
+ * @author Alec Dorrington
+ */
+public class ReversiState extends GridState {
+    
+    /** The x and y components of each of the eight directions. */
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    
+    /** The number of discs owned by each player. */
+    private final int[] numDiscs = new int[3];
+    
+    /**
+     * Constructs the state of a new game, with the four initial discs.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     */
+    public ReversiState(int width, int height) {
+        
+        super(width, height, 1);
+        
+        //Place the initial discs on the board.
+        place(width/2-1, height/2, 1);
+        place(width/2, height/2-1, 1);
+        place(width/2-1, height/2-1, 2);
+        place(width/2, height/2, 2);
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public ReversiState(Reversi game) {
+        
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+        for(byte cell : cells) {
+            if(cell != 0) numDiscs[cell]++;
+        }
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected ReversiState(ReversiState state) {
+        super(state);
+        System.arraycopy(state.numDiscs, 0, numDiscs, 0, numDiscs.length);
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(Reversi game, int move) {
+        //The game skips the turn of players with no legal moves itself.
+        if(move == getPassMove()) return true;
+        return game.placeDisc(move / height, move % height);
+    }
+    
+    /**
+     * @return the move used to pass when the current player has no legal placements.
+     */
+    public int getPassMove() { return cells.length; }
+    
+    /**
+     * @param playerId the ID of the player whose discs to count.
+     * @return the number of discs owned by this player.
+     */
+    public int getNumDiscs(int playerId) { return numDiscs[playerId]; }
+    
+    @Override
+    public int getMaxMoves() { return cells.length + 1; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        int numMoves = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] == 0 && flip(i, getCurrentPlayerId(), false) > 0) out[numMoves++] = i;
+        }
+        
+        //Pass if there are no legal placements, unless the game is over.
+        if(numMoves == 0 && hasMove(getCurrentPlayerId() % 2 + 1)) out[numMoves++] = getPassMove();
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        if(move != getPassMove()) {
+            
+            int playerId = getCurrentPlayerId();
+            
+            //Flip the captured discs, remembering them and how many there were.
+            push(flip(move, playerId, true));
+            set(move, playerId);
+            numDiscs[playerId]++;
+        }
+        switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        switchPlayer();
+        
+        if(move != getPassMove()) {
+            
+            int playerId = getCurrentPlayerId(), opponentId = playerId % 2 + 1;
+            
+            set(move, 0);
+            numDiscs[playerId]--;
+            
+            //Flip the captured discs back.
+            int captured = pop();
+            for(int i = 0; i < captured; i++) {
+                set(pop(), opponentId);
+            }
+            numDiscs[playerId] -= captured;
+            numDiscs[opponentId] += captured;
+        }
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        //The game continues while either player has a legal move.
+        if(hasMove(1) || hasMove(2)) return IN_PROGRESS;
+        
+        //The player with the most discs wins.
+        return numDiscs[1] > numDiscs[2] ? 1 : numDiscs[2] > numDiscs[1] ? 2 : DRAW;
+    }
+    
+    @Override
+    public ReversiState copy() { return new ReversiState(this); }
+    
+    /**
+     * Places a disc without flipping, for setting up the board.
+     * @param x the x position of the disc.
+     * @param y the y position of the disc.
+     * @param playerId the owner of the disc.
+     */
+    private void place(int x, int y, int playerId) {
+        set(x*height + y, playerId);
+        numDiscs[playerId]++;
+    }
+    
+    /**
+     * @param playerId the ID of the player to check.
+     * @return whether the player has any legal placements.
+     */
+    private boolean hasMove(int playerId) {
+        
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] == 0 && flip(i, playerId, false) > 0) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Determines which discs are captured by placing a disc at the given position.<br>
+     * If flipping, each captured disc is flipped and its index pushed onto the stack.
+     * @param index the index (x * height + y) at which the disc is placed.
+     * @param playerId the ID of the player making the move.
+     * @param flip whether to actually flip the captured discs.
+     * @return the number of discs captured.
+     */
+    private int flip(int index, int playerId, boolean flip) {
+        
+        int x = index / height, y = index % height, captured = 0;
+        
+        //For each direction in which to check for captures.
+        for(int dir = 0; dir < 8; dir++) {
+            
+            //Continue searching in this direction past the opponent's discs.
+            int dist = 1, xx = x + DX[dir], yy = y + DY[dir];
+            while(inBounds(xx, yy) && cells[xx*height + yy] == playerId % 2 + 1) {
+                dist++;
+                xx += DX[dir];
+                yy += DY[dir];
+            }
+            
+            //An enclosed chain has been found if a friendly disc was reached.
+            if(dist > 1 && inBounds(xx, yy) && cells[xx*height + yy] == playerId) {
+                
+                captured += dist - 1;
+                
+                if(flip) {
+                    for(int i = 1; i < dist; i++) {
+                        int flipped = (x + i*DX[dir])*height + (y + i*DY[dir]);
+                        set(flipped, playerId);
+                        push(flipped);
+                    }
+                }
+            }
+        }
+        if(flip) {
+            numDiscs[playerId] += captured;
+            numDiscs[playerId % 2 + 1] -= captured;
+        }
+        return captured;
+    }
+}
@@ -13,7 +13,8 @@ import strategybots.games.graphics.Colour;
  * Rules: <a href="https://en.wikipedia.org/wiki/M,n,k-game">Wikipedia</a><br>
  * <br>
  * Bot players can be made by implementing 'Player<TicTacToe>'.<br>
- * Human players can be made by instantiating 'TicTacToeController'.
+ * Human players can be made by instantiating 'TicTacToeController'.<br>
+ * The rules are modelled by 'TicTacToeState', for use in searching.
  * 
  * @author Alec Dorrington
  */
@@ -141,7 +142,7 @@ public class TicTacToe extends TileGame {
     
     @Override
     protected void init() {
-        getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
+        if(!isHeadless()) getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
     }
     
     @Override
@@ -196,7 +197,7 @@ public class TicTacToe extends TileGame {
             //If this streak is sufficient in size to win the game.
             if(streak.size() >= target) {
                 endGame(playerId);
-                highlightStreak(streak);
+                if(!isHeadless()) highlightStreak(streak);
             }
         }
     }
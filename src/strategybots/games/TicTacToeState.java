@@ -0,0 +1,163 @@
+package strategybots.games;
+
+import strategybots.games.base.GridState;
+
+/**
+ * <b>Tic-Tac-Toe state, for use in searching.</b><br>
+ * <br>
+ * Each move is the index (x * height + y) of the position at which to place a stone.<br>
+ * Values on the grid are the ID of the owner of each stone, or 0 if empty.
+ *
+ * @author Alec Dorrington
+ */
+public class TicTacToeState extends GridState {
+    
+    /** Number of stones in a row required to win. */
+    protected final int target;
+    
+    /** The number of stones on the board. */
+    protected int numStones = 0;
+    
+    /** The ID of the winner, or 0 if there is none yet. */
+    protected int winner = 0;
+    
+    /**
+     * Constructs the state of a new game, with an empty board.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param target stones in a row required to win.
+     */
+    public TicTacToeState(int width, int height, int target) {
+        super(width, height, 1);
+        this.target = target;
+    }
+    
+    /**
+     * Constructs the current state of a game in progress.
+     * @param game the game being played.
+     */
+    public TicTacToeState(TicTacToe game) {
+        
+        super(game.getSnapshot(), game.getCurrentPlayerId());
+        target = game.getTarget();
+        
+        //Count the stones, and find whether the last player to move has already won.
+        //As in the game, their opponent's lines don't count (even if completed by a rotation).
+        int lastPlayerId = getCurrentPlayerId() % 2 + 1;
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] != 0) {
+                numStones++;
+                if(cells[i] == lastPlayerId && isWin(i)) winner = lastPlayerId;
+            }
+        }
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected TicTacToeState(TicTacToeState state) {
+        super(state);
+        target = state.target;
+        numStones = state.numStones;
+        winner = state.winner;
+    }
+    
+    /**
+     * Plays a move in a game.
+     * @param game the game being played.
+     * @param move the move to play.
+     * @return whether the move was valid and successful.
+     */
+    public boolean apply(TicTacToe game, int move) {
+        return game.placeStone(move / height, move % height);
+    }
+    
+    /**
+     * @return the number of stones in a row required to win.
+     */
+    public int getTarget() { return target; }
+    
+    @Override
+    public int getMaxMoves() { return cells.length; }
+    
+    @Override
+    public int legalMoves(int[] out) {
+        
+        if(terminalResult() != IN_PROGRESS) return 0;
+        
+        //Stones may be placed at any empty position.
+        int numMoves = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] == 0) out[numMoves++] = i;
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public void make(int move) {
+        
+        set(move, getCurrentPlayerId());
+        numStones++;
+        if(isWin(move)) winner = getCurrentPlayerId();
+        switchPlayer();
+    }
+    
+    @Override
+    public void unmake(int move) {
+        
+        switchPlayer();
+        set(move, 0);
+        numStones--;
+        //No moves are made once the game has been won.
+        winner = 0;
+    }
+    
+    @Override
+    public int terminalResult() {
+        
+        if(winner != 0) return winner;
+        //The game is a draw if the board is full.
+        if(numStones == cells.length) return DRAW;
+        return IN_PROGRESS;
+    }
+    
+    @Override
+    public TicTacToeState copy() { return new TicTacToeState(this); }
+    
+    /**
+     * Determines whether the stone at the given position is part of a winning streak.
+     * @param index the index (x * height + y) of the stone to check.
+     * @return whether a win has occurred.
+     */
+    protected boolean isWin(int index) {
+        
+        int x = index / height, y = index % height, owner = cells[index];
+        
+        //For each of the four directions in which a streak could occur.
+        for(int dir = 0; dir < 4; dir++) {
+            
+            //The x and y components of this direction.
+            int x_dir = dir<2 ? 1 : dir==2 ? 0:-1;
+            int y_dir = dir==0 ? 0:1;
+            
+            int streak = 1;
+            
+            //For each sub-streak on the 2 sides of the stone.
+            for(int sign = -1; sign <= 1; sign += 2) {
+                
+                //Keep searching until the end of the streak is found.
+                for(int i = 1;; i++) {
+                    
+                    int xx = x + i*x_dir*sign;
+                    int yy = y + i*y_dir*sign;
+                    
+                    if(!inBounds(xx, yy) || cells[xx*height + yy] != owner) break;
+                    streak++;
+                }
+            }
+            if(streak >= target) return true;
+        }
+        return false;
+    }
+}
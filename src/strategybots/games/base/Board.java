@@ -2,6 +2,8 @@ package strategybots.games.base;
 
 import java.io.Serializable;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
 
@@ -54,6 +56,9 @@ public class Board implements Serializable {
     /** The tile squares. */
     private BoardTile[][] tiles;
     
+    /** The tile square on which each piece was last placed. */
+    private final Map<Tile, BoardTile> positions = new IdentityHashMap<>();
+    
     /** Relative size ratio of each column/row. */
     private int[] colSize, rowSize;
     /** Relative size of each border between columns/rows. */
@@ -212,14 +217,20 @@ public class Board implements Serializable {
     public void setPosition(Tile tile, int x, int y) {
         
         //Ensure piece isn't present in another tile.
-        for(int xx = 0; xx < width; xx++) {
-            for(int yy = 0; yy < height; yy++) {
-                if(tiles[xx][yy].piece == tile) {
-                    tiles[xx][yy].piece = null;
-                }
-            }
-        }
+        removePiece(tile);
+        
         tiles[x][y].setPiece(tile);
+        positions.put(tile, tiles[x][y]);
+    }
+    
+    /**
+     * Removes a piece from the tile on which it was placed, if it is still there.
+     * @param tile the piece to remove.
+     */
+    public void removePiece(Tile tile) {
+        
+        BoardTile previous = positions.remove(tile);
+        if(previous != null && previous.piece == tile) previous.piece = null;
     }
     
     /**
@@ -302,6 +313,7 @@ public class Board implements Serializable {
      */
     public void setInputEnabled(boolean inputEnabled) {
         this.inputEnabled = inputEnabled;
+        window.requestRender();
     }
     
     /**
@@ -403,6 +415,9 @@ public class Board implements Serializable {
         /** Click listeners for this tile. */
         Set<Action> listeners = new HashSet<>();
         
+        /** The colour of this tile, and its darkened colours when hovered over and pressed. */
+        private Colour base, hovered, pressed;
+        
         /**
          * Constructs a new chessboard tile at the given position.
          * @param window the window in which the chessboard resides.
@@ -476,20 +491,21 @@ public class Board implements Serializable {
             
             Colour colour = super.getColour();
             
+            //Recompute the darkened colours only when the colour itself changes.
+            if(colour != base) {
+                base = colour;
+                hovered = colour.darken(0.1F);
+                pressed = hovered.darken(0.1F);
+            }
+            
             if(inputEnabled) {
                 
                 //If the cursor is over this button.
                 if(checkBounds(Mouse.getX() - Display.getWidth() / 2,
                         Mouse.getY() - Display.getHeight() / 2)) {
                    
-                   //Darken the tile slightly.
-                   colour = colour.darken(0.1F);
-                   
-                   //If the left click button is pressed.
-                   if(Mouse.isButtonDown(0)) {
-                       //Darken the tile further.
-                       colour = colour.darken(0.1F);
-                   }
+                   //Darken the tile slightly, or further if the left click button is pressed.
+                   colour = Mouse.isButtonDown(0) ? pressed : hovered;
                }
            }
            return colour;
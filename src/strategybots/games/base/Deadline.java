@@ -0,0 +1,171 @@
+package strategybots.games.base;
+
+/**
+ * The time budget allocated to a player for a single turn.<br>
+ * <br>
+ * Handed to each player by the game whenever it is their turn.
+ * Searches should poll 'expired()' and return with the best move found so far
+ * once it becomes true. The game allows a short grace period past the budget
+ * for the move to be made, but should a player overrun that too,
+ * its thread will be interrupted and the game forfeit.
+ *
+ * @author Alec Dorrington
+ */
+public class Deadline {
+    
+    /** The time at which the budget began, in nanoseconds. */
+    private final long startTime;
+    
+    /** The time allocated, in milliseconds, or -1 if there is no limit. */
+    private final long budget;
+    
+    /** The deadline from which this one was derived, if any. */
+    private final Deadline parent;
+    
+    /** Whether the turn has been cancelled (e.g. because the game has ended). */
+    private volatile boolean cancelled = false;
+    
+    /** The thread to interrupt should the deadline be overrun. */
+    private Thread thread;
+    /** Whether the thread was interrupted, and whether the turn has since finished. */
+    private boolean interrupted = false, closed = false;
+    
+    /**
+     * Constructs a new deadline, beginning now.
+     * @param budget the time allocated, in milliseconds, or -1 for no limit.
+     * @param parent the deadline from which this one is derived, or null.
+     */
+    private Deadline(long budget, Deadline parent) {
+        startTime = System.nanoTime();
+        this.budget = budget;
+        this.parent = parent;
+    }
+    
+    /**
+     * @param millis the time allocated, in milliseconds.
+     * @return a new deadline which expires the given time from now.
+     */
+    public static Deadline after(long millis) {
+        return new Deadline(Math.max(millis, 0), null);
+    }
+    
+    /**
+     * @return a new deadline which never expires, unless cancelled.
+     */
+    public static Deadline none() {
+        return new Deadline(-1, null);
+    }
+    
+    /**
+     * Derives a deadline which expires after the given time,
+     * or when this deadline expires, whichever comes first.<br>
+     * Useful for players which wish to use less than their full budget.
+     * @param millis the maximum time to allocate, in milliseconds.
+     * @return the derived deadline.
+     */
+    public Deadline limit(long millis) {
+        return new Deadline(Math.max(Math.min(millis, remaining()), 0), this);
+    }
+    
+    /**
+     * @return the time allocated, in milliseconds, or -1 if there is no limit.
+     */
+    public long getBudget() { return budget; }
+    
+    /**
+     * @return whether this deadline has a time limit.
+     */
+    public boolean isLimited() { return budget >= 0; }
+    
+    /**
+     * @return the time elapsed since the budget began, in milliseconds.
+     */
+    public long elapsed() { return (System.nanoTime() - startTime) / 1_000_000; }
+    
+    /**
+     * @return the time remaining, in milliseconds (Long.MAX_VALUE if there is no limit).
+     */
+    public long remaining() {
+        
+        long remaining = isLimited() ? Math.max(budget - elapsed(), 0) : Long.MAX_VALUE;
+        return parent != null ? Math.min(remaining, parent.remaining()) : remaining;
+    }
+    
+    /**
+     * @return the time remaining, in nanoseconds (Long.MAX_VALUE if there is no limit).
+     */
+    long remainingNanos() {
+        
+        long remaining = isLimited() ? Math.max(budget * 1_000_000 - (System.nanoTime() - startTime), 0) : Long.MAX_VALUE;
+        return parent != null ? Math.min(remaining, parent.remainingNanos()) : remaining;
+    }
+    
+    /**
+     * @return whether the time has run out or the turn has been cancelled.
+     */
+    public boolean expired() {
+        
+        if(cancelled) return true;
+        if(isLimited() && elapsed() >= budget) return true;
+        return parent != null && parent.expired();
+    }
+    
+    /**
+     * @return whether the time has been exceeded.
+     */
+    public boolean overrun() { return overrun(0); }
+    
+    /**
+     * @param grace the additional time allowed past the budget, in milliseconds.
+     * @return whether the time and the grace period have been exceeded, such that the turn should be forfeit.
+     */
+    public boolean overrun(long grace) {
+        return isLimited() && elapsed() > budget + grace;
+    }
+    
+    /**
+     * Cancels the turn. Any player polling this deadline should return promptly.
+     */
+    public void cancel() { cancelled = true; }
+    
+    /**
+     * @return whether the turn has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+    
+    /**
+     * Sets the thread which is to be interrupted should this deadline be overrun.
+     * @param thread the thread on which the turn is being taken.
+     */
+    synchronized void bind(Thread thread) { this.thread = thread; }
+    
+    /**
+     * Interrupts the bound thread, as a fallback for players which ignore the deadline.<br>
+     * Has no effect once the turn has finished.
+     */
+    synchronized void interrupt() {
+        
+        cancel();
+        if(!closed && thread != null) {
+            interrupted = true;
+            thread.interrupt();
+        }
+    }
+    
+    /**
+     * @return whether the bound thread has been interrupted for overrunning this deadline.
+     */
+    synchronized boolean wasInterrupted() { return interrupted; }
+    
+    /**
+     * Marks the turn as finished. Must be called from the bound thread.<br>
+     * Clears any interrupt which was caused by this deadline.
+     */
+    synchronized void close() {
+        
+        closed = true;
+        if(interrupted) Thread.interrupted();
+    }
+}
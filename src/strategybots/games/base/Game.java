@@ -2,6 +2,12 @@ package strategybots.games.base;
 
 import java.io.Serializable;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract supertype for many abstract board games.<br>
@@ -13,6 +19,26 @@ import java.util.Optional;
 public abstract class Game implements Serializable {
     
     private static final long serialVersionUID = 121708475422755346L;
+    
+    /** Executor on which newly started games are run (null for a new thread per game). */
+    private static volatile Executor executor = null;
+    
+    /** Executor on which games constructed by each thread are run, overriding the default if set. */
+    private static final ThreadLocal<Executor> executorOnThread = new ThreadLocal<>();
+    
+    /**
+     * Additional time (ms) allowed after a deadline, for a player to finish the search
+     * and make its move, before it is interrupted and forfeits the game.
+     */
+    private static final long INTERRUPT_GRACE = 100;
+    
+    /** Timer used to interrupt players which overrun their deadline. */
+    private static final ScheduledExecutorService WATCHDOG =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     /** Array of all players participating in this game. */
     private Player[] players;
@@ -33,10 +59,18 @@ public abstract class Game implements Serializable {
     
     /** Indication of the completion of the current players' turn. */
     private volatile boolean turnDone;
+    /** Latch released upon the completion of the current players' turn. */
+    private volatile transient CountDownLatch turnLatch = new CountDownLatch(1);
+    
+    /** Latch released once the game has finished. */
+    private final transient CountDownLatch finished = new CountDownLatch(1);
     
     /** The maximum amount of time allocated per turn, in milliseconds. */
     private volatile long timeLimit = -1;
     
+    /** The time budget for the current turn. */
+    private volatile transient Deadline deadline = Deadline.none();
+    
     /**
      * Constructs a new game with the given players, given in turn order.<br>
      * Must subsequently call 'start()' to begin the game.
@@ -74,10 +108,53 @@ public abstract class Game implements Serializable {
      */
     public boolean turnDone() { return turnDone; }
     
+    /**
+     * Blocks the calling thread until the current turn has been completed.<br>
+     * Returns early (with the interrupt flag set) if the thread is interrupted.
+     */
+    public void awaitTurnDone() {
+        try {
+            turnLatch.await();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Blocks the calling thread until the game has finished.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitFinish() throws InterruptedException { finished.await(); }
+    
+    /**
+     * Sets the executor on which subsequently constructed games are run.<br>
+     * By default (null), each game is run in a new platform thread.<br>
+     * A 'GameScheduler' may be used to bound the number of concurrent games.
+     * @param executor the executor on which to run new games.
+     */
+    public static void setExecutor(Executor executor) { Game.executor = executor; }
+    
+    /**
+     * @return the executor on which newly constructed games are run (null for a new thread per game).
+     */
+    public static Executor getExecutor() { return executor; }
+    
+    /**
+     * Sets the executor on which games subsequently constructed by the current thread are run,
+     * overriding the default for that thread alone.
+     * @param executor the executor on which to run new games, or null to use the default.
+     */
+    static void setExecutorOnThread(Executor executor) {
+        
+        if(executor != null) executorOnThread.set(executor);
+        else executorOnThread.remove();
+    }
+    
     /**
      * Set the amount of time allocated for each player per turn.<br>
      * Use a value of -1 to disable time limits (default).<br>
-     * Should the time limit expire, the game will be forfeit.
+     * Players still taking their turn shortly after the time limit expires
+     * (once a grace period has passed) will be interrupted, and forfeit the game.
      * @param timeLimit the allocated per-turn time, in milliseconds.
      */
     public void setTimeLimit(long timeLimit) { this.timeLimit = timeLimit; }
@@ -85,7 +162,10 @@ public abstract class Game implements Serializable {
     /**
      * Declare the current turn as having been completed.
      */
-    protected void endTurn() { turnDone = true; }
+    protected void endTurn() {
+        turnDone = true;
+        turnLatch.countDown();
+    }
     
     /**
      * @param playerId the ID of the player to get (starting at 1).
@@ -122,11 +202,17 @@ public abstract class Game implements Serializable {
         currentPlayer = players[currentPlayerId - 1];
     }
     
+    /**
+     * @return the time budget for the current turn.
+     */
+    protected Deadline getDeadline() { return deadline; }
+    
     /**
      * Ends the game after the current turn, setting the winner.
      * @param winnerId the ID of the winner of the game.
      */
     protected void endGame(int winnerId) {
+        deadline.cancel();
         endTurn();
         if(winnerId > 0 && winnerId <= players.length) {
             this.winnerId = winnerId;
@@ -136,12 +222,33 @@ public abstract class Game implements Serializable {
     }
     
     /**
-     * Starts the game in a new thread.
+     * Ends the game as a forfeit by the given player.<br>
+     * In a two-player game, the opponent is declared the winner.
+     * @param playerId the ID of the player who forfeit the game.
+     */
+    protected void forfeit(int playerId) {
+        endGame(players.length == 2 ? playerId % 2 + 1 : 0);
+    }
+    
+    /**
+     * Starts the game on the configured executor, or in a new thread if there is none.
      */
     protected void start() {
         
-        //Run the game in a new thread.
-        new Thread(() -> {
+        Executor executor = executorOnThread.get();
+        if(executor == null) executor = Game.executor;
+        
+        //Run the game on the executor if there is one, otherwise in a new thread.
+        if(executor != null) executor.execute(this::play);
+        else new Thread(this::play, "Game").start();
+    }
+    
+    /**
+     * Plays the game through to completion on the current thread.
+     */
+    private void play() {
+        
+        try {
             
             //Initialise the game.
             init();
@@ -159,24 +266,38 @@ public abstract class Game implements Serializable {
                 currentPlayer = players[currentPlayerId - 1];
                 
                 //Have the current player take their turn.
+                turnLatch = new CountDownLatch(1);
                 turnDone = false;
                 preTurn();
                 
-                //Record the time at which the turn began.
-                long startTime = System.currentTimeMillis();
+                //Allocate the time budget for this turn.
+                long timeLimit = this.timeLimit;
+                Deadline deadline = timeLimit > 0 ? Deadline.after(timeLimit) : Deadline.none();
+                deadline.bind(Thread.currentThread());
+                this.deadline = deadline;
+                
+                //Interrupt the player should they overrun their deadline.
+                ScheduledFuture<?> watchdog = timeLimit > 0 ? WATCHDOG.schedule(deadline::interrupt,
+                        timeLimit + INTERRUPT_GRACE, TimeUnit.MILLISECONDS) : null;
                 
                 //Wait for the turn to be completed.
                 while(!turnDone && isRunning()) {
                     
                     //Prompt the player to take their turn.
-                    currentPlayer.takeTurn(Game.this, currentPlayerId);
+                    currentPlayer.takeTurn(Game.this, currentPlayerId, deadline);
+                    
+                    //Forfeit the game if the time (and the grace after it) runs out,
+                    //even if the player swallowed the interrupt or returned as soon as it came.
+                    if(deadline.wasInterrupted() || deadline.overrun(INTERRUPT_GRACE)) forfeit(currentPlayerId);
                     
-                    //Forfeit the game if the time runs out.
-                    if(timeLimit > 0 && System.currentTimeMillis()-startTime > timeLimit) {
-                        endGame(0);
-                    }
+                    //Abandon the game if its thread is otherwise interrupted (e.g. upon shutdown).
+                    else if(Thread.currentThread().isInterrupted()) endGame(0);
                 }
                 
+                //Stop the watchdog, clearing any interrupt it caused.
+                if(watchdog != null) watchdog.cancel(false);
+                deadline.close();
+                
                 postTurn();
                 checkEnd();
                 
@@ -187,7 +308,10 @@ public abstract class Game implements Serializable {
             for(int i = 0; i < players.length; i++) {
                 players[i].gameEnd(Game.this, i+1, winnerId);
             }
-        }, "Game").start();
+            
+        } finally {
+            finished.countDown();
+        }
     }
     
     /**
@@ -240,6 +364,21 @@ public abstract class Game implements Serializable {
          */
         void takeTurn(G game, int playerId);
         
+        /**
+         * Called once whenever the player is expected to take a turn, within a time budget.<br>
+         * Implementations should stop searching once 'deadline.expired()' becomes true, and then
+         * complete their turn promptly. Expiry leaves a short grace period (100ms) for returning
+         * from the search and making the move, but a player still taking its turn once the grace
+         * period has passed will be interrupted and forfeit the game.<br>
+         * By default, ignores the deadline and calls 'takeTurn(game, playerId)'.
+         * @param game the game being played.
+         * @param playerId the ID of this player.
+         * @param deadline the time budget for this turn.
+         */
+        default void takeTurn(G game, int playerId, Deadline deadline) {
+            takeTurn(game, playerId);
+        }
+        
         /**
          * Called once at the completion of the game.
          * @param game the game being played.
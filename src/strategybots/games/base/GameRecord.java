@@ -0,0 +1,152 @@
+package strategybots.games.base;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The record of a single finished game: the players, the game parameters,
+ * the result and every move made, encoded as per 'GameState'.<br>
+ * <br>
+ * Records are stored compactly by 'GameRecordWriter', as a length-prefixed sequence of varints:<br>
+ * - The number of players, followed by the UTF-8 name of each (length-prefixed).<br>
+ * - The number of parameters (such as the board size), followed by each (zigzag encoded).<br>
+ * - The result as per 'GameState.terminalResult()' (zigzag encoded).<br>
+ * - The number of moves, followed by each move.<br>
+ * Typical moves fit in one or two bytes, so a game of Connect Four needs under 100 bytes.
+ *
+ * @author Alec Dorrington
+ */
+public class GameRecord {
+    
+    /** The display name of each player, in turn order. */
+    private final String[] players;
+    
+    /** Game-specific parameters, such as the dimensions of the board. */
+    private final int[] parameters;
+    
+    /** The ID of the winner, or 'GameState.DRAW'. */
+    private final int result;
+    
+    /** Every move made, in order. */
+    private final int[] moves;
+    
+    /**
+     * Constructs a new record.
+     * @param players the display name of each player, in turn order.
+     * @param parameters game-specific parameters, such as the dimensions of the board.
+     * @param result the ID of the winner, or 'GameState.DRAW'.
+     * @param moves every move made, in order.
+     */
+    public GameRecord(String[] players, int[] parameters, int result, int[] moves) {
+        this.players = players.clone();
+        this.parameters = parameters.clone();
+        this.result = result;
+        this.moves = moves.clone();
+    }
+    
+    /** @return the display name of each player, in turn order. */
+    public String[] getPlayers() { return players.clone(); }
+    
+    /** @return game-specific parameters, such as the dimensions of the board. */
+    public int[] getParameters() { return parameters.clone(); }
+    
+    /** @return the ID of the winner, or 'GameState.DRAW'. */
+    public int getResult() { return result; }
+    
+    /** @return the number of moves made. */
+    public int getNumMoves() { return moves.length; }
+    
+    /** @return every move made, in order. */
+    public int[] getMoves() { return moves.clone(); }
+    
+    /**
+     * Replays every move of the game.
+     * @param state the initial state of the game, to which the moves are made.
+     * @return the same state, now in the final position.
+     */
+    public <S extends GameState> S replay(S state) {
+        for(int move : moves) state.make(move);
+        return state;
+    }
+    
+    @Override
+    public String toString() {
+        return String.join(" vs ", players) + " " + Arrays.toString(parameters)
+                + ": " + (result == GameState.DRAW ? "Draw" : "Player " + result + " won")
+                + " in " + moves.length + " moves";
+    }
+    
+    /**
+     * @return an upper bound on the encoded size of this record (excl. its length prefix), in bytes.
+     */
+    int maxEncodedSize() {
+        
+        int size = 5 * (4 + parameters.length + moves.length);
+        for(String player : players) size += 5 + 3 * player.length();
+        return size;
+    }
+    
+    /**
+     * Encodes this record (excl. its length prefix).
+     * @param out the buffer into which to encode, of length at least 'maxEncodedSize()'.
+     * @return the number of bytes written.
+     */
+    int encode(byte[] out) {
+        
+        int pos = writeVarint(out, 0, players.length);
+        for(String player : players) pos = writeString(out, pos, player);
+        
+        pos = writeVarint(out, pos, parameters.length);
+        for(int parameter : parameters) pos = writeVarint(out, pos, zigzag(parameter));
+        
+        pos = writeVarint(out, pos, zigzag(result));
+        
+        pos = writeVarint(out, pos, moves.length);
+        for(int move : moves) pos = writeVarint(out, pos, move);
+        return pos;
+    }
+    
+    /**
+     * Writes an unsigned varint, 7 bits per byte with the high bit set on all but the last byte.
+     * @param out the buffer into which to write.
+     * @param pos the position at which to write.
+     * @param value the value to write.
+     * @return the position following the varint.
+     */
+    static int writeVarint(byte[] out, int pos, int value) {
+        
+        while((value & ~0x7F) != 0) {
+            out[pos++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+    
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     * @param out the buffer into which to write.
+     * @param pos the position at which to write.
+     * @param value the string to write.
+     * @return the position following the string.
+     */
+    static int writeString(byte[] out, int pos, String value) {
+        
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        pos = writeVarint(out, pos, bytes.length);
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+    
+    /**
+     * @param value a signed value.
+     * @return the value mapped to an unsigned value, such that small negative values stay small.
+     */
+    static int zigzag(int value) { return value << 1 ^ value >> 31; }
+    
+    /**
+     * @param value a zigzag encoded value.
+     * @return the original signed value.
+     */
+    static int unzigzag(int value) { return value >>> 1 ^ -(value & 1); }
+}
@@ -0,0 +1,250 @@
+package strategybots.games.base;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads the game records in a log written by 'GameRecordWriter'.<br>
+ * <br>
+ * The log is memory-mapped rather than read through a stream, and fields are decoded
+ * only when asked for, so games may be replayed about as fast as memory can be read.
+ * Records are visited in order using a cursor, without allocating:<br>
+ * <code>
+ * while(reader.next()) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;int numMoves = reader.getMoves(moves);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;...<br>
+ * }
+ * </code><br>
+ * A record left incomplete at the end of the log (e.g. by a crash) is ignored.
+ *
+ * @author Alec Dorrington
+ */
+public class GameRecordReader implements Closeable {
+    
+    /** The largest region of the file mapped at once. */
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+    
+    /** The log file being read. */
+    private final FileChannel channel;
+    
+    /** The size of the file, in bytes. */
+    private final long size;
+    
+    /** The name of the type of game recorded. */
+    private final String gameType;
+    
+    /** The currently mapped region of the file, and its offset in the file. */
+    private MappedByteBuffer window;
+    private long windowStart;
+    
+    /** The position in the window of the next value to be read. */
+    private int pos;
+    
+    /** The position in the window of the end of the current record (initially, of the header). */
+    private int recordEnd;
+    
+    /** The position in the window of each field of the current record. */
+    private int playersStart, parametersStart, resultStart, movesStart;
+    
+    /** The number of moves in the current record. */
+    private int numMoves;
+    
+    /**
+     * Opens a log file for reading.
+     * @param file the log file.
+     * @throws IOException if the file couldn't be read, or isn't a game log.
+     */
+    public GameRecordReader(Path file) throws IOException {
+        
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            
+            size = channel.size();
+            map(0);
+            
+            if(size < 5 || window.getInt(0) != GameRecordWriter.MAGIC) {
+                throw new IOException(file + " isn't a game log.");
+            }
+            if(window.get(4) != GameRecordWriter.VERSION) {
+                throw new IOException(file + " is of unsupported version " + window.get(4) + ".");
+            }
+            pos = 5;
+            gameType = readString();
+            recordEnd = pos;
+            
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * @return the name of the type of game recorded.
+     */
+    public String getGameType() { return gameType; }
+    
+    /**
+     * Advances to the next record.
+     * @return whether there was another record.
+     * @throws IOException if the next region of the file couldn't be mapped.
+     */
+    public boolean next() throws IOException {
+        
+        long recordStart = getOffset();
+        if(recordStart >= size) return false;
+        
+        //Remap the file from the next record if it might not be entirely mapped.
+        if(recordEnd + 5 > window.limit()) map(recordStart);
+        pos = recordEnd;
+        int length;
+        try {
+            length = readVarint();
+        } catch(IndexOutOfBoundsException e) {
+            return false;
+        }
+        if(windowStart + pos + length > size) return false;
+        if(pos + length > window.limit()) {
+            map(recordStart);
+            pos = 0;
+            length = readVarint();
+        }
+        recordEnd = pos + length;
+        
+        //Locate each field, deferring their decoding.
+        playersStart = pos;
+        int numPlayers = readVarint();
+        for(int i = 0; i < numPlayers; i++) {
+            int nameLength = readVarint();
+            pos += nameLength;
+        }
+        
+        parametersStart = pos;
+        int numParameters = readVarint();
+        for(int i = 0; i < numParameters; i++) readVarint();
+        
+        resultStart = pos;
+        readVarint();
+        
+        numMoves = readVarint();
+        movesStart = pos;
+        return true;
+    }
+    
+    /**
+     * @return the display name of each player in the current record, in turn order.
+     */
+    public String[] getPlayers() {
+        
+        pos = playersStart;
+        String[] players = new String[readVarint()];
+        for(int i = 0; i < players.length; i++) players[i] = readString();
+        return players;
+    }
+    
+    /**
+     * @return the game-specific parameters of the current record.
+     */
+    public int[] getParameters() {
+        
+        pos = parametersStart;
+        int[] parameters = new int[readVarint()];
+        for(int i = 0; i < parameters.length; i++) parameters[i] = GameRecord.unzigzag(readVarint());
+        return parameters;
+    }
+    
+    /**
+     * @return the result of the current record: the ID of the winner, or 'GameState.DRAW'.
+     */
+    public int getResult() {
+        pos = resultStart;
+        return GameRecord.unzigzag(readVarint());
+    }
+    
+    /**
+     * @return the number of moves in the current record.
+     */
+    public int getNumMoves() { return numMoves; }
+    
+    /**
+     * Decodes the moves of the current record.
+     * @param out the array into which to decode the moves, of length at least 'getNumMoves()'.
+     * @return the number of moves.
+     */
+    public int getMoves(int[] out) {
+        
+        pos = movesStart;
+        for(int i = 0; i < numMoves; i++) out[i] = readVarint();
+        return numMoves;
+    }
+    
+    /**
+     * @return the current record, fully decoded.
+     */
+    public GameRecord getRecord() {
+        
+        int[] moves = new int[numMoves];
+        getMoves(moves);
+        return new GameRecord(getPlayers(), getParameters(), getResult(), moves);
+    }
+    
+    /**
+     * Decodes every remaining record.
+     * @param action the action to perform on each record.
+     * @throws IOException if the file couldn't be mapped.
+     */
+    public void forEach(Consumer<GameRecord> action) throws IOException {
+        while(next()) action.accept(getRecord());
+    }
+    
+    /**
+     * @return the offset in the file of the end of the current record.
+     */
+    long getOffset() { return windowStart + recordEnd; }
+    
+    @Override
+    public void close() throws IOException { channel.close(); }
+    
+    /**
+     * Maps a region of the file, starting from the given offset (which begins the next record).
+     * @param start the offset in the file from which to map.
+     * @throws IOException if the region couldn't be mapped.
+     */
+    private void map(long start) throws IOException {
+        
+        window = channel.map(MapMode.READ_ONLY, start, Math.min(size - start, MAX_WINDOW));
+        windowStart = start;
+        recordEnd = 0;
+    }
+    
+    /**
+     * @return the unsigned varint at the current position, advancing past it.
+     */
+    private int readVarint() {
+        
+        int value = 0, shift = 0;
+        byte b;
+        do {
+            b = window.get(pos++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while(b < 0);
+        return value;
+    }
+    
+    /**
+     * @return the length-prefixed UTF-8 string at the current position, advancing past it.
+     */
+    private String readString() {
+        
+        byte[] bytes = new byte[readVarint()];
+        for(int i = 0; i < bytes.length; i++) bytes[i] = window.get(pos++);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
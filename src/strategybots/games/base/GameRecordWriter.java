@@ -0,0 +1,189 @@
+package strategybots.games.base;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Appends game records to a binary log file, on a background thread.<br>
+ * <br>
+ * Each log holds games of a single type. It begins with a header ('MAGIC', 'VERSION'
+ * and the name of the game type), followed by each record as per 'GameRecord',
+ * prefixed with its length in bytes. Logs are only ever appended to, so may be
+ * added to across many runs, and read back using 'GameRecordReader'.<br>
+ * <br>
+ * 'write()' may be called from any thread, and only blocks if the disk can't keep up.
+ *
+ * @author Alec Dorrington
+ */
+public class GameRecordWriter implements Closeable {
+    
+    /** Identifies the file as a game log ("SBGR"). */
+    static final int MAGIC = 0x53424752;
+    
+    /** The version of the file format. */
+    static final byte VERSION = 1;
+    
+    /** The maximum number of records waiting to be written. */
+    private static final int QUEUE_CAPACITY = 4096;
+    
+    /** Size of the output buffer, in bytes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /** Placeholder record, queued to stop the writing thread. */
+    private static final GameRecord END = new GameRecord(new String[0], new int[0], 0, new int[0]);
+    
+    /** Records waiting to be written. */
+    private final BlockingQueue<GameRecord> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    
+    /** The log file being appended to. */
+    private final FileChannel channel;
+    private final OutputStream out;
+    
+    /** The thread which encodes and writes records. */
+    private final Thread thread;
+    
+    /** The number of records written. */
+    private volatile long numRecords = 0;
+    
+    /** The first error which occurred while writing, if any. */
+    private volatile IOException error;
+    
+    private volatile boolean closed = false;
+    
+    /**
+     * Opens a log file for appending, creating it if it doesn't exist.
+     * @param file the log file.
+     * @param gameType the name of the type of game recorded (e.g. "ConnectFour").
+     * @throws IOException if the file couldn't be opened, or is a log of a different type of game.
+     */
+    public GameRecordWriter(Path file, String gameType) throws IOException {
+        
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            
+            //Write the header to a new file, or check the header of an existing file.
+            if(channel.size() == 0) writeHeader(gameType);
+            else {
+                try(GameRecordReader reader = new GameRecordReader(file)) {
+                    if(!reader.getGameType().equals(gameType)) {
+                        throw new IOException(file + " is a log of " + reader.getGameType() + ", not " + gameType);
+                    }
+                    
+                    //Discard any incomplete record left at the end of the log.
+                    while(reader.next());
+                    channel.truncate(reader.getOffset());
+                }
+            }
+            channel.position(channel.size());
+            
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        
+        out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        thread = new Thread(this::run, "GameRecordWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Queues a record to be appended to the log.
+     * @param record the record to append.
+     * @throws IOException if a previous record couldn't be written.
+     * @throws IllegalStateException if the writer has been closed.
+     */
+    public void write(GameRecord record) throws IOException {
+        
+        if(closed) throw new IllegalStateException("Writer is closed.");
+        if(error != null) throw error;
+        
+        try {
+            queue.put(record);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing record.", e);
+        }
+    }
+    
+    /**
+     * @return the number of records written to the file so far.
+     */
+    public long getNumRecords() { return numRecords; }
+    
+    /**
+     * Writes all queued records, and closes the file.
+     * @throws IOException if any record couldn't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        
+        if(closed) return;
+        closed = true;
+        
+        try {
+            queue.put(END);
+            thread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if(error != null) throw error;
+    }
+    
+    /**
+     * @param gameType the name of the type of game recorded.
+     * @throws IOException if the header couldn't be written.
+     */
+    private void writeHeader(String gameType) throws IOException {
+        
+        byte[] name = new byte[5 + 3 * gameType.length()];
+        int length = GameRecord.writeString(name, 0, gameType);
+        
+        ByteBuffer header = ByteBuffer.allocate(5 + length);
+        header.putInt(MAGIC).put(VERSION).put(name, 0, length).flip();
+        while(header.hasRemaining()) channel.write(header);
+    }
+    
+    /**
+     * Encodes and writes records as they are queued, until the writer is closed.
+     */
+    private void run() {
+        
+        byte[] buffer = new byte[256], prefix = new byte[5];
+        try {
+            
+            GameRecord record;
+            while((record = queue.take()) != END) {
+                
+                if(buffer.length < record.maxEncodedSize()) buffer = new byte[2 * record.maxEncodedSize()];
+                int length = record.encode(buffer);
+                
+                out.write(prefix, 0, GameRecord.writeVarint(prefix, 0, length));
+                out.write(buffer, 0, length);
+                numRecords++;
+                
+                //Flush whenever the queue is empty, so an abandoned log loses little.
+                if(queue.isEmpty()) out.flush();
+            }
+            out.flush();
+            
+        } catch(IOException e) {
+            error = e;
+            queue.clear();
+        } catch(InterruptedException e) {
+            error = new IOException("Writer interrupted.", e);
+        }
+    }
+}
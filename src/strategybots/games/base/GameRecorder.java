@@ -0,0 +1,236 @@
+package strategybots.games.base;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import strategybots.games.base.Game.Player;
+
+/**
+ * Records games as they are played, writing each to a log once it finishes.<br>
+ * <br>
+ * Players are wrapped so that the recorder observes the game before every turn and at its end.
+ * The moves made in between are identified by searching the game's 'GameState' for the move
+ * (or sequence of moves by the same player, such as a chain of captures, and any forced replies,
+ * such as a pass) which reaches the observed position. Games work unmodified, but must have a 'GameState' whose hash matches
+ * between states built from the game and states reached by making moves.<br>
+ * <br>
+ * Example usage:<br>
+ * <code>
+ * GameRecorder&lt;ConnectFour&gt; recorder = new GameRecorder&lt;&gt;(writer, ConnectFourState::new);<br>
+ * GameRecorder&lt;ConnectFour&gt;.Recording r = recorder.newRecording();<br>
+ * new ConnectFour(r.wrap(player1), r.wrap(player2));
+ * </code>
+ *
+ * @author Alec Dorrington
+ * @param <G> the game being recorded.
+ */
+public class GameRecorder<G extends Game> {
+    
+    /** The longest sequence of moves a player may make in one turn. */
+    private static final int MAX_CHAIN = 64;
+    
+    /** The log to which finished games are written. */
+    private final GameRecordWriter writer;
+    
+    /** Constructs the state of a game in progress. */
+    private final Function<G, ? extends GameState> state;
+    
+    /** Determines the parameters of a game. By default, the board dimensions of a 'TileGame'. */
+    private Function<G, int[]> parameters = game -> game instanceof TileGame
+            ? new int[] {((TileGame) game).getWidth(), ((TileGame) game).getHeight()} : new int[0];
+    
+    /** The number of games written, and the number which couldn't be recorded. */
+    private final AtomicLong numRecorded = new AtomicLong(), numDropped = new AtomicLong();
+    
+    /**
+     * Constructs a new recorder.
+     * @param writer the log to which finished games are written.
+     * @param state constructs the state of a game in progress, e.g. 'ConnectFourState::new'.
+     */
+    public GameRecorder(GameRecordWriter writer, Function<G, ? extends GameState> state) {
+        this.writer = writer;
+        this.state = state;
+    }
+    
+    /**
+     * Sets how the parameters of a game (such as the board size) are determined.
+     * @param parameters determines the parameters of a game.
+     */
+    public void setParameters(Function<G, int[]> parameters) { this.parameters = parameters; }
+    
+    /**
+     * @return a new recording, whose players should all take part in a single game.
+     */
+    public Recording newRecording() { return new Recording(); }
+    
+    /**
+     * @return the number of games passed to the writer.
+     */
+    public long getNumRecorded() { return numRecorded.get(); }
+    
+    /**
+     * @return the number of games which couldn't be recorded, as their moves
+     * couldn't be identified or the writer failed.
+     */
+    public long getNumDropped() { return numDropped.get(); }
+    
+    /**
+     * The recording of a single game.<br>
+     * Each player of the game must be wrapped using 'wrap()'.
+     */
+    public class Recording {
+        
+        /** The display name of each player, indexed by ID - 1. */
+        private String[] names = new String[0];
+        
+        /** The parameters of the game. */
+        private int[] params;
+        
+        /** The state of the game, as of the latest observation. */
+        private GameState current;
+        
+        /** The moves made so far. */
+        private int[] moves = new int[64];
+        private int numMoves = 0;
+        
+        /** Whether a move couldn't be identified, and whether the game has been written. */
+        private boolean failed = false, finished = false;
+        
+        private Recording() {}
+        
+        /**
+         * @param player a player of the game to be recorded.
+         * @return a player which behaves identically, but records the game.
+         */
+        public Player<G> wrap(Player<G> player) { return wrap(player, null); }
+        
+        /**
+         * @param player a player of the game to be recorded.
+         * @param name the name under which to record the player, or null for 'getName()'.
+         * @return a player which behaves identically, but records the game.
+         */
+        public Player<G> wrap(Player<G> player, String name) {
+            
+            return new Player<G>() {
+                
+                @Override
+                public void init(G game, int playerId) {
+                    
+                    player.init(game, playerId);
+                    start(game, playerId, name != null ? name : player.getName());
+                }
+                
+                @Override
+                public void takeTurn(G game, int playerId) {
+                    
+                    observe(game);
+                    player.takeTurn(game, playerId);
+                }
+                
+                @Override
+                public void takeTurn(G game, int playerId, Deadline deadline) {
+                    
+                    observe(game);
+                    player.takeTurn(game, playerId, deadline);
+                }
+                
+                @Override
+                public void gameEnd(G game, int playerId, int winnerId) {
+                    
+                    finish(game, winnerId);
+                    player.gameEnd(game, playerId, winnerId);
+                }
+                
+                @Override
+                public String getName() { return player.getName(); }
+            };
+        }
+        
+        /**
+         * Registers a player, capturing the initial state of the game upon the first.
+         * @param game the game being played.
+         * @param playerId the ID of the player.
+         * @param name the name under which to record the player.
+         */
+        private void start(G game, int playerId, String name) {
+            
+            if(current == null) {
+                current = state.apply(game);
+                params = parameters.apply(game);
+            }
+            if(names.length < playerId) names = Arrays.copyOf(names, playerId);
+            names[playerId - 1] = name;
+        }
+        
+        /**
+         * Identifies the moves made since the last observation.
+         * @param game the game being played.
+         */
+        private void observe(G game) {
+            
+            if(failed || current == null) return;
+            if(!find(state.apply(game).hash(), current.getCurrentPlayerId(), 0)) failed = true;
+        }
+        
+        /**
+         * Searches for a sequence of moves by a single player (and any forced replies,
+         * such as passes) which reaches a position.
+         * @param target the hash of the position to reach.
+         * @param mover the ID of the player making the moves.
+         * @param depth the number of moves made so far.
+         * @return whether the position was reached, in which case the moves were recorded.
+         */
+        private boolean find(long target, int mover, int depth) {
+            
+            if(current.hash() == target) return true;
+            if(depth == MAX_CHAIN) return false;
+            
+            int[] legal = new int[current.getMaxMoves()];
+            int numLegal = current.legalMoves(legal);
+            
+            //Beyond the first move, only follow the player's own moves, or moves which are forced.
+            if(depth > 0 && current.getCurrentPlayerId() != mover && numLegal != 1) return false;
+            
+            for(int i = 0; i < numLegal; i++) {
+                
+                current.make(legal[i]);
+                if(numMoves == moves.length) moves = Arrays.copyOf(moves, 2 * numMoves);
+                moves[numMoves++] = legal[i];
+                
+                if(find(target, mover, depth + 1)) return true;
+                
+                numMoves--;
+                current.unmake(legal[i]);
+            }
+            return false;
+        }
+        
+        /**
+         * Identifies the final moves, and writes the game to the log.
+         * @param game the game being played.
+         * @param winnerId the ID of the winner, or a non-positive ID for a draw.
+         */
+        private void finish(G game, int winnerId) {
+            
+            if(finished) return;
+            finished = true;
+            
+            observe(game);
+            if(failed || current == null) {
+                numDropped.incrementAndGet();
+                return;
+            }
+            
+            try {
+                int result = winnerId > 0 ? winnerId : GameState.DRAW;
+                writer.write(new GameRecord(names, params, result, Arrays.copyOf(moves, numMoves)));
+                numRecorded.incrementAndGet();
+            } catch(IOException e) {
+                //The writer reports its failure again when closed.
+                numDropped.incrementAndGet();
+            }
+        }
+    }
+}
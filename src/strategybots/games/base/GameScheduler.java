@@ -0,0 +1,167 @@
+package strategybots.games.base;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for running many games concurrently.<br>
+ * Bounds the number of games in progress at once, and supports clean shutdown.<br>
+ * <br>
+ * Install using 'Game.setExecutor()' before constructing any games.<br>
+ * Construction of a game will block while the maximum number of games are running.
+ *
+ * @author Alec Dorrington
+ */
+public class GameScheduler implements Executor {
+    
+    /** The executor on which games are actually run. */
+    private final Executor executor;
+    
+    /** The maximum number of games which may be running at once. */
+    private final int maxGames;
+    
+    /** Permits for each game which may be running at once. */
+    private final Semaphore slots;
+    
+    /** The threads on which games are currently running. */
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    
+    /** Whether this scheduler has stopped accepting new games. */
+    private volatile boolean shutdown = false;
+    
+    /**
+     * Constructs a new scheduler which runs each game in its own virtual
+     * thread where supported (Java 21+), or in a pooled platform thread otherwise.
+     * @param maxGames the maximum number of games which may be running at once.
+     */
+    public GameScheduler(int maxGames) {
+        this(newGameExecutor(), maxGames);
+    }
+    
+    /**
+     * Constructs a new scheduler which runs games on the given executor.
+     * @param executor the executor on which games are to be run.
+     * @param maxGames the maximum number of games which may be running at once.
+     */
+    public GameScheduler(Executor executor, int maxGames) {
+        this.executor = executor;
+        this.maxGames = maxGames;
+        slots = new Semaphore(maxGames);
+    }
+    
+    /**
+     * Runs a game on this scheduler.<br>
+     * Blocks until there is a free slot if the maximum number of games are running.
+     * @param game the game loop to run.
+     * @throws RejectedExecutionException if the scheduler has been shut down.
+     */
+    @Override
+    public void execute(Runnable game) {
+        
+        if(shutdown) throw new RejectedExecutionException("Scheduler has been shut down.");
+        
+        //Wait for a free slot.
+        slots.acquireUninterruptibly();
+        
+        if(shutdown) {
+            slots.release();
+            throw new RejectedExecutionException("Scheduler has been shut down.");
+        }
+        
+        try {
+            executor.execute(() -> {
+                
+                threads.add(Thread.currentThread());
+                try {
+                    game.run();
+                    
+                } finally {
+                    //Free the slot, and don't leak interrupts into pooled threads.
+                    threads.remove(Thread.currentThread());
+                    Thread.interrupted();
+                    slots.release();
+                }
+            });
+            
+        } catch(RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * @return the number of games currently running.
+     */
+    public int getNumRunning() { return maxGames - slots.availablePermits(); }
+    
+    /**
+     * @return the maximum number of games which may be running at once.
+     */
+    public int getMaxGames() { return maxGames; }
+    
+    /**
+     * Stops accepting new games. Games in progress are played to completion.
+     */
+    public void shutdown() {
+        
+        shutdown = true;
+        if(executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+    
+    /**
+     * Stops accepting new games, and abandons all games in progress.<br>
+     * Each abandoned game ends without a winner.
+     */
+    public void shutdownNow() {
+        
+        shutdown = true;
+        threads.forEach(Thread::interrupt);
+        if(executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+    
+    /**
+     * @return whether this scheduler has stopped accepting new games.
+     */
+    public boolean isShutdown() { return shutdown; }
+    
+    /**
+     * Blocks until all running games have finished, or the timeout expires.
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout.
+     * @return whether all games finished before the timeout expired.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        
+        if(!slots.tryAcquire(maxGames, timeout, unit)) return false;
+        slots.release(maxGames);
+        return true;
+    }
+    
+    /**
+     * Creates an executor which runs each game in its own virtual thread
+     * where supported (Java 21+), or in a pooled platform thread otherwise.
+     * @return the new executor.
+     */
+    private static ExecutorService newGameExecutor() {
+        
+        try {
+            //Use virtual threads if the runtime supports them.
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        
+        } catch(ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package strategybots.games.base;
+
+/**
+ * Compact, mutable model of a game in progress, independent of any board or window.<br>
+ * <br>
+ * Allows search algorithms to be written once and shared between games.
+ * Each move is encoded as a single int, whose meaning is game-specific.
+ * Moves are made and unmade in place, so searching needn't allocate.<br>
+ * Moves must be unmade in the reverse order to which they were made.
+ *
+ * @author Alec Dorrington
+ */
+public interface GameState {
+    
+    /** Result of 'terminalResult()' for a game which is still in progress. */
+    int IN_PROGRESS = -1;
+    
+    /** Result of 'terminalResult()' for a game which ended in a draw. */
+    int DRAW = 0;
+    
+    /**
+     * @return the ID of the player whose turn it is to move.
+     */
+    int getCurrentPlayerId();
+    
+    /**
+     * @return an upper bound on the number of legal moves in any position,
+     * for use in sizing the array passed to 'legalMoves()'.
+     */
+    int getMaxMoves();
+    
+    /**
+     * Enumerates the moves available to the current player.<br>
+     * Writes no moves if the game is over.
+     * @param out the array into which to write the moves, of length at least 'getMaxMoves()'.
+     * @return the number of moves written.
+     */
+    int legalMoves(int[] out);
+    
+    /**
+     * Makes a move for the current player. The move must be legal.
+     * @param move the move to make.
+     */
+    void make(int move);
+    
+    /**
+     * Unmakes a move, restoring the state to exactly as it was before the move was made.
+     * @param move the most recent move made which hasn't yet been unmade.
+     */
+    void unmake(int move);
+    
+    /**
+     * @return a hash of the current position (incl. the player to move),
+     * which is equal for any two equal positions.
+     */
+    long hash();
+    
+    /**
+     * @return the ID of the winner if the game is over, 'DRAW' if it was drawn,
+     * or 'IN_PROGRESS' if the game isn't yet over.
+     */
+    int terminalResult();
+    
+    /**
+     * @return an independent copy of this state.
+     */
+    GameState copy();
+}
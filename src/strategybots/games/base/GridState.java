@@ -0,0 +1,189 @@
+package strategybots.games.base;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Abstract supertype for the states of games played on a grid.<br>
+ * <br>
+ * Stores a small value at each position, using the same layout as 'Snapshot'
+ * (indexed by x * height + y), along with the player whose turn it is.
+ * Maintains a Zobrist hash of the grid incrementally as it is changed,
+ * and provides a stack on which implementations may record how to unmake moves.
+ *
+ * @author Alec Dorrington
+ */
+public abstract class GridState implements GameState {
+    
+    /** The number of distinct values which may be stored at each position. */
+    private static final int NUM_VALUES = 8;
+    
+    /** Seed for the Zobrist keys, such that equal positions always hash equally. */
+    private static final long SEED = 0x5EED_C0FFEEL;
+    
+    /** The dimensions of the grid. */
+    protected final int width, height;
+    
+    /** The value at each position, indexed by x * height + y. */
+    protected final byte[] cells;
+    
+    /** The ID of the player whose turn it is. */
+    private int playerId;
+    
+    /** Zobrist keys for each value at each position, and for the player to move. */
+    private final long[] keys;
+    private final long playerKey;
+    
+    /** The current Zobrist hash. */
+    private long hash = 0;
+    
+    /** Stack used by implementations to record how to unmake moves. */
+    private int[] stack = new int[64];
+    private int stackSize = 0;
+    
+    /**
+     * Constructs a new empty grid.
+     * @param width the width of the grid.
+     * @param height the height of the grid.
+     * @param playerId the ID of the player whose turn it is.
+     */
+    protected GridState(int width, int height, int playerId) {
+        
+        this.width = width;
+        this.height = height;
+        cells = new byte[width * height];
+        
+        //Generate the Zobrist keys.
+        SplittableRandom random = new SplittableRandom(SEED);
+        keys = new long[cells.length * NUM_VALUES];
+        for(int i = 0; i < keys.length; i++) {
+            //The empty value needn't contribute to the hash.
+            if(i % NUM_VALUES != 0) keys[i] = random.nextLong();
+        }
+        playerKey = random.nextLong();
+        
+        setCurrentPlayerId(playerId);
+    }
+    
+    /**
+     * Constructs a new grid with the contents of a snapshot.<br>
+     * Each value in the snapshot must be in the range [0, 8).
+     * @param snapshot the snapshot from which to copy the grid.
+     * @param playerId the ID of the player whose turn it is.
+     */
+    protected GridState(Snapshot snapshot, int playerId) {
+        
+        this(snapshot.getWidth(), snapshot.getHeight(), playerId);
+        for(int i = 0; i < cells.length; i++) {
+            set(i, snapshot.get(i));
+        }
+    }
+    
+    /**
+     * Constructs a copy of another state.
+     * @param state the state to copy.
+     */
+    protected GridState(GridState state) {
+        
+        width = state.width;
+        height = state.height;
+        cells = state.cells.clone();
+        playerId = state.playerId;
+        keys = state.keys;
+        playerKey = state.playerKey;
+        hash = state.hash;
+        stack = state.stack.clone();
+        stackSize = state.stackSize;
+    }
+    
+    /**
+     * @return the width of the grid.
+     */
+    public int getWidth() { return width; }
+    
+    /**
+     * @return the height of the grid.
+     */
+    public int getHeight() { return height; }
+    
+    /**
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return the value at the given position.
+     */
+    public int get(int x, int y) { return cells[x * height + y]; }
+    
+    /**
+     * @param index the index (x * height + y) of the position to check.
+     * @return the value at the given position.
+     */
+    public int get(int index) { return cells[index]; }
+    
+    /**
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return whether this position is within the bounds of the grid.
+     */
+    public boolean inBounds(int x, int y) {
+        return x>=0 && y>=0 && x<width && y<height;
+    }
+    
+    @Override
+    public int getCurrentPlayerId() { return playerId; }
+    
+    @Override
+    public long hash() { return hash; }
+    
+    /**
+     * Sets the value at a position, updating the hash.
+     * @param index the index (x * height + y) of the position to set.
+     * @param value the new value, in the range [0, 8).
+     */
+    protected void set(int index, int value) {
+        
+        hash ^= keys[index * NUM_VALUES + cells[index]];
+        cells[index] = (byte) value;
+        hash ^= keys[index * NUM_VALUES + value];
+    }
+    
+    /**
+     * Sets the player whose turn it is, updating the hash.
+     * @param playerId the ID of the player (1 or 2).
+     */
+    protected void setCurrentPlayerId(int playerId) {
+        
+        if(this.playerId == 2) hash ^= playerKey;
+        this.playerId = playerId;
+        if(playerId == 2) hash ^= playerKey;
+    }
+    
+    /**
+     * Passes the turn to the other player.
+     */
+    protected void switchPlayer() {
+        setCurrentPlayerId(playerId % 2 + 1);
+    }
+    
+    /**
+     * Mixes additional state (such as a score) into the hash.
+     * @param value the value to mix in. The same value must be mixed in again to remove it.
+     */
+    protected void mixHash(long value) {
+        hash ^= value * 0x9E3779B97F4A7C15L;
+    }
+    
+    /**
+     * Pushes a value onto the stack, for use in unmaking a move.
+     * @param value the value to push.
+     */
+    protected void push(int value) {
+        
+        if(stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = value;
+    }
+    
+    /**
+     * @return the value most recently pushed onto the stack, which is removed.
+     */
+    protected int pop() { return stack[--stackSize]; }
+}
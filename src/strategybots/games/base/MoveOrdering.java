@@ -0,0 +1,154 @@
+package strategybots.games.base;
+
+import java.util.Arrays;
+
+/**
+ * Orders the moves searched at each ply of an alpha-beta search, so that cutoffs happen sooner.<br>
+ * <br>
+ * Moves are tried in order of: the best move found by an earlier search (e.g. from a
+ * 'TranspositionTable'), the killer moves of the ply (which recently caused cutoffs
+ * in sibling positions), then their history scores (how often, and how deep, they have
+ * caused cutoffs anywhere). Ties keep the order in which the moves were listed,
+ * so moves should be listed in a sensible static order (such as centre-first).<br>
+ * <br>
+ * Example usage:<br>
+ * <code>
+ * int[] moves = ordering.getMoves(ply);<br>
+ * int numMoves = ... //List the legal moves into 'moves'.<br>
+ * ordering.score(ply, playerId, bestMove, numMoves);<br>
+ * for(int i = 0; i &lt; numMoves; i++) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;int move = ordering.next(ply, i, numMoves);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;...<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;if(a &gt;= b) { ordering.cutoff(ply, playerId, move, depth); break; }<br>
+ * }
+ * </code><br>
+ * Not thread-safe: each searching thread should have its own.
+ *
+ * @author Alec Dorrington
+ */
+public class MoveOrdering {
+    
+    /** The ordering scores of the best move and of the killer moves, above any history score. */
+    private static final int BEST = Integer.MAX_VALUE, KILLER = Integer.MAX_VALUE - 2;
+    
+    /** The history score above which all history scores are halved. */
+    private static final int MAX_HISTORY = 1 << 24;
+    
+    /** The two most recent killer moves of each ply (-1 for none). */
+    private final int[][] killers;
+    
+    /** The history score of each move, for each player. */
+    private final int[][] history;
+    
+    /** The moves of each ply, and their ordering scores. */
+    private final int[][] moves, scores;
+    
+    /**
+     * Constructs a new move ordering, with no killer moves or history.
+     * @param numMoves the number of distinct moves (which are in the range [0, numMoves)).
+     * @param numPlayers the number of players.
+     * @param maxPly the greatest number of plies searched.
+     */
+    public MoveOrdering(int numMoves, int numPlayers, int maxPly) {
+        
+        killers = new int[maxPly][2];
+        history = new int[numPlayers][numMoves];
+        moves = new int[maxPly][numMoves];
+        scores = new int[maxPly][numMoves];
+        for(int[] killer : killers) Arrays.fill(killer, -1);
+    }
+    
+    /**
+     * Prepares for a new search, forgetting killer moves and halving history scores,
+     * as they were learned in other positions.
+     */
+    public void newSearch() {
+        
+        for(int[] killer : killers) Arrays.fill(killer, -1);
+        age();
+    }
+    
+    /**
+     * @param ply the number of moves made since the root of the search.
+     * @return the array into which the moves of the ply are to be listed.
+     */
+    public int[] getMoves(int ply) { return moves[ply]; }
+    
+    /**
+     * Scores the moves listed for a ply, ready for them to be taken using 'next()'.
+     * @param ply the number of moves made since the root of the search.
+     * @param playerId the ID of the player to move.
+     * @param bestMove the best move found by an earlier search, or -1 for none.
+     * @param numMoves the number of moves listed.
+     */
+    public void score(int ply, int playerId, int bestMove, int numMoves) {
+        
+        int[] moves = this.moves[ply], scores = this.scores[ply];
+        int[] killer = killers[ply], history = this.history[playerId - 1];
+        
+        for(int i = 0; i < numMoves; i++) {
+            
+            int move = moves[i];
+            scores[i] = move == bestMove ? BEST
+                    : move == killer[0] ? KILLER
+                    : move == killer[1] ? KILLER - 1
+                    : history[move];
+        }
+    }
+    
+    /**
+     * Takes the best-scoring of the moves yet to be searched at a ply.<br>
+     * Only the moves searched are ever sorted, so this is cheap if a cutoff occurs early.
+     * @param ply the number of moves made since the root of the search.
+     * @param i the number of moves already taken.
+     * @param numMoves the number of moves listed.
+     * @return the next move to search.
+     */
+    public int next(int ply, int i, int numMoves) {
+        
+        int[] moves = this.moves[ply], scores = this.scores[ply];
+        
+        int best = i;
+        for(int j = i + 1; j < numMoves; j++) {
+            if(scores[j] > scores[best]) best = j;
+        }
+        
+        //Shift the skipped moves along (rather than swapping), so ties stay in order.
+        int move = moves[best], score = scores[best];
+        System.arraycopy(moves, i, moves, i + 1, best - i);
+        System.arraycopy(scores, i, scores, i + 1, best - i);
+        moves[i] = move;
+        scores[i] = score;
+        return move;
+    }
+    
+    /**
+     * Records that a move caused a cutoff, so that it is tried sooner elsewhere.
+     * @param ply the number of moves made since the root of the search.
+     * @param playerId the ID of the player who made the move.
+     * @param move the move which caused a cutoff.
+     * @param depth the remaining depth searched, such that deeper cutoffs count for more.
+     */
+    public void cutoff(int ply, int playerId, int move, int depth) {
+        
+        int[] killer = killers[ply];
+        if(killer[0] != move) {
+            killer[1] = killer[0];
+            killer[0] = move;
+        }
+        
+        int[] history = this.history[playerId - 1];
+        history[move] += depth * depth;
+        if(history[move] > MAX_HISTORY) age();
+    }
+    
+    /**
+     * Halves every history score, such that recent cutoffs count for more.
+     */
+    private void age() {
+        
+        for(int[] history : this.history) {
+            for(int i = 0; i < history.length; i++) history[i] >>= 1;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package strategybots.games.base;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs a player's search in the background while the opponent takes their turn ("pondering").<br>
+ * <br>
+ * Once a player has moved, it may 'start()' searching the position the opponent now faces,
+ * for instance to grow a search tree or fill a transposition table. At the beginning of its
+ * next turn, it must 'stop()' the search before reading what was found, and then reuse
+ * whatever is relevant to the move the opponent actually made.<br>
+ * <br>
+ * The background search is handed a deadline which never expires until the search is
+ * stopped, and must poll it like any other. Pondering occupies a core on the opponent's
+ * time, so slows down an opponent running on the same cores.
+ *
+ * @author Alec Dorrington
+ */
+public class Ponderer {
+    
+    /** The thread on which searches are run, created when first needed. */
+    private ExecutorService thread;
+    
+    /** The name of the thread. */
+    private final String name;
+    
+    /** The deadline of the search in progress, and its result. */
+    private Deadline deadline;
+    private Future<?> task;
+    
+    /**
+     * @param name the name of the thread on which searches are run.
+     */
+    public Ponderer(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Starts searching in the background, stopping any search already in progress.
+     * @param search the search, which is to return promptly once its deadline expires.
+     */
+    public synchronized void start(Consumer<Deadline> search) {
+        
+        stop();
+        if(thread == null) {
+            thread = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Deadline deadline = Deadline.none();
+        this.deadline = deadline;
+        task = thread.submit(() -> search.accept(deadline));
+    }
+    
+    /**
+     * Stops the search in progress (if any), waiting for it to return.
+     */
+    public synchronized void stop() {
+        
+        if(task == null) return;
+        deadline.cancel();
+        try {
+            task.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            task = null;
+            deadline = null;
+        }
+    }
+    
+    /**
+     * @return whether a search is in progress.
+     */
+    public synchronized boolean isPondering() { return task != null; }
+    
+    /**
+     * Stops the search in progress, and releases the thread. Searches may later be started again.
+     */
+    public synchronized void shutdown() {
+        
+        stop();
+        if(thread != null) thread.shutdown();
+        thread = null;
+    }
+}
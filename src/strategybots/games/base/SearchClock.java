@@ -0,0 +1,199 @@
+package strategybots.games.base;
+
+/**
+ * Keeps the iterations of an iterative-deepening search within a 'Deadline'.<br>
+ * <br>
+ * 'poll()' is cheap enough to be called at every node, as it only reads the clock once
+ * every 'POLL_INTERVAL' calls (or fewer, should the nodes be so costly that more than
+ * 'MAX_POLL_GAP' would pass between reads). Once it returns true, the iteration in progress
+ * should be abandoned (without storing anything it found), and the result of the last
+ * completed iteration used instead. This may happen during the first iteration too, should
+ * time run out before it finishes, so searchers must keep some legal move to fall back on.<br>
+ * <br>
+ * The search is stopped a margin before the deadline, leaving time to unwind it, join
+ * any helper threads, make the move and record statistics. Calling 'finish()' once the
+ * move has been made measures how long this took from when the search was meant to stop
+ * (so including any pause, e.g. for garbage collection, which delayed the stop itself),
+ * and the margin reserved on later turns is scaled to the slowest recent measurement.
+ * Until one has been made (on the first turn, which is also the slowest to finish)
+ * the most is reserved. A clock should therefore be kept from turn to turn, and 'reset()'
+ * with the deadline of each new search.<br>
+ * <br>
+ * 'startIteration()' predicts how long the next iteration will take from the iterations
+ * before it, assuming that the effective branching factor (the ratio between the durations
+ * of successive iterations) stays the same. The factor is averaged over the last two
+ * iterations, as alpha-beta searches of odd and even depths tend to differ in cost.
+ * An iteration which clearly wouldn't finish in time (taking more than 'MAX_OVERRUN' times
+ * the time remaining) isn't started, as it would only be abandoned. This leeway allows for
+ * later iterations tending to be cheaper than predicted, having the results of earlier ones.<br>
+ * <br>
+ * Not thread-safe: each searching thread should have its own.
+ *
+ * @author Alec Dorrington
+ */
+public class SearchClock {
+    
+    /** The greatest number of calls to 'poll()' between reads of the clock. */
+    public static final int POLL_INTERVAL = 64;
+    
+    /** The longest time (ns) which should pass between reads of the clock, however costly the nodes. */
+    private static final long MAX_POLL_GAP = 50_000;
+    
+    /** How many times the remaining time an iteration must be predicted to take for it to be skipped. */
+    private static final double MAX_OVERRUN = 2.0;
+    
+    /** The shortest iteration (ns) from which the next is predicted, below which timings are too noisy. */
+    private static final long MIN_PREDICTABLE = 1_000_000;
+    
+    /** The least time (ns) reserved for finishing the turn. */
+    private static final long MIN_MARGIN = 2_000_000;
+    
+    /** How many times the slowest recent wind-down is reserved, allowing for variation between turns. */
+    private static final double MARGIN_FACTOR = 2.0;
+    
+    /** The greatest fraction of the budget which may be reserved, so that an outlier can't starve the search. */
+    private static final double MAX_MARGIN = 0.25;
+    
+    /** The slowest wind-down is forgotten by a 1/DECAY part each turn, as pauses (e.g. for garbage collection) recur. */
+    private static final long DECAY = 16;
+    
+    /** The time budget of the search. */
+    private Deadline deadline;
+    
+    /** The number of iterations started. */
+    private int iterations = 0;
+    
+    /** The number of calls to 'poll()' since the clock was last read, and how many to make between reads. */
+    private int polls = 0, interval = POLL_INTERVAL;
+    
+    /** When the clock was last read by 'poll()' (ns). */
+    private long lastPoll;
+    
+    /** Whether the iteration in progress has been abandoned. */
+    private boolean aborted = false;
+    
+    /** When the latest iteration began (ns). */
+    private long iterationStart;
+    
+    /** How long each of the last three iterations took (ns), latest first. */
+    private final long[] durations = new long[3];
+    
+    /** Whether the search has been stopped on this turn, and when it was or was meant to be, whichever is sooner (ns). */
+    private boolean stopped = false;
+    private long stopTime;
+    
+    /** When the search is meant to stop at the latest, a margin before the deadline (ns). */
+    private long stopBy;
+    
+    /** The slowest recent wind-down (ns), from stopping the search to finishing the turn, or -1 if none yet. */
+    private long windDown = -1;
+    
+    /** The time (ns) before the deadline at which to stop the search. */
+    private long margin;
+    
+    /**
+     * Constructs a clock, which must be 'reset()' before each search.
+     */
+    public SearchClock() {}
+    
+    /**
+     * Begins timing a new search, keeping the wind-down measured on earlier turns.
+     * @param deadline the time budget of the search.
+     */
+    public void reset(Deadline deadline) {
+        
+        long now = System.nanoTime();
+        this.deadline = deadline;
+        iterations = 0;
+        polls = 0;
+        lastPoll = now;
+        aborted = false;
+        stopped = false;
+        
+        //Until the wind-down has been measured, reserve as much as may be.
+        long maxMargin = deadline.isLimited() ? (long) (MAX_MARGIN * deadline.getBudget() * 1_000_000) : 0;
+        margin = windDown < 0 ? maxMargin : Math.max(MIN_MARGIN, (long) (MARGIN_FACTOR * windDown));
+        margin = Math.min(margin, maxMargin);
+        stopBy = deadline.isLimited() ? now + deadline.remainingNanos() - margin : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Marks the beginning of an iteration, unless it shouldn't be started.
+     * @return whether to start the iteration, i.e. whether it can be expected to finish in time.
+     */
+    public boolean startIteration() {
+        
+        long now = System.nanoTime();
+        if(iterations > 0) {
+            System.arraycopy(durations, 0, durations, 1, durations.length - 1);
+            durations[0] = now - iterationStart;
+        }
+        iterationStart = now;
+        
+        if(iterations++ == 0) return true;
+        if(aborted) return false;
+        
+        long remaining = deadline.remainingNanos() - margin;
+        if(remaining <= 0 || deadline.isCancelled()) return stop(now);
+        if(!deadline.isLimited() || durations[1] < MIN_PREDICTABLE) return true;
+        
+        double branching = durations[2] >= MIN_PREDICTABLE
+                ? Math.sqrt((double) durations[0] / durations[2])
+                : (double) durations[0] / durations[1];
+        return durations[0] * branching <= MAX_OVERRUN * remaining || stop(now);
+    }
+    
+    /**
+     * Checks, every so often, whether time has run out. Called at each node of the search.
+     * @return whether the iteration in progress should be abandoned.
+     */
+    public boolean poll() {
+        
+        if(aborted) return true;
+        if(++polls < interval) return false;
+        polls = 0;
+        
+        //Read the clock more often if the nodes are costly, so that the search stops promptly.
+        long now = System.nanoTime();
+        if(now - lastPoll > MAX_POLL_GAP) interval = Math.max(interval / 2, 1);
+        else if(now - lastPoll < MAX_POLL_GAP / 4) interval = Math.min(interval * 2, POLL_INTERVAL);
+        lastPoll = now;
+        
+        if(deadline.remainingNanos() > margin && !deadline.isCancelled()) return false;
+        aborted = true;
+        stop(now);
+        return true;
+    }
+    
+    /**
+     * @return whether the iteration in progress has been abandoned, such that its result is meaningless.
+     */
+    public boolean isAborted() { return aborted; }
+    
+    /**
+     * Marks the end of the turn, once the move has been made.<br>
+     * Measures the time taken to finish the turn after the search was stopped,
+     * which determines the margin left on later turns.
+     */
+    public void finish() {
+        
+        if(!stopped) return;
+        windDown = Math.max(System.nanoTime() - stopTime, windDown - windDown / DECAY);
+        stopped = false;
+    }
+    
+    /**
+     * Records when the search was stopped, from which the wind-down is measured.<br>
+     * A search stopped late is measured from when it should have been.
+     * @param now the current time (ns).
+     * @return false, as the next iteration isn't to be started.
+     */
+    private boolean stop(long now) {
+        
+        if(!stopped) {
+            stopped = true;
+            stopTime = Math.min(now, stopBy);
+        }
+        return false;
+    }
+}
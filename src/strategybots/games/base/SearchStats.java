@@ -0,0 +1,284 @@
+package strategybots.games.base;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics describing the search performed by a bot in choosing a single move.<br>
+ * <br>
+ * Counters are lock-free, and may be updated concurrently by multiple search threads.
+ * Hot loops should count locally, and add their totals once searching is done.<br>
+ * Once the move has been made, 'finish()' publishes the statistics to 'Telemetry'.
+ *
+ * @author Alec Dorrington
+ */
+public class SearchStats {
+    
+    /** Header row for 'toCsv()'. */
+    public static final String CSV_HEADER = "bot,player,turn,move,score,depth,nodes,simulations,"
+            + "nodes_per_sec,sims_per_sec,tt_hit_rate,branching,time_ms,budget_ms,memory_bytes";
+    
+    /** The name of the bot which performed the search. */
+    private final String bot;
+    
+    /** The ID of the player, and the turn number. */
+    private final int playerId, turn;
+    
+    /** The time budget for the search (ms), or -1 if there was none. */
+    private final long budget;
+    
+    /** The time at which the search began (ns). */
+    private final long start = System.nanoTime();
+    
+    /** Counters updated during the search. */
+    private final LongAdder nodes = new LongAdder(), simulations = new LongAdder(),
+            ttProbes = new LongAdder(), ttHits = new LongAdder(),
+            expansions = new LongAdder(), children = new LongAdder();
+    
+    /** The move chosen, for display. */
+    private volatile String move = "";
+    
+    /** The expected outcome of the chosen move, or NaN if unknown. */
+    private volatile double score = Double.NaN;
+    
+    /** The greatest depth searched to completion. */
+    private volatile int depth = 0;
+    
+    /** The time taken by the search (ns), or -1 if still in progress. */
+    private volatile long time = -1;
+    
+    /** Heap memory in use at the end of the search (bytes). */
+    private volatile long memory = 0;
+    
+    /**
+     * Begins recording statistics for a new search.
+     * @param bot the name of the bot performing the search.
+     * @param playerId the ID of the player performing the search.
+     * @param turn the turn number.
+     * @param deadline the time budget for the search.
+     */
+    public SearchStats(String bot, int playerId, int turn, Deadline deadline) {
+        this.bot = bot;
+        this.playerId = playerId;
+        this.turn = turn;
+        budget = deadline.getBudget();
+    }
+    
+    /** Counts a single node searched. */
+    public void node() { nodes.increment(); }
+    
+    /** @param count the number of additional nodes searched. */
+    public void addNodes(long count) { nodes.add(count); }
+    
+    /** Counts a single simulation (playout) run. */
+    public void simulation() { simulations.increment(); }
+    
+    /** @param count the number of additional simulations run. */
+    public void addSimulations(long count) { simulations.add(count); }
+    
+    /**
+     * Counts a single transposition table lookup.
+     * @param hit whether a usable entry was found.
+     */
+    public void ttProbe(boolean hit) {
+        ttProbes.increment();
+        if(hit) ttHits.increment();
+    }
+    
+    /**
+     * @param probes the number of additional transposition table lookups.
+     * @param hits how many of these found a usable entry.
+     */
+    public void addTtProbes(long probes, long hits) {
+        ttProbes.add(probes);
+        ttHits.add(hits);
+    }
+    
+    /**
+     * Counts the expansion of a node, for measuring the branching factor.
+     * @param numChildren the number of children generated (or searched).
+     */
+    public void expand(int numChildren) {
+        expansions.increment();
+        children.add(numChildren);
+    }
+    
+    /**
+     * @param count the number of additional nodes expanded.
+     * @param numChildren the total number of children generated (or searched) by these nodes.
+     */
+    public void addExpansions(long count, long numChildren) {
+        expansions.add(count);
+        children.add(numChildren);
+    }
+    
+    /** @param move the move chosen, for display. */
+    public void setMove(String move) { this.move = move; }
+    
+    /** @param score the expected outcome of the chosen move. */
+    public void setScore(double score) { this.score = score; }
+    
+    /** @param depth the greatest depth searched to completion. */
+    public void setDepth(int depth) { this.depth = depth; }
+    
+    /**
+     * Ends the search, and publishes these statistics to 'Telemetry'.
+     */
+    public void finish() {
+        
+        time = System.nanoTime() - start;
+        Runtime runtime = Runtime.getRuntime();
+        memory = runtime.totalMemory() - runtime.freeMemory();
+        
+        Telemetry.record(this);
+    }
+    
+    /** @return the name of the bot which performed the search. */
+    public String getBot() { return bot; }
+    
+    /** @return the ID of the player which performed the search. */
+    public int getPlayerId() { return playerId; }
+    
+    /** @return the turn number. */
+    public int getTurn() { return turn; }
+    
+    /** @return the move chosen. */
+    public String getMove() { return move; }
+    
+    /** @return the expected outcome of the chosen move, or NaN if unknown. */
+    public double getScore() { return score; }
+    
+    /** @return the greatest depth searched to completion. */
+    public int getDepth() { return depth; }
+    
+    /** @return the number of nodes searched. */
+    public long getNodes() { return nodes.sum(); }
+    
+    /** @return the number of simulations run. */
+    public long getSimulations() { return simulations.sum(); }
+    
+    /** @return the number of nodes searched per second. */
+    public double getNodesPerSecond() { return getNodes() / (getTimeMillis() / 1000); }
+    
+    /** @return the number of simulations run per second. */
+    public double getSimulationsPerSecond() { return getSimulations() / (getTimeMillis() / 1000); }
+    
+    /** @return the proportion of transposition table lookups which hit, or NaN if there were none. */
+    public double getTtHitRate() {
+        long probes = ttProbes.sum();
+        return probes == 0 ? Double.NaN : (double) ttHits.sum() / probes;
+    }
+    
+    /** @return the average number of children per expanded node, or NaN if unknown. */
+    public double getBranchingFactor() {
+        long expanded = expansions.sum();
+        return expanded == 0 ? Double.NaN : (double) children.sum() / expanded;
+    }
+    
+    /** @return the time taken by the search so far (ms). */
+    public double getTimeMillis() {
+        return (time == -1 ? System.nanoTime() - start : time) / 1e6;
+    }
+    
+    /** @return the time budget for the search (ms), or -1 if there was none. */
+    public long getBudget() { return budget; }
+    
+    /** @return the heap memory in use at the end of the search (bytes). */
+    public long getMemory() { return memory; }
+    
+    /**
+     * @return these statistics as a row of comma-separated values, as per 'CSV_HEADER'.
+     */
+    public String toCsv() {
+        return String.join(",", quote(bot), String.valueOf(playerId), String.valueOf(turn),
+                quote(move), number(score), String.valueOf(depth), String.valueOf(getNodes()),
+                String.valueOf(getSimulations()), number(getNodesPerSecond()),
+                number(getSimulationsPerSecond()), number(getTtHitRate()),
+                number(getBranchingFactor()), number(getTimeMillis()),
+                String.valueOf(budget), String.valueOf(memory));
+    }
+    
+    /**
+     * @return these statistics as a single-line JSON object.
+     */
+    public String toJson() {
+        return "{\"bot\":" + json(bot) + ",\"player\":" + playerId + ",\"turn\":" + turn
+                + ",\"move\":" + json(move) + ",\"score\":" + jsonNumber(score)
+                + ",\"depth\":" + depth + ",\"nodes\":" + getNodes()
+                + ",\"simulations\":" + getSimulations()
+                + ",\"nodes_per_sec\":" + jsonNumber(getNodesPerSecond())
+                + ",\"sims_per_sec\":" + jsonNumber(getSimulationsPerSecond())
+                + ",\"tt_hit_rate\":" + jsonNumber(getTtHitRate())
+                + ",\"branching\":" + jsonNumber(getBranchingFactor())
+                + ",\"time_ms\":" + jsonNumber(getTimeMillis())
+                + ",\"budget_ms\":" + budget + ",\"memory_bytes\":" + memory + "}";
+    }
+    
+    /**
+     * @return a human-readable summary of these statistics, omitting any which weren't recorded.
+     */
+    @Override
+    public String toString() {
+        
+        StringBuilder sb = new StringBuilder();
+        sb.append("=======================\n");
+        sb.append(bot).append(" Statistics:\n");
+        sb.append("Player:      ").append(playerId).append('\n');
+        sb.append("Turn:        ").append(turn).append('\n');
+        sb.append("Move:        ").append(move).append('\n');
+        if(!Double.isNaN(score)) sb.append("Expectation: ").append(number(score)).append('\n');
+        if(depth > 0) sb.append("Depth:       ").append(depth).append('\n');
+        if(getNodes() > 0) sb.append("Nodes:       ").append(getNodes())
+                .append(" (").append(Math.round(getNodesPerSecond())).append("/s)\n");
+        if(getSimulations() > 0) sb.append("Simulations: ").append(getSimulations())
+                .append(" (").append(Math.round(getSimulationsPerSecond())).append("/s)\n");
+        if(!Double.isNaN(getTtHitRate())) sb.append("TT Hits:     ")
+                .append(Math.round(getTtHitRate() * 1000) / 10.0).append("%\n");
+        if(!Double.isNaN(getBranchingFactor())) sb.append("Branching:   ")
+                .append(Math.round(getBranchingFactor() * 10) / 10.0).append('\n');
+        sb.append("Time:        ").append(Math.round(getTimeMillis())).append("ms");
+        if(budget >= 0) sb.append(" of ").append(budget).append("ms");
+        sb.append('\n');
+        return sb.toString();
+    }
+    
+    /**
+     * @param value a number.
+     * @return the number as a string, without a fractional part if it is an integer.
+     */
+    private static String number(double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) return "";
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+    
+    /**
+     * @param value a number.
+     * @return the number as a JSON value (null if not finite).
+     */
+    private static String jsonNumber(double value) {
+        String number = number(value);
+        return number.isEmpty() ? "null" : number;
+    }
+    
+    /**
+     * @param value a string.
+     * @return the string as a quoted CSV field.
+     */
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    
+    /**
+     * @param value a string.
+     * @return the string as a quoted JSON string.
+     */
+    private static String json(String value) {
+        
+        StringBuilder sb = new StringBuilder("\"");
+        for(char c : value.toCharArray()) {
+            if(c == '"' || c == '\\') sb.append('\\').append(c);
+            else if(c < ' ') sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
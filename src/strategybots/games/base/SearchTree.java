@@ -0,0 +1,314 @@
+package strategybots.games.base;
+
+import java.util.Arrays;
+
+/**
+ * Stores the nodes of a Monte Carlo search tree in arrays of primitives, rather than as objects.<br>
+ * <br>
+ * Each node is identified by its index, and its fields are stored at that index in an array
+ * per field. Each node links to its parent, its first child and its next sibling, such that
+ * the children of a node form a list. A node stores only the move leading to it, so the
+ * position at a node is recreated by making moves on the way down the tree.<br>
+ * <br>
+ * As no objects are allocated per node, trees may grow to millions of nodes without burdening
+ * the garbage collector. The arrays grow as needed, up to a maximum number of nodes, after
+ * which no more nodes are added until the tree is cleared (or compacted by 'retain()').
+ * Clearing the tree takes constant time.<br>
+ * <br>
+ * Results are recorded as in the arrays passed to 'update()': the number of draws,
+ * the number of wins of each player, then the number of simulations.<br>
+ * Not thread-safe.
+ *
+ * @author Alec Dorrington
+ */
+public class SearchTree {
+    
+    /** The index used in place of a node where there is none. */
+    public static final int NONE = -1;
+    
+    /** Value of 'getTerminal()' for a node whose game isn't yet over. */
+    public static final int IN_PROGRESS = GameState.IN_PROGRESS;
+    
+    /** The number of nodes for which space is initially allocated. */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    
+    /** The number of players. */
+    private final int numPlayers;
+    
+    /** The greatest number of nodes which may be stored. */
+    private final int maxNodes;
+    
+    /** The number of nodes stored, and the number for which space is allocated. */
+    private int size = 0, capacity;
+    
+    /** The links between nodes. */
+    private int[] parents, firstChildren, nextSiblings;
+    
+    /** The move leading to each node, and the number of simulations through it. */
+    private int[] moves, visits;
+    
+    /** The number of draws through each node, then the number of wins of each player. */
+    private final int[][] wins;
+    
+    /** The ID of the player who made the move leading to each node, and its result if it ends the game. */
+    private byte[] players, terminals;
+    
+    /** Bits stored with each node for use by the search, such as whether it has been expanded. */
+    private byte[] flags;
+    
+    /** The new index of each node while the tree is being compacted. */
+    private int[] remap;
+    
+    /**
+     * Constructs a new, empty tree.
+     * @param numPlayers the number of players.
+     * @param maxNodes the greatest number of nodes which may be stored.
+     */
+    public SearchTree(int numPlayers, int maxNodes) {
+        
+        if(maxNodes < 1) throw new IllegalArgumentException("Trees must be able to store at least one node.");
+        this.numPlayers = numPlayers;
+        this.maxNodes = maxNodes;
+        capacity = Math.min(INITIAL_CAPACITY, maxNodes);
+        
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        moves = new int[capacity];
+        visits = new int[capacity];
+        wins = new int[numPlayers + 1][capacity];
+        players = new byte[capacity];
+        terminals = new byte[capacity];
+        flags = new byte[capacity];
+    }
+    
+    /**
+     * Removes every node from the tree, without releasing any space.
+     */
+    public void clear() { size = 0; }
+    
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size() { return size; }
+    
+    /**
+     * @return the greatest number of nodes which may be stored.
+     */
+    public int getMaxNodes() { return maxNodes; }
+    
+    /**
+     * @return whether the tree is full, such that no more nodes can be added.
+     */
+    public boolean isFull() { return size == maxNodes; }
+    
+    /**
+     * Clears the tree, and adds a new root node.
+     * @param player the ID of the player who made the last move.
+     * @return the index of the root.
+     */
+    public int newRoot(int player) {
+        
+        clear();
+        return add(NONE, NONE, player, IN_PROGRESS);
+    }
+    
+    /**
+     * Adds a node as the last child of another, unless the tree is full.
+     * @param parent the index of the parent node.
+     * @param move the move leading from the parent to the child.
+     * @param player the ID of the player who makes the move.
+     * @param terminal the result of the game after the move, or 'IN_PROGRESS'.
+     * @return the index of the child, or 'NONE' if the tree is full.
+     */
+    public int addChild(int parent, int move, int player, int terminal) {
+        
+        if(isFull()) return NONE;
+        int child = add(parent, move, player, terminal);
+        
+        if(firstChildren[parent] == NONE) {
+            firstChildren[parent] = child;
+        } else {
+            int sibling = firstChildren[parent];
+            while(nextSiblings[sibling] != NONE) sibling = nextSiblings[sibling];
+            nextSiblings[sibling] = child;
+        }
+        return child;
+    }
+    
+    /**
+     * @param node the index of a node.
+     * @param move the move to search for.
+     * @return the index of the child reached by the move, or 'NONE' if there is none.
+     */
+    public int getChild(int node, int move) {
+        
+        for(int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if(moves[child] == move) return child;
+        }
+        return NONE;
+    }
+    
+    /**
+     * @param node the index of a node.
+     * @return the index of the parent of the node, or 'NONE' for a root.
+     */
+    public int getParent(int node) { return parents[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the index of the first child of the node, or 'NONE' if it has none.
+     */
+    public int getFirstChild(int node) { return firstChildren[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the index of the next child of the node's parent, or 'NONE' if it is the last.
+     */
+    public int getNextSibling(int node) { return nextSiblings[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the move leading to the node, or 'NONE' for a root.
+     */
+    public int getMove(int node) { return moves[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the ID of the player who made the move leading to the node.
+     */
+    public int getPlayer(int node) { return players[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the result of the game at the node, or 'IN_PROGRESS' if it isn't over.
+     */
+    public int getTerminal(int node) { return terminals[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @param terminal the result of the game at the node, or 'IN_PROGRESS' if it isn't over.
+     */
+    public void setTerminal(int node, int terminal) { terminals[node] = (byte) terminal; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the bits stored with the node for use by the search (initially 0).
+     */
+    public int getFlags(int node) { return flags[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @param flags the bits to store with the node for use by the search, up to 8.
+     */
+    public void setFlags(int node, int flags) { this.flags[node] = (byte) flags; }
+    
+    /**
+     * @param node the index of a node.
+     * @return the number of simulations through the node.
+     */
+    public int getVisits(int node) { return visits[node]; }
+    
+    /**
+     * @param node the index of a node.
+     * @param playerId the ID of a player, or 0 for draws.
+     * @return the number of simulations through the node won by the player.
+     */
+    public int getWins(int node, int playerId) { return wins[playerId][node]; }
+    
+    /**
+     * Records the results of simulations through a node.
+     * @param node the index of a node.
+     * @param results the number of draws, the number of wins of each player, then the number of simulations.
+     */
+    public void update(int node, int[] results) {
+        
+        for(int i = 0; i <= numPlayers; i++) wins[i][node] += results[i];
+        visits[node] += results[numPlayers + 1];
+    }
+    
+    /**
+     * Discards every node except those in the subtree of a node, which becomes the root.<br>
+     * The remaining nodes are moved to the front of the arrays, keeping their order, so that
+     * their space is reused. Takes time linear in the size of the tree, but allocates nothing.
+     * @param node the index of the node to keep.
+     * @return the new index of the node.
+     */
+    public int retain(int node) {
+        
+        if(remap == null || remap.length < capacity) remap = new int[capacity];
+        
+        //Children are always added after their parents, so are found in a single pass.
+        int newSize = 0;
+        for(int i = node; i < size; i++) {
+            
+            boolean kept = i == node || (parents[i] >= node && remap[parents[i]] != NONE);
+            remap[i] = kept ? newSize++ : NONE;
+            if(kept) copy(i, remap[i]);
+        }
+        
+        //Point the links at the new indices.
+        for(int i = 0; i < newSize; i++) {
+            parents[i] = i == 0 ? NONE : remap[parents[i]];
+            firstChildren[i] = firstChildren[i] == NONE ? NONE : remap[firstChildren[i]];
+            nextSiblings[i] = i == 0 || nextSiblings[i] == NONE ? NONE : remap[nextSiblings[i]];
+        }
+        size = newSize;
+        return 0;
+    }
+    
+    /**
+     * Adds a node, allocating more space if needed. The tree mustn't be full.
+     * @return the index of the new node.
+     */
+    private int add(int parent, int move, int player, int terminal) {
+        
+        if(size == capacity) grow();
+        
+        int node = size++;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        moves[node] = move;
+        visits[node] = 0;
+        for(int[] wins : this.wins) wins[node] = 0;
+        players[node] = (byte) player;
+        terminals[node] = (byte) terminal;
+        flags[node] = 0;
+        return node;
+    }
+    
+    /**
+     * Copies every field of a node to another index (whose links are left to be updated).
+     */
+    private void copy(int from, int to) {
+        
+        if(from == to) return;
+        parents[to] = parents[from];
+        firstChildren[to] = firstChildren[from];
+        nextSiblings[to] = nextSiblings[from];
+        moves[to] = moves[from];
+        visits[to] = visits[from];
+        for(int[] wins : this.wins) wins[to] = wins[from];
+        players[to] = players[from];
+        terminals[to] = terminals[from];
+        flags[to] = flags[from];
+    }
+    
+    /**
+     * Doubles the space allocated for nodes, up to the maximum number of nodes.
+     */
+    private void grow() {
+        
+        capacity = (int) Math.min((long) capacity * 2, maxNodes);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+        visits = Arrays.copyOf(visits, capacity);
+        for(int i = 0; i <= numPlayers; i++) wins[i] = Arrays.copyOf(wins[i], capacity);
+        players = Arrays.copyOf(players, capacity);
+        terminals = Arrays.copyOf(terminals, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+}
@@ -0,0 +1,111 @@
+package strategybots.games.base;
+
+import java.io.Serializable;
+
+/**
+ * Immutable, packed copy of the contents of a game board at a particular moment.<br>
+ * <br>
+ * Each position holds a single small value whose meaning is game-specific
+ * (by default, the ID of the owner of the piece at that position, or 0 if empty).<br>
+ * Snapshots are shared between callers while the board is unchanged,
+ * so obtaining one is cheap, and comparing versions detects any change.
+ *
+ * @author Alec Dorrington
+ */
+public final class Snapshot implements Serializable {
+    
+    private static final long serialVersionUID = -2968360520846934153L;
+    
+    /** The value at each position, indexed by x * height + y. */
+    private final byte[] cells;
+    
+    /** The dimensions of the board. */
+    private final int width, height;
+    
+    /** The version of the board from which this snapshot was taken. */
+    private final long version;
+    
+    /**
+     * Constructs a new snapshot. The given array is copied.
+     * @param cells the value at each position, indexed by x * height + y.
+     * @param width the number of tiles wide the board is.
+     * @param height the number of tiles high the board is.
+     * @param version the version of the board from which this snapshot was taken.
+     */
+    Snapshot(byte[] cells, int width, int height, long version) {
+        this.cells = cells.clone();
+        this.width = width;
+        this.height = height;
+        this.version = version;
+    }
+    
+    /**
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return the value at the given position.
+     */
+    public int get(int x, int y) { return cells[x * height + y]; }
+    
+    /**
+     * @param index the packed index (x * height + y) of the position to check.
+     * @return the value at the given position.
+     */
+    public int get(int index) { return cells[index]; }
+    
+    /**
+     * @return the width of the board.
+     */
+    public int getWidth() { return width; }
+    
+    /**
+     * @return the height of the board.
+     */
+    public int getHeight() { return height; }
+    
+    /**
+     * @return the version of the board from which this snapshot was taken.<br>
+     * Versions increase monotonically with each change to the board.
+     */
+    public long getVersion() { return version; }
+    
+    /**
+     * @param value the value to count.
+     * @return the number of positions holding the given value.
+     */
+    public int count(int value) {
+        
+        int count = 0;
+        for(byte cell : cells) {
+            if(cell == value) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Copies the contents of this snapshot into an existing array, indexed by [x][y].
+     * @param board the array into which to copy, of at least the board's dimensions.
+     */
+    public void copyTo(int[][] board) {
+        
+        for(int x = 0, i = 0; x < width; x++) {
+            for(int y = 0; y < height; y++) {
+                board[x][y] = cells[i++];
+            }
+        }
+    }
+    
+    /**
+     * @return a new array holding the contents of this snapshot, indexed by [x][y].
+     */
+    public int[][] toArray() {
+        
+        int[][] board = new int[width][height];
+        copyTo(board);
+        return board;
+    }
+    
+    /**
+     * @return a new array holding the contents of this snapshot, indexed by x * height + y.
+     */
+    public byte[] toBytes() { return cells.clone(); }
+}
@@ -0,0 +1,133 @@
+package strategybots.games.base;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Collects the 'SearchStats' published by bots after each move.<br>
+ * <br>
+ * Statistics may be:<br>
+ * - Printed to standard output as they arrive (verbose, default unless
+ * the 'strategybots.quiet' system property is set).<br>
+ * - Recorded for later retrieval using 'drain()', and exported in bulk as CSV or JSON lines.<br>
+ * - Observed as they arrive, by adding a listener.<br>
+ * <br>
+ * Recording and listeners are lock-free, so needn't slow down concurrent games.
+ *
+ * @author Alec Dorrington
+ */
+public final class Telemetry {
+    
+    /** Whether statistics are printed to standard output as they arrive. */
+    private static volatile boolean verbose = !Boolean.getBoolean("strategybots.quiet");
+    
+    /** Whether statistics from each thread are kept from standard output regardless. */
+    private static final ThreadLocal<Boolean> quietOnThread = ThreadLocal.withInitial(() -> false);
+    
+    /** Whether statistics are recorded for later retrieval. */
+    private static volatile boolean recording = false;
+    
+    /** Statistics recorded but not yet retrieved. */
+    private static final Queue<SearchStats> records = new ConcurrentLinkedQueue<>();
+    
+    /** Listeners notified of all statistics as they arrive. */
+    private static final List<Consumer<SearchStats>> listeners = new CopyOnWriteArrayList<>();
+    
+    private Telemetry() {}
+    
+    /**
+     * @param verbose whether statistics should be printed to standard output as they arrive.
+     */
+    public static void setVerbose(boolean verbose) { Telemetry.verbose = verbose; }
+    
+    /**
+     * @return whether statistics from the current thread are printed to standard output as they arrive.
+     */
+    public static boolean isVerbose() { return verbose && !quietOnThread.get(); }
+    
+    /**
+     * Sets whether statistics from the current thread are kept from standard output,
+     * regardless of 'setVerbose()'.
+     * @param quiet whether to keep the current thread's statistics from standard output.
+     */
+    static void setQuietOnThread(boolean quiet) {
+        
+        if(quiet) quietOnThread.set(true);
+        else quietOnThread.remove();
+    }
+    
+    /**
+     * Sets whether statistics should be recorded for later retrieval using 'drain()'.<br>
+     * Off by default, so that long runs don't accumulate unretrieved statistics.
+     * @param recording whether statistics should be recorded.
+     */
+    public static void setRecording(boolean recording) { Telemetry.recording = recording; }
+    
+    /**
+     * @return whether statistics are recorded for later retrieval.
+     */
+    public static boolean isRecording() { return recording; }
+    
+    /**
+     * @param listener to be notified of all statistics as they arrive, on the searching thread.
+     */
+    public static void addListener(Consumer<SearchStats> listener) { listeners.add(listener); }
+    
+    /**
+     * @param listener the listener to stop notifying.
+     */
+    public static void removeListener(Consumer<SearchStats> listener) { listeners.remove(listener); }
+    
+    /**
+     * Retrieves and removes all recorded statistics.
+     * @return the statistics, in the order in which they arrived.
+     */
+    public static List<SearchStats> drain() {
+        
+        List<SearchStats> drained = new ArrayList<>();
+        SearchStats stats;
+        while((stats = records.poll()) != null) drained.add(stats);
+        return drained;
+    }
+    
+    /**
+     * Writes statistics as CSV, with a header row.
+     * @param stats the statistics to write.
+     * @param out the destination.
+     * @throws IOException if the statistics couldn't be written.
+     */
+    public static void writeCsv(Collection<SearchStats> stats, Appendable out) throws IOException {
+        
+        out.append(SearchStats.CSV_HEADER).append('\n');
+        for(SearchStats s : stats) out.append(s.toCsv()).append('\n');
+    }
+    
+    /**
+     * Writes statistics as JSON lines, with one object per line.
+     * @param stats the statistics to write.
+     * @param out the destination.
+     * @throws IOException if the statistics couldn't be written.
+     */
+    public static void writeJsonLines(Collection<SearchStats> stats, Appendable out) throws IOException {
+        for(SearchStats s : stats) out.append(s.toJson()).append('\n');
+    }
+    
+    /**
+     * Publishes the statistics of a completed search.
+     * @param stats the statistics to publish.
+     */
+    static void record(SearchStats stats) {
+        
+        if(recording) records.add(stats);
+        for(Consumer<SearchStats> listener : listeners) listener.accept(stats);
+        
+        //Print the whole summary at once, so that stdout is locked only once.
+        if(isVerbose()) System.out.print(stats);
+    }
+}
@@ -1,8 +1,9 @@
 package strategybots.games.base;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.function.BiConsumer;
 
 import strategybots.games.graphics.Colour;
@@ -24,16 +25,33 @@ public abstract class TileGame extends Game {
     /** Colour used for selected pieces. */
     private static Colour HIGHLIGHT_COLOUR = Colour.rgb(46, 213, 115);
     
-    /** The window in which the board resides. */
+    /** Whether newly constructed games should run headless (without a window). */
+    private static volatile boolean headlessDefault =
+            Boolean.getBoolean("strategybots.headless");
+    
+    /** Whether games constructed by each thread should run headless, overriding the default if set. */
+    private static final ThreadLocal<Boolean> headlessOnThread = new ThreadLocal<>();
+    
+    /** Whether this game is running headless, without a board or window. */
+    private final boolean headless;
+    
+    /** The window in which the board resides (null if headless). */
     private final Window window;
     
-    /** The board on which the game is played - manages tile layout. */
+    /** The board on which the game is played - manages tile layout (null if headless). */
     private final Board board;
     
-    /** Grid of pieces indexed by position. */
-    private final Piece[][] boardPieces;
-    /** Set of pieces indexed by owner. */
-    private final Set<Piece>[] playerPieces;
+    /** The piece at each position, indexed by x * height + y. */
+    private final Piece[] boardPieces;
+    /** The positions occupied by each player's pieces, indexed by owner. */
+    private final BitSet[] playerPieces;
+    
+    /** Packed value of each position, indexed by x * height + y. */
+    private final byte[] cells;
+    /** Incremented whenever the value of any position changes. */
+    private volatile long version = 0;
+    /** The most recent snapshot, shared while the board is unchanged. */
+    private transient Snapshot snapshot;
     
     /** The dimensions of the board. */
     private final int width, height;
@@ -53,23 +71,31 @@ public abstract class TileGame extends Game {
         //Load the players.
         super(players);
         
-        //Create the game board.
-        board = new Board(width, height, title);
-        boardPieces = new Piece[width][height];
-        window = board.getWindow();
+        //Create the game board, unless the game is to be run headless.
+        Boolean headlessOverride = headlessOnThread.get();
+        headless = headlessOverride != null ? headlessOverride : headlessDefault;
+        board = headless ? null : new Board(width, height, title);
+        boardPieces = new Piece[width * height];
+        cells = new byte[width * height];
+        window = headless ? null : board.getWindow();
+        
+        //End the game (waking any waiting controllers) if the window is closed.
+        if(!headless) window.onClose(() -> endGame(0));
         
         //Setup click listeners on board for controllers.
-        getBoard().addListenerToAll((x, y) -> {
-            if(getCurrentPlayer() instanceof Controller && isRunning()) {
-                //Trigger the click listener for the current player.
-                ((Controller)getCurrentPlayer()).onTileClicked(
-                        TileGame.this, getCurrentPlayerId(), x, y);
-            }
-        });
+        if(!headless) {
+            getBoard().addListenerToAll((x, y) -> {
+                if(getCurrentPlayer() instanceof Controller && isRunning()) {
+                    //Trigger the click listener for the current player.
+                    ((Controller)getCurrentPlayer()).onTileClicked(
+                            TileGame.this, getCurrentPlayerId(), x, y);
+                }
+            });
+        }
         
-        playerPieces = new Set[players.length];
+        playerPieces = new BitSet[players.length];
         for(int i = 0; i < players.length; i++) {
-            playerPieces[i] = new HashSet<>();
+            playerPieces[i] = new BitSet(width * height);
         }
         
         //Set the dimensions.
@@ -105,18 +131,50 @@ public abstract class TileGame extends Game {
     }
     
     /**
-     * @return the window in which the game board exists.
+     * @return the window in which the game board exists, or null if headless.
      */
     public Window getWindow() { return window; }
     
     /**
-     * @return the board upon which the game is being played.
+     * @return the board upon which the game is being played, or null if headless.
      */
     public Board getBoard() { return board; }
     
+    /**
+     * @return whether this game is running without a board or window.
+     */
+    public boolean isHeadless() { return headless; }
+    
+    /**
+     * Sets whether subsequently constructed games are to be run headless.<br>
+     * Headless games never create a board or window, and never touch OpenGL,
+     * making them suitable for bot-vs-bot play on machines without a display.<br>
+     * Defaults to the value of the 'strategybots.headless' system property.
+     * @param headless whether new games should run without a window.
+     */
+    public static void setHeadless(boolean headless) {
+        headlessDefault = headless;
+    }
+    
+    /**
+     * @return whether subsequently constructed games are to be run headless.
+     */
+    public static boolean isHeadlessDefault() { return headlessDefault; }
+    
+    /**
+     * Sets whether games subsequently constructed by the current thread are to be run headless,
+     * overriding the default for that thread alone.
+     * @param headless whether new games should run without a window, or null to use the default.
+     */
+    static void setHeadlessOnThread(Boolean headless) {
+        
+        if(headless != null) headlessOnThread.set(headless);
+        else headlessOnThread.remove();
+    }
+    
     @Override
     public boolean isRunning() {
-        return super.isRunning() && board.getWindow().isOpen();
+        return super.isRunning() && (headless || window.isOpen());
     }
     
     /**
@@ -126,28 +184,94 @@ public abstract class TileGame extends Game {
      * @return the piece at the given position, if there is one.
      */
     public Optional<Piece> getPieceInst(int x, int y) {
-        return Optional.ofNullable(boardPieces[x][y]);
+        return Optional.ofNullable(boardPieces[x * height + y]);
+    }
+    
+    /**
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @param ownerId the ID of the player.
+     * @return whether there is a piece owned by the given player at the given position.
+     */
+    public boolean isOwnedBy(int x, int y, int ownerId) {
+        return playerPieces[ownerId - 1].get(x * height + y);
+    }
+    
+    /**
+     * Returns an immutable snapshot of the current contents of the board.<br>
+     * The value at each position is game-specific; by default, it is the ID of
+     * the owner of the piece at that position, or 0 if there is none.<br>
+     * The same snapshot is returned until the board next changes.
+     * @return a snapshot of the board.
+     */
+    public synchronized Snapshot getSnapshot() {
+        
+        //Take a new snapshot only if the board has changed since the last.
+        if(snapshot == null || snapshot.getVersion() != version) {
+            snapshot = new Snapshot(cells, width, height, version);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * @return the version of the board, which increases with each change to its contents.
+     */
+    public long getVersion() { return version; }
+    
+    /**
+     * Sets the value of a position as it appears in snapshots of the board.<br>
+     * Pieces do this automatically; games with other state may call this directly.<br>
+     * Holds the same lock as 'getSnapshot()', so a snapshot is never taken part-way through.
+     * @param x the x position to set.
+     * @param y the y position to set.
+     * @param value the new value of the position.
+     */
+    protected synchronized void setCell(int x, int y, int value) {
+        
+        if(cells[x * height + y] != value) {
+            cells[x * height + y] = (byte) value;
+            version++;
+        }
     }
     
     /**
-     * Returns a set of all the pieces owned by a particular player.
-     * @param owner_id the ID of the player whose pieces to return.
+     * Returns a list of all the pieces owned by a particular player, ordered by position.
+     * @param ownerId the ID of the player whose pieces to return.
      * @return all the pieces owned by this player.
      */
-    protected Set<Piece> getPieces(int ownerId) {
-        return playerPieces[ownerId-1];
+    protected List<Piece> getPieces(int ownerId) {
+        
+        BitSet positions = playerPieces[ownerId-1];
+        List<Piece> pieces = new ArrayList<>(positions.cardinality());
+        for(int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            pieces.add(boardPieces[i]);
+        }
+        return pieces;
+    }
+    
+    /**
+     * @param ownerId the ID of the player whose pieces to count.
+     * @return the number of pieces owned by this player.
+     */
+    protected int getNumPieces(int ownerId) {
+        return playerPieces[ownerId-1].cardinality();
     }
     
     @Override
     protected void preTurn() {
         //Set the title to indicate the players' turn.
-        window.setTitle(title + " - Current Turn: "
-                + getPlayerName(getCurrentPlayerId()));
+        if(!headless) {
+            window.setTitle(title + " - Current Turn: "
+                    + getPlayerName(getCurrentPlayerId()));
+        }
     }
     
     @Override
     protected void onFinish() {
         
+        //There is no window on which to display the result.
+        if(headless) return;
+        
         //Display the winner of the game.
         if(getWinner().isPresent()) {
             window.setTitle(title + " - Winner: " + getPlayerName(getWinnerId()));
@@ -179,7 +303,7 @@ public abstract class TileGame extends Game {
      * @param title the new title of the window.
      */
     protected void setTitle(String title) {
-        window.setTitle(title);
+        if(!headless) window.setTitle(title);
         this.title = title;
     }
     
@@ -211,7 +335,8 @@ public abstract class TileGame extends Game {
          */
         protected Piece(int ownerId, int x, int y, String texture) {
             
-            super(board.getWindow());
+            //Headless pieces have no window, and so are never rendered.
+            super(TileGame.this.window);
             
             //Set the owner of this piece.
             owner = getPlayer(ownerId);
@@ -222,7 +347,7 @@ public abstract class TileGame extends Game {
             
             //Match the size of the piece to the grid size of the board.
             setColour(Colour.WHITE);
-            setTexture(Texture.getTexture(texture));
+            if(!headless) setTexture(Texture.getTexture(texture));
         }
         
         /**
@@ -235,40 +360,85 @@ public abstract class TileGame extends Game {
         public void setBoardPos(int x, int y) {
             
             //Capture a piece if this piece is moving on top of it.
-            if(getPieceInst(x, y).isPresent())
-                getPieceInst(x, y).get().delete();
+            Piece captured = boardPieces[x * height + y];
+            if(captured != null && captured != this) captured.delete();
             
             //Remove the piece from its previous board index.
-            if(boardPieces[getCol()][getRow()] == this)
-                boardPieces[getCol()][getRow()] = null;
+            removeIndex();
             
             //Add the piece to its new board index.
-            boardPieces[x][y] = this;
-            playerPieces[getOwnerId()-1].add(this);
+            boardPieces[x * height + y] = this;
+            playerPieces[getOwnerId()-1].set(x * height + y);
+            setCell(x, y, getValue());
             
             //Set the graphical position of the piece.
-            board.setPosition(this, x, y);
+            if(!headless) board.setPosition(this, x, y);
             
             this.x = x;
             this.y = y;
         }
         
+        /**
+         * Transfers this piece to another player in place, such as when it is flipped.<br>
+         * Cheaper than deleting the piece and constructing a new one, as the piece
+         * keeps its position and its place in the renderer.
+         * @param ownerId the ID of the new owner of this piece.
+         * @param texture the texture to show for the new owner.
+         */
+        public void setOwner(int ownerId, String texture) {
+            
+            int index = x * height + y;
+            boolean placed = boardPieces[index] == this;
+            if(placed) playerPieces[this.ownerId-1].clear(index);
+            
+            owner = getPlayer(ownerId);
+            this.ownerId = ownerId;
+            
+            if(placed) {
+                playerPieces[ownerId-1].set(index);
+                setCell(x, y, getValue());
+            }
+            if(!headless) setTexture(Texture.getTexture(texture));
+        }
+        
+        /**
+         * Lifts this piece off the board without destroying it, vacating its position.<br>
+         * The piece must then be put back using 'setBoardPos()', or deleted.
+         * Allows pieces to be moved between each other's positions, such as in a rotation.
+         */
+        public void lift() {
+            
+            removeIndex();
+            if(!headless) board.removePiece(this);
+        }
+        
         /**
          * Removes this piece from the board.
          */
         public void delete() {
             
-            //Remove the piece from the board pieces array.
-            if(boardPieces[getCol()][getRow()] == this)
-                boardPieces[getCol()][getRow()] = null;
-            
-            //Remove the piece from the player pieces set.
-            playerPieces[getOwnerId() - 1].remove(this);
+            //Remove the piece from the board and player indices.
+            removeIndex();
+            if(!headless) board.removePiece(this);
             
             //Remove this tile from the renderer.
             destroy();
         }
         
+        /**
+         * Removes this piece from the board and player indices at its current position,
+         * unless it has already been replaced there.
+         */
+        private void removeIndex() {
+            
+            int index = x * height + y;
+            if(boardPieces[index] == this) {
+                boardPieces[index] = null;
+                playerPieces[getOwnerId()-1].clear(index);
+                setCell(x, y, 0);
+            }
+        }
+        
         /**
          * @return the player to whom this piece belongs.
          */
@@ -289,6 +459,12 @@ public abstract class TileGame extends Game {
          */
         public int getRow() { return y; }
         
+        /**
+         * @return the value representing this piece in snapshots of the board
+         * (by default, the ID of its owner). Must be non-zero.
+         */
+        protected int getValue() { return ownerId; }
+        
         /**
          * Called by the game to move a piece to a particular position.<br>
          * Implementations of this method should provide their own move validation.<br>
@@ -345,7 +521,8 @@ public abstract class TileGame extends Game {
         public void takeTurn(G game, int playerId) {
             //Wait until the turn is complete before returning control to the game.
             //Actual logic is handled asynchronously by listeners set up in init().
-            while(!game.turnDone() && game.getWindow().isOpen()) {}
+            //Closing the window ends the game, which also completes the turn.
+            game.awaitTurnDone();
         }
         
         /**
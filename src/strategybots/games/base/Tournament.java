@@ -0,0 +1,491 @@
+package strategybots.games.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import strategybots.games.base.Game.Player;
+
+/**
+ * Round-robin tournament between any number of bots, for comparing their strength.<br>
+ * <br>
+ * Each pair of players plays a fixed number of games, alternating who moves first.
+ * Games are run headless, spread across all available cores.<br>
+ * Fresh player instances are created for every game, so bots needn't be thread-safe.<br>
+ * <br>
+ * Example usage:<br>
+ * <code>
+ * Tournament&lt;ConnectFour&gt; t = new Tournament&lt;&gt;(ConnectFour::new);<br>
+ * t.addPlayer("SwagC4", () -&gt; new SwagC4(200));<br>
+ * t.addPlayer("TipMCTS", () -&gt; new TipMCTS(200));<br>
+ * t.run();<br>
+ * t.printResults();
+ * </code>
+ *
+ * @author Alec Dorrington
+ * @param <G> the game being played.
+ */
+public class Tournament<G extends Game> {
+    
+    /** Scale factor between natural-log strength and Elo rating. */
+    private static final double ELO_SCALE = 400 / Math.log(10);
+    
+    /** Z-score of the reported confidence intervals (95%). */
+    private static final double Z_95 = 1.96;
+    
+    /** Iterations used in fitting the ratings. */
+    private static final int RATING_ITERATIONS = 1000;
+    
+    /** Creates a new game between two players (in turn order). */
+    private final BiFunction<Player<G>, Player<G>, G> factory;
+    
+    /** The display name of each participant. */
+    private final List<String> names = new ArrayList<>();
+    
+    /** Creates a fresh instance of each participant. */
+    private final List<Supplier<? extends Player<G>>> entrants = new ArrayList<>();
+    
+    /** The number of games played between each pair of players. */
+    private int gamesPerPairing = 10;
+    
+    /** The maximum number of games to play at once. */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    
+    /** The per-turn time limit of each game, in milliseconds (-1 for none). */
+    private long timeLimit = -1;
+    
+    /** wins[i][j] is the number of games player i won against player j. */
+    private int[][] wins;
+    
+    /** draws[i][j] is the number of games drawn between players i and j. */
+    private int[][] draws;
+    
+    /** The number of games which failed with an exception. */
+    private int numErrors = 0;
+    
+    /** The statistics of every search performed by a bot during the tournament. */
+    private final Queue<SearchStats> searches = new ConcurrentLinkedQueue<>();
+    
+    /** Whether each thread is currently playing one of the tournament's games. */
+    private final ThreadLocal<Boolean> playing = ThreadLocal.withInitial(() -> false);
+    
+    /** Records every game played, if set. */
+    private GameRecorder<G> recorder;
+    
+    /** Wall-clock time taken to play the tournament, in nanoseconds. */
+    private long elapsed = 0;
+    
+    /**
+     * Constructs a new tournament with no players.
+     * @param factory constructor for a new game between two players, e.g. 'ConnectFour::new'.
+     */
+    public Tournament(BiFunction<Player<G>, Player<G>, G> factory) {
+        this.factory = factory;
+    }
+    
+    /**
+     * Adds a player to the tournament.
+     * @param name the display name of the player.
+     * @param player creates a fresh instance of the player for each game.
+     */
+    public void addPlayer(String name, Supplier<? extends Player<G>> player) {
+        names.add(name);
+        entrants.add(player);
+    }
+    
+    /**
+     * Sets the number of games played between each pair of players (default 10).<br>
+     * Each player moves first in half of these games.
+     * @param gamesPerPairing the number of games per pairing.
+     */
+    public void setGamesPerPairing(int gamesPerPairing) { this.gamesPerPairing = gamesPerPairing; }
+    
+    /**
+     * Sets the maximum number of games to play at once (default: the number of cores).
+     * @param numThreads the maximum number of concurrent games.
+     */
+    public void setNumThreads(int numThreads) { this.numThreads = numThreads; }
+    
+    /**
+     * Sets the per-turn time limit of each game. Players which overrun forfeit the game.
+     * @param timeLimit the time limit in milliseconds, or -1 for none (default).
+     */
+    public void setTimeLimit(long timeLimit) { this.timeLimit = timeLimit; }
+    
+    /**
+     * Sets a recorder to which every game is written, under the display names of its players.
+     * @param recorder the recorder, or null to not record games (default).
+     */
+    public void setRecorder(GameRecorder<G> recorder) { this.recorder = recorder; }
+    
+    /**
+     * Plays every game of the tournament, blocking until all have finished.
+     * @throws InterruptedException if interrupted while waiting, in which case
+     * all games in progress are abandoned.
+     */
+    public void run() throws InterruptedException {
+        
+        int n = names.size();
+        wins = new int[n][n];
+        draws = new int[n][n];
+        numErrors = 0;
+        searches.clear();
+        
+        //Run games on the tournament threads, once construction has finished.
+        DeferredExecutor deferred = new DeferredExecutor();
+        
+        //Collect the search statistics of the tournament's own games, rather than printing them.
+        Consumer<SearchStats> listener = stats -> {
+            if(playing.get()) searches.add(stats);
+        };
+        Telemetry.addListener(listener);
+        
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        long start = System.nanoTime();
+        try {
+            
+            //Schedule every game, alternating which player moves first.
+            List<Future<?>> games = new ArrayList<>();
+            for(int i = 0; i < n; i++) {
+                for(int j = i + 1; j < n; j++) {
+                    for(int k = 0; k < gamesPerPairing; k++) {
+                        
+                        int first = k % 2 == 0 ? i : j, second = k % 2 == 0 ? j : i;
+                        games.add(workers.submit(() -> playGame(deferred, first, second)));
+                    }
+                }
+            }
+            
+            //Wait for the games to finish.
+            for(Future<?> game : games) {
+                try {
+                    game.get();
+                } catch(ExecutionException e) {
+                    synchronized(this) { numErrors++; }
+                }
+            }
+            
+        } finally {
+            workers.shutdownNow();
+            elapsed = System.nanoTime() - start;
+            Telemetry.removeListener(listener);
+        }
+    }
+    
+    /**
+     * @return the number of participants.
+     */
+    public int getNumPlayers() { return names.size(); }
+    
+    /**
+     * @param player the index of the player, in the order added.
+     * @return the display name of the player.
+     */
+    public String getName(int player) { return names.get(player); }
+    
+    /**
+     * @param player the index of the player.
+     * @param opponent the index of the opponent.
+     * @return the number of games the player won against the opponent.
+     */
+    public synchronized int getWins(int player, int opponent) { return wins[player][opponent]; }
+    
+    /**
+     * @param player the index of the player.
+     * @param opponent the index of the opponent.
+     * @return the number of games drawn between the player and the opponent.
+     */
+    public synchronized int getDraws(int player, int opponent) { return draws[player][opponent]; }
+    
+    /**
+     * @param player the index of the player.
+     * @param opponent the index of the opponent.
+     * @return the number of games the player lost against the opponent.
+     */
+    public synchronized int getLosses(int player, int opponent) { return wins[opponent][player]; }
+    
+    /**
+     * @return the number of games which failed with an exception, and so weren't counted.
+     */
+    public synchronized int getNumErrors() { return numErrors; }
+    
+    /**
+     * @return the statistics of every search performed by a bot during the tournament.
+     */
+    public List<SearchStats> getSearchStats() { return new ArrayList<>(searches); }
+    
+    /**
+     * @return the average number of games completed per second.
+     */
+    public synchronized double getGamesPerSecond() {
+        
+        int numGames = numErrors;
+        for(int i = 0; i < wins.length; i++) {
+            for(int j = 0; j < i; j++) {
+                numGames += wins[i][j] + wins[j][i] + draws[i][j];
+            }
+        }
+        return numGames / (elapsed / 1e9);
+    }
+    
+    /**
+     * Estimates the Elo rating of each player by maximum likelihood
+     * (Bradley-Terry, with draws counting as half a win).<br>
+     * Ratings are relative, with an average of 0. A single virtual draw is added
+     * to each pairing, so that undefeated players still have finite ratings.
+     * @return the rating of each player.
+     */
+    public synchronized double[] getRatings() {
+        
+        int n = wins.length;
+        double[] gamma = new double[n];
+        Arrays.fill(gamma, 1);
+        
+        for(int iter = 0; iter < RATING_ITERATIONS; iter++) {
+            
+            //Minorisation-maximisation update of each player's strength.
+            for(int i = 0; i < n; i++) {
+                
+                double score = 0, denom = 0;
+                for(int j = 0; j < n; j++) {
+                    if(i == j) continue;
+                    score += wins[i][j] + (draws[i][j] + 1) / 2.0;
+                    denom += (numGames(i, j) + 1) / (gamma[i] + gamma[j]);
+                }
+                if(denom > 0) gamma[i] = score / denom;
+            }
+            
+            //Normalise so that the geometric mean strength is 1.
+            double logMean = 0;
+            for(int i = 0; i < n; i++) logMean += Math.log(gamma[i]) / n;
+            for(int i = 0; i < n; i++) gamma[i] /= Math.exp(logMean);
+        }
+        
+        double[] ratings = new double[n];
+        for(int i = 0; i < n; i++) ratings[i] = ELO_SCALE * Math.log(gamma[i]);
+        return ratings;
+    }
+    
+    /**
+     * Estimates the half-width of the 95% confidence interval of each player's rating,
+     * from the Fisher information of the fitted ratings.
+     * @return the error margin (+/-) of each rating.
+     */
+    public synchronized double[] getRatingErrors() {
+        
+        int n = wins.length;
+        double[] ratings = getRatings(), errors = new double[n];
+        
+        for(int i = 0; i < n; i++) {
+            
+            double information = 0;
+            for(int j = 0; j < n; j++) {
+                if(i == j) continue;
+                double p = 1 / (1 + Math.exp((ratings[j] - ratings[i]) / ELO_SCALE));
+                information += (numGames(i, j) + 1) * p * (1 - p);
+            }
+            errors[i] = information > 0 ? Z_95 * ELO_SCALE / Math.sqrt(information) : Double.NaN;
+        }
+        return errors;
+    }
+    
+    /**
+     * Prints the win/draw/loss matrix, ratings and throughput to standard output.
+     */
+    public synchronized void printResults() {
+        
+        int n = names.size(), width = 8;
+        for(String name : names) width = Math.max(width, name.length() + 2);
+        String col = "%-" + width + "s";
+        
+        //Print the win/draw/loss of each row player against each column player.
+        System.out.println("Results (row vs column, W-D-L):");
+        System.out.printf(col, "");
+        for(String name : names) System.out.printf(col, name);
+        System.out.println();
+        
+        for(int i = 0; i < n; i++) {
+            System.out.printf(col, names.get(i));
+            for(int j = 0; j < n; j++) {
+                System.out.printf(col, i == j ? "-" :
+                    wins[i][j] + "-" + draws[i][j] + "-" + wins[j][i]);
+            }
+            System.out.println();
+        }
+        System.out.println();
+        
+        //Print the players in order of rating.
+        double[] ratings = getRatings(), errors = getRatingErrors();
+        Integer[] order = new Integer[n];
+        for(int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+        
+        System.out.println("Ratings (Elo, 95% confidence):");
+        for(int r = 0; r < n; r++) {
+            
+            int i = order[r], w = 0, d = 0, l = 0;
+            for(int j = 0; j < n; j++) {
+                w += wins[i][j];
+                d += draws[i][j];
+                l += wins[j][i];
+            }
+            System.out.printf("%2d. " + col + "%+6.0f +/- %-5.0f (%d-%d-%d, %.1f%%)%n",
+                    r + 1, names.get(i), ratings[i], errors[i], w, d, l,
+                    w + d + l == 0 ? 0 : 100.0 * (w + d / 2.0) / (w + d + l));
+        }
+        System.out.println();
+        
+        printSearchStats();
+        
+        System.out.printf("%.2f games/s over %.1fs", getGamesPerSecond(), elapsed / 1e9);
+        if(numErrors > 0) System.out.printf(" (%d failed)", numErrors);
+        System.out.println();
+    }
+    
+    /**
+     * Prints the average search statistics of each bot (by name), if any were published.
+     */
+    private void printSearchStats() {
+        
+        //Group the statistics by bot.
+        Map<String, List<SearchStats>> bots = new TreeMap<>();
+        for(SearchStats stats : searches) {
+            bots.computeIfAbsent(stats.getBot(), bot -> new ArrayList<>()).add(stats);
+        }
+        if(bots.isEmpty()) return;
+        
+        int width = 8;
+        for(String bot : bots.keySet()) width = Math.max(width, bot.length() + 2);
+        
+        System.out.println("Search (per move averages):");
+        System.out.printf("%-" + width + "s%8s%8s%14s%14s%10s%n",
+                "", "Moves", "Depth", "Nodes/s", "Sims/s", "Time");
+        
+        for(Map.Entry<String, List<SearchStats>> bot : bots.entrySet()) {
+            
+            double depth = 0, nodes = 0, sims = 0, time = 0;
+            for(SearchStats stats : bot.getValue()) {
+                depth += stats.getDepth();
+                nodes += stats.getNodes();
+                sims += stats.getSimulations();
+                time += stats.getTimeMillis();
+            }
+            int n = bot.getValue().size();
+            System.out.printf("%-" + width + "s%8d%8.1f%14.0f%14.0f%8.0fms%n", bot.getKey(), n,
+                    depth / n, nodes / (time / 1000), sims / (time / 1000), time / n);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Plays a single game on the current thread, recording the result.
+     * @param deferred the executor on which games are started.
+     * @param first the index of the player to move first.
+     * @param second the index of the player to move second.
+     */
+    private void playGame(DeferredExecutor deferred, int first, int second) {
+        
+        //Keep the statistics of this thread's searches from standard output while it plays.
+        playing.set(true);
+        Telemetry.setQuietOnThread(true);
+        G game;
+        try {
+            
+            //Construct the game, capturing rather than starting its game loop.
+            GameRecorder<G>.Recording recording = recorder != null ? recorder.newRecording() : null;
+            game = deferred.capture(() -> factory.apply(
+                    createPlayer(first, recording), createPlayer(second, recording)));
+            game.setTimeLimit(timeLimit);
+            
+            //Play the game through to completion.
+            deferred.takeCaptured().run();
+            
+        } finally {
+            playing.remove();
+            Telemetry.setQuietOnThread(false);
+        }
+        
+        synchronized(this) {
+            switch(game.getWinnerId()) {
+                case 1: wins[first][second]++; break;
+                case 2: wins[second][first]++; break;
+                default: draws[first][second]++; draws[second][first]++;
+            }
+        }
+    }
+    
+    /**
+     * @param player the index of the player.
+     * @param recording the recording of the game, or null if it isn't being recorded.
+     * @return a fresh instance of the player.
+     */
+    private Player<G> createPlayer(int player, GameRecorder<G>.Recording recording) {
+        
+        Player<G> instance = entrants.get(player).get();
+        return recording != null ? recording.wrap(instance, names.get(player)) : instance;
+    }
+    
+    /**
+     * @param i the index of the first player.
+     * @param j the index of the second player.
+     * @return the number of games played between the two players.
+     */
+    private int numGames(int i, int j) {
+        return wins[i][j] + wins[j][i] + draws[i][j];
+    }
+    
+    /**
+     * Executor which captures game loops started by the current thread, to be run later.<br>
+     * This ensures a game is fully constructed before its loop begins, and that each game
+     * runs on the tournament thread which created it. It is installed (along with headless
+     * mode) for the constructing thread alone, leaving games started by any other thread
+     * to the global defaults.
+     */
+    private static class DeferredExecutor implements Executor {
+        
+        /** The game loop captured by each tournament thread. */
+        private final ThreadLocal<Runnable> captured = new ThreadLocal<>();
+        
+        @Override
+        public void execute(Runnable game) { captured.set(game); }
+        
+        /**
+         * Constructs a game headless, capturing its game loop.
+         * @param constructor constructs the game.
+         * @return the constructed game.
+         */
+        private <T> T capture(Supplier<T> constructor) {
+            
+            Game.setExecutorOnThread(this);
+            TileGame.setHeadlessOnThread(true);
+            try {
+                return constructor.get();
+            } finally {
+                Game.setExecutorOnThread(null);
+                TileGame.setHeadlessOnThread(null);
+            }
+        }
+        
+        /**
+         * @return the game loop most recently captured by this thread.
+         */
+        private Runnable takeCaptured() {
+            
+            Runnable game = captured.get();
+            captured.remove();
+            return game;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package strategybots.games.base;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results, indexed by the Zobrist hash of each position
+ * (as per 'GameState.hash()'), for use in alpha-beta search.<br>
+ * <br>
+ * Each entry packs a score, the depth searched, whether the score is exact or a bound,
+ * and the best move into a single long, returned by 'probe()' and decoded using the
+ * static methods. A slot keeps the deeper of the entries stored in it, unless the
+ * existing entry is left over from an earlier search.<br>
+ * <br>
+ * Keys are stored XORed with their entries, so an entry torn by concurrent writes fails to
+ * match rather than being read corrupt. The table may thus be shared by threads without locking.
+ *
+ * @author Alec Dorrington
+ */
+public class TranspositionTable {
+    
+    /** Whether a score is exact, a lower bound (the search failed high) or an upper bound (it failed low). */
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+    
+    /** The greatest depth and move which may be stored. */
+    public static final int MAX_DEPTH = 0xFF, MAX_MOVE = 0xFFFE;
+    
+    /** The key (XORed with the entry) and the entry in each slot. An empty slot holds zero. */
+    private final long[] keys, entries;
+    
+    /** Mask selecting the slot from a key. */
+    private final int mask;
+    
+    /** The current search, such that entries from earlier searches may be replaced. */
+    private int generation = 0;
+    
+    /**
+     * Constructs a new empty table.
+     * @param sizeBits the log2 of the number of entries (each of which takes 16 bytes).
+     */
+    public TranspositionTable(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        entries = new long[1 << sizeBits];
+        mask = (1 << sizeBits) - 1;
+    }
+    
+    /**
+     * Marks the beginning of a new search, after which entries of earlier searches
+     * are replaced regardless of depth. They remain available until replaced.
+     */
+    public void newSearch() { generation = (generation + 1) & 0x3F; }
+    
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+    
+    /**
+     * @return the number of entries in the table.
+     */
+    public int getCapacity() { return entries.length; }
+    
+    /**
+     * @param key the hash of a position.
+     * @return the entry for the position, or 0 if there is none.
+     */
+    public long probe(long key) {
+        
+        int slot = (int) key & mask;
+        long entry = entries[slot];
+        return (keys[slot] ^ entry) == key ? entry : 0;
+    }
+    
+    /**
+     * Stores the result of searching a position, unless a deeper result from
+     * this search is already stored in the same slot.
+     * @param key the hash of the position.
+     * @param depth the depth searched, in the range [0, MAX_DEPTH].
+     * @param flag whether the score is EXACT, a LOWER bound or an UPPER bound.
+     * @param score the score of the position.
+     * @param move the best move, in the range [-1, MAX_MOVE], or -1 if there is none.
+     */
+    public void store(long key, int depth, int flag, int score, int move) {
+        
+        depth = Math.min(depth, MAX_DEPTH);
+        int slot = (int) key & mask;
+        long old = entries[slot];
+        if(old != 0 && generation(old) == generation && depth(old) > depth
+                && (keys[slot] ^ old) != key) return;
+        
+        long entry = (score & 0xFFFFFFFFL)
+                | (long) (move + 1) << 32
+                | (long) depth << 48
+                | (long) flag << 56
+                | (long) generation << 58;
+        keys[slot] = key ^ entry;
+        entries[slot] = entry;
+    }
+    
+    /**
+     * @param entry an entry returned by 'probe()'.
+     * @return the score of the position.
+     */
+    public static int score(long entry) { return (int) entry; }
+    
+    /**
+     * @param entry an entry returned by 'probe()'.
+     * @return the best move, or -1 if there is none.
+     */
+    public static int move(long entry) { return (int) (entry >>> 32 & 0xFFFF) - 1; }
+    
+    /**
+     * @param entry an entry returned by 'probe()'.
+     * @return the depth to which the position was searched.
+     */
+    public static int depth(long entry) { return (int) (entry >>> 48 & 0xFF); }
+    
+    /**
+     * @param entry an entry returned by 'probe()'.
+     * @return whether the score is EXACT, a LOWER bound or an UPPER bound.
+     */
+    public static int flag(long entry) { return (int) (entry >>> 56 & 0x3); }
+    
+    /**
+     * @param entry an entry returned by 'probe()'.
+     * @return the search in which the entry was stored.
+     */
+    private static int generation(long entry) { return (int) (entry >>> 58); }
+}
@@ -1,32 +1,57 @@
 package strategybots.games.event;
 
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
 
 /**
  * Implementation of an event system.
  * Allows for the registration of event handlers and the triggering of events.
- * An instance of a subclass of Event represents a single given occurrence of an event.
+ * An instance of a subclass of Event represents a single given occurrence of an event.<br>
+ * <br>
+ * Handlers are stored in copy-on-write lists, so triggering an event never blocks,
+ * even while handlers are being added or removed on other threads.
  * @author Alec
  */
 public abstract class Event {
     
-    /** Set of all registered EventHandlers, grouped by Event type. */
-    private static Map<Class<?>, Set<EventHandler>>
-            events = new HashMap<>();
+    /** Ways in which the handlers of a triggered event may be executed. */
+    public enum Dispatch {
+        
+        /** Each handler is executed separately on the thread pool (default). */
+        PARALLEL,
+        
+        /** All handlers of an event are executed in turn, by a single task on the thread pool. */
+        BATCHED,
+        
+        /** All handlers of an event are executed in turn, on the triggering thread. */
+        SYNCHRONOUS
+    }
     
-    /** Mutex for accessing list of events. */
-    private static Semaphore eventsLock = new Semaphore(1);
+    /** List of all registered EventHandlers, grouped by Event type. */
+    private static final Map<Class<?>, List<EventHandler>>
+            events = new ConcurrentHashMap<>();
+    
+    /**
+     * Set of all registered EventHandlers with a key, grouped by key.<br>
+     * Each set is only accessed within 'compute()' on its key, so that handlers are
+     * added and removed atomically, and is removed from the map once emptied.
+     */
+    private static final Map<Object, Set<EventHandler>>
+            keys = new ConcurrentHashMap<>();
     
     /** Pool of threads for executing event handlers. */
-    private static ExecutorService threadPool = Executors.newCachedThreadPool();
+    private static volatile ExecutorService threadPool = Executors.newCachedThreadPool();
+    
+    /** The way in which the handlers of a triggered event are executed. */
+    private static volatile Dispatch dispatch = Dispatch.PARALLEL;
     
     /**
      * Register an EventHandler. This EventHandler will be triggered
@@ -53,23 +78,18 @@ public abstract class Event {
     public static <E extends Event> EventHandler addHandler(
             Class<E> event, Object key, Consumer<E> action) {
         
-        //Get lock on events list.
-        try {
-            eventsLock.acquire();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
-        }
+        EventHandler handler = new EventHandler(action, event, Optional.ofNullable(key));
         
-        //If no EventHandlers of the given event type have yet been added,
-        //create a new list to put such handlers in.
-        if(!events.containsKey(event)) {
-            events.put(event, new HashSet<>());
-        }
+        if(key == null) register(handler);
         
-        //Add this handler to the list.
-        EventHandler handler = new EventHandler(action, event, Optional.ofNullable(key));
-        events.get(event).add(handler);
-        eventsLock.release();
+        //Index the handler by its key, for later removal,
+        //such that it can't be registered after its key has been removed.
+        else keys.compute(key, (k, keyed) -> {
+            if(keyed == null) keyed = new HashSet<>();
+            keyed.add(handler);
+            register(handler);
+            return keyed;
+        });
         return handler;
     }
     
@@ -80,17 +100,64 @@ public abstract class Event {
      */
     public static void removeHandler(EventHandler handler) {
         
-        //Get lock on events list.
-        try {
-            eventsLock.acquire();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
-        }
+        if(!handler.condition.isPresent()) unregister(handler);
         
-        for(Class<?> event : events.keySet()) {
-            events.get(event).remove(handler);
-        }
-        eventsLock.release();
+        //Remove the set of handlers with this key once it is empty.
+        else keys.compute(handler.condition.get(), (k, keyed) -> {
+            if(keyed != null) keyed.remove(handler);
+            unregister(handler);
+            return keyed == null || keyed.isEmpty() ? null : keyed;
+        });
+    }
+    
+    /**
+     * Remove all event handlers registered with the given key.
+     * @param key the key with which the handlers were registered.
+     */
+    public static void removeHandlers(Object key) {
+        
+        keys.computeIfPresent(key, (k, keyed) -> {
+            for(EventHandler handler : keyed) unregister(handler);
+            return null;
+        });
+    }
+    
+    /**
+     * Add a handler to the list for its event type,
+     * creating the list if no such handlers have yet been added.
+     * @param handler the handler to add.
+     */
+    private static void register(EventHandler handler) {
+        events.computeIfAbsent(handler.event, e -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+    
+    /**
+     * Remove a handler from the list for its event type.
+     * @param handler the handler to remove.
+     */
+    private static void unregister(EventHandler handler) {
+        
+        List<EventHandler> handlers = events.get(handler.event);
+        if(handlers != null) handlers.remove(handler);
+    }
+    
+    /**
+     * Sets the pool of threads on which event handlers are executed.<br>
+     * Should be called before any windows are opened.
+     * @param executor the new pool of threads for executing event handlers.
+     */
+    public static void setExecutor(ExecutorService executor) {
+        threadPool = executor;
+    }
+    
+    /**
+     * Sets the way in which the handlers of subsequently triggered events are executed.<br>
+     * Batched and synchronous dispatch avoid submitting a task per handler, but then
+     * a slow handler delays the others (and, if synchronous, the triggering thread).
+     * @param dispatch the new dispatch mode (default PARALLEL).
+     */
+    public static void setDispatch(Dispatch dispatch) {
+        Event.dispatch = dispatch;
     }
     
     /**
@@ -104,37 +171,54 @@ public abstract class Event {
      * Trigger this event. All EventHandlers of matching type will
      * subsequently be triggered, using the given event as a parameter.
      */
-    @SuppressWarnings("unchecked")
     protected void trigger() {
         
-        //Get lock on events list.
-        try {
-            eventsLock.acquire();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
-        }
+        //If there are no handlers for this type of event, there is nothing to do.
+        List<EventHandler> handlers = events.get(getClass());
+        if(handlers == null || handlers.isEmpty()) return;
         
-        //If there are handlers for this type of event.
-        if(events.containsKey(getClass())) {
+        switch(dispatch) {
             
-            //For each such event handler.
-            for(EventHandler handler : events.get(getClass())) {
-                
-                //If the condition is satisfied.
-                if(!handler.condition.isPresent() ||
-                        checkCondition(handler.condition.get())) {
-                    
-                    //Call each matching event handler.
-                    threadPool.execute(() ->
-                        handler.action.accept(Event.this));
+            //Call each matching event handler on its own thread.
+            case PARALLEL:
+                for(EventHandler handler : handlers) {
+                    if(matches(handler)) threadPool.execute(() -> handler.accept(this));
                 }
-            }
+                break;
+            
+            //Call all matching event handlers together on one thread.
+            case BATCHED:
+                threadPool.execute(() -> handle(handlers));
+                break;
+            
+            //Call all matching event handlers on this thread.
+            case SYNCHRONOUS:
+                handle(handlers);
+                break;
         }
-        eventsLock.release();
     }
     
     protected boolean checkCondition(Object condition) { return true; }
     
+    /**
+     * Calls each of the given handlers in turn, if their condition is satisfied.
+     * @param handlers the handlers of this type of event.
+     */
+    private void handle(List<EventHandler> handlers) {
+        
+        for(EventHandler handler : handlers) {
+            if(matches(handler)) handler.accept(this);
+        }
+    }
+    
+    /**
+     * @param handler an event handler.
+     * @return whether the handler has no condition, or its condition is satisfied.
+     */
+    private boolean matches(EventHandler handler) {
+        return !handler.condition.isPresent() || checkCondition(handler.condition.get());
+    }
+    
     /**
      * Used to represent an EventHandler function, and any associated data.
      */
@@ -161,5 +245,14 @@ public abstract class Event {
             this.event = event;
             this.condition = condition;
         }
+        
+        /**
+         * Calls this handler.
+         * @param event the event which was triggered.
+         */
+        @SuppressWarnings("unchecked")
+        void accept(Event event) {
+            action.accept(event);
+        }
     }
 }
\ No newline at end of file
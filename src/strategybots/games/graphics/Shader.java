@@ -42,6 +42,9 @@ public abstract class Shader {
     /** Whether the window has been resized. */
     private volatile boolean resized = false;
     
+    /** Whether anything has changed since the last frame was rendered. */
+    private volatile boolean changed = true;
+    
     /**
      * @param vertexShader the file containing vertex shader source.
      * @param fragmentShader the file containing fragment shader source.
@@ -97,12 +100,18 @@ public abstract class Shader {
         glLinkProgram(shaderProgramId);
         glValidateProgram(shaderProgramId);
         
+        //Resolve the location of each uniform up front, rather than upon first use.
+        findUniforms();
+        
         //Run any shader specific initialisation.
         glUseProgram(shaderProgramId);
         init();
         glUseProgram(0);
         
-        Event.addHandler(WindowResizeEvent.class, e -> resized = true);
+        Event.addHandler(WindowResizeEvent.class, e -> {
+            resized = true;
+            changed = true;
+        });
     }
     
     /**
@@ -110,6 +119,7 @@ public abstract class Shader {
      */
     public void doRender() {
         glUseProgram(shaderProgramId);
+        changed = false;
         
         if(resized) {
             onWindowResize();
@@ -119,6 +129,16 @@ public abstract class Shader {
         glUseProgram(0);
     }
     
+    /**
+     * Mark the contents of the window as changed, so that they will be rendered again.
+     */
+    void markChanged() { changed = true; }
+    
+    /**
+     * @return whether anything has changed since the last frame was rendered.
+     */
+    boolean isChanged() { return changed; }
+    
     /**
      * Permanently destroy this shader. Called during cleanup operations.
      */
@@ -147,6 +167,61 @@ public abstract class Shader {
         glBindAttribLocation(shaderProgramId, vboId, name);
     }
     
+    /**
+     * Returns the location of the uniform variable of the given name,
+     * for use with the typed setters, which avoid a lookup by name each call.
+     * @param name of uniform.
+     * @return the location of the uniform, or -1 if there is no such active uniform.
+     */
+    protected int getUniformLocation(String name) {
+        return locationOf(name);
+    }
+    
+    /**
+     * Load integer uniform.
+     * @param location of uniform.
+     * @param value assigned to uniform.
+     */
+    protected void setUniform1i(int location, int value) {
+        glUniform1i(location, value);
+    }
+    
+    /**
+     * Load float uniform.
+     * @param location of uniform.
+     * @param value assigned to uniform.
+     */
+    protected void setUniform1f(int location, float value) {
+        glUniform1f(location, value);
+    }
+    
+    /**
+     * Load vector2 uniform.
+     * @param location of uniform.
+     * @param x,y components assigned to uniform.
+     */
+    protected void setUniform2f(int location, float x, float y) {
+        glUniform2f(location, x, y);
+    }
+    
+    /**
+     * Load vector3 uniform.
+     * @param location of uniform.
+     * @param x,y,z components assigned to uniform.
+     */
+    protected void setUniform3f(int location, float x, float y, float z) {
+        glUniform3f(location, x, y, z);
+    }
+    
+    /**
+     * Load vector4 uniform.
+     * @param location of uniform.
+     * @param x,y,z,w components assigned to uniform.
+     */
+    protected void setUniform4f(int location, float x, float y, float z, float w) {
+        glUniform4f(location, x, y, z, w);
+    }
+    
     /**
      * Load integer uniform.
      * @param name of uniform.
@@ -287,11 +362,34 @@ public abstract class Shader {
      * Returns the location of the uniform variable of the given name.
      */
     private int locationOf(String name) {
-        //Query OpenGL for the uniform location if it isn't yet stored in uniforms.
-        if(!uniforms.containsKey(name)) {
-            uniforms.put(name, glGetUniformLocation(shaderProgramId, name));
+        //Query OpenGL for the uniform location if it wasn't found at link time (e.g. an array element).
+        Integer location = uniforms.get(name);
+        if(location == null) {
+            location = glGetUniformLocation(shaderProgramId, name);
+            uniforms.put(name, location);
+        }
+        return location;
+    }
+    
+    /**
+     * Store the location of every active uniform variable in the linked shader program.
+     */
+    private void findUniforms() {
+        
+        int numUniforms = glGetProgrami(shaderProgramId, GL_ACTIVE_UNIFORMS);
+        int maxLength = glGetProgrami(shaderProgramId, GL_ACTIVE_UNIFORM_MAX_LENGTH);
+        
+        for(int i = 0; i < numUniforms; i++) {
+            
+            String name = glGetActiveUniform(shaderProgramId, i, maxLength);
+            int location = glGetUniformLocation(shaderProgramId, name);
+            uniforms.put(name, location);
+            
+            //Arrays are reported by their first element, but also set by their plain name.
+            if(name.endsWith("[0]")) {
+                uniforms.put(name.substring(0, name.length() - 3), location);
+            }
         }
-        return uniforms.get(name);
     }
     
     /*
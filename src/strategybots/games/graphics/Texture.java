@@ -6,29 +6,45 @@ import static org.lwjgl.opengl.GL30.*;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.lwjgl.opengl.EXTTextureFilterAnisotropic;
 import org.lwjgl.opengl.GLContext;
 import org.newdawn.slick.opengl.TextureLoader;
 
 /**
- * A texture loaded from file used in rendering.
+ * A texture loaded from file used in rendering.<br>
+ * <br>
+ * Images under 'res/' are packed into a single atlas, decoded in the background
+ * (see 'preload()'), so textures from the atlas may all be drawn together.
+ * Other images are loaded individually upon first use.
  * 
  * @author Alec Dorrington
  */
 public class Texture {
-   
+    
+    /** The directory of images packed into the atlas. */
+    private static final String ATLAS_DIRECTORY = "res";
+    
     /** Set of all currently loaded textures. */
-    private static Map<String, Texture> textures = new HashMap<>();
+    private static Map<String, Texture> textures = new ConcurrentHashMap<>();
+    
+    /** The atlas, once decoding has begun. */
+    private static CompletableFuture<TextureAtlas> atlas;
     
     /** The file name for this texture. */
     private String fileName;
     
-    /** The ID of this texture. */
+    /** The ID of this texture (or of the atlas containing it). */
     private int textureId = -1;
     
+    /** The region of the texture occupied by this image (x, y, width, height in texture coordinates). */
+    private float[] region = {0, 0, 1, 1};
+    
     /**
      * Creates a new texture.
      * @param fileName the texture file to load.
@@ -43,21 +59,61 @@ public class Texture {
      * @return the texture associated with this file name.
      */
     public static Texture getTexture(String fileName) {
-        //Create new texture if it isn't yet loaded.
-        if(!textures.containsKey(fileName))
-            textures.put(fileName, new Texture(fileName));
-        //Return existing texture if it is loaded.
-        return textures.get(fileName);
+        //Create new texture if it isn't yet loaded, or return the existing texture.
+        return textures.computeIfAbsent(fileName, Texture::new);
+    }
+    
+    /**
+     * Begin decoding the images of the atlas in the background, if not already begun.
+     * Called when a window is opened, so decoding overlaps with the creation of the window.
+     */
+    public static synchronized void preload() {
+        if(atlas == null) atlas = CompletableFuture.supplyAsync(
+                () -> TextureAtlas.pack(Paths.get(ATLAS_DIRECTORY)));
     }
     
     /**
-     * @return the ID OpenGL has associated with this texture.
+     * Must be called from the render thread. Upon the first call, waits
+     * for the atlas to be decoded, or loads the image if it isn't in the atlas.
+     * @return the ID OpenGL has associated with this texture (or the atlas containing it).
      */
     public int getTextureId() {
-        if(textureId == -1) textureId = loadPng(fileName);
+        
+        if(textureId == -1) {
+            
+            preload();
+            Path file = Paths.get(fileName).toAbsolutePath().normalize();
+            float[] atlasRegion = atlas.join().getRegion(file);
+            
+            if(atlasRegion != null) {
+                region = atlasRegion;
+                textureId = atlas.join().getTextureId();
+            } else textureId = loadPng(fileName);
+        }
         return textureId;
     }
     
+    /**
+     * The region is only known once 'getTextureId()' has been called.
+     * @return the x-coordinate (texture coordinates) of the region occupied by this image.
+     */
+    public float getRegionX() { return region[0]; }
+    
+    /**
+     * @return the y-coordinate (texture coordinates) of the region occupied by this image.
+     */
+    public float getRegionY() { return region[1]; }
+    
+    /**
+     * @return the width (texture coordinates) of the region occupied by this image.
+     */
+    public float getRegionWidth() { return region[2]; }
+    
+    /**
+     * @return the height (texture coordinates) of the region occupied by this image.
+     */
+    public float getRegionHeight() { return region[3]; }
+    
     /**
      * @return whether this texture is fully opaque.
      */
@@ -82,6 +138,15 @@ public class Texture {
             e.printStackTrace();
         }
         
+        setFiltering();
+        return textureId;
+    }
+    
+    /**
+     * Generate mipmaps and enable filtering for the currently bound texture.
+     */
+    static void setFiltering() {
+        
         //Enable mipmapping.
         glGenerateMipmap(GL_TEXTURE_2D);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
@@ -94,6 +159,5 @@ public class Texture {
             glTexParameterf(GL_TEXTURE_2D,
                     EXTTextureFilterAnisotropic.GL_TEXTURE_MAX_ANISOTROPY_EXT, filtering);
         }
-        return textureId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package strategybots.games.graphics;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A single texture into which many images are packed, so that tiles showing
+ * different images may be drawn together.<br>
+ * <br>
+ * Images are decoded and packed in parallel, off the render thread.
+ * Only the upload of the finished atlas takes place on the render thread, in one batch.
+ * 
+ * @author Alec Dorrington
+ */
+class TextureAtlas {
+    
+    /** The width of the atlas, and the greatest height to which it may grow (pixels). */
+    private static final int WIDTH = 2048, MAX_HEIGHT = 4096;
+    
+    /** Images larger than this are scaled down before packing (pixels). */
+    private static final int MAX_IMAGE_SIZE = 256;
+    
+    /** Space left around each image, so filtering doesn't bleed between images (pixels). */
+    private static final int PADDING = 8;
+    
+    /** The number of mipmap levels generated, limited so that images don't bleed together. */
+    private static final int MAX_LEVEL = 3;
+    
+    /** The region (x, y, width, height in texture coordinates) of each image in the atlas. */
+    private final Map<Path, float[]> regions = new HashMap<>();
+    
+    /** The packed images, until uploaded, and the height of the atlas. */
+    private ByteBuffer pixels;
+    private int height = 0;
+    
+    /** The ID of the atlas texture, once uploaded. */
+    private int textureId = -1;
+    
+    private TextureAtlas() {}
+    
+    /**
+     * Decode and pack every PNG image in a directory (and its subdirectories).
+     * Images which don't fit, or can't be read, are left out.
+     * @param directory the directory containing the images.
+     * @return the atlas, ready to be uploaded.
+     */
+    static TextureAtlas pack(Path directory) {
+        
+        TextureAtlas atlas = new TextureAtlas();
+        
+        List<Path> files;
+        try(Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(f -> f.toString().endsWith(".png")).collect(Collectors.toList());
+        } catch(IOException e) {
+            files = Collections.emptyList();
+        }
+        
+        //Decode every image in parallel, tallest first for packing.
+        List<Image> images = files.parallelStream()
+                .map(TextureAtlas::decode)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingInt((Image i) -> i.height).reversed())
+                .collect(Collectors.toList());
+        
+        //Pack the images into rows, from top to bottom.
+        Map<Image, int[]> positions = new HashMap<>();
+        int x = 0, y = 0, rowHeight = 0;
+        for(Image image : images) {
+            
+            int w = image.width + 2 * PADDING, h = image.height + 2 * PADDING;
+            if(w > WIDTH) continue;
+            if(x + w > WIDTH) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            if(y + h > MAX_HEIGHT) continue;
+            
+            positions.put(image, new int[] {x + PADDING, y + PADDING});
+            x += w;
+            rowHeight = Math.max(rowHeight, h);
+        }
+        if(positions.isEmpty()) return atlas;
+        
+        atlas.height = Integer.highestOneBit(y + rowHeight - 1) << 1;
+        atlas.pixels = BufferUtils.createByteBuffer(4 * WIDTH * atlas.height);
+        
+        //Copy each image into place, and record its region (inset by half a pixel).
+        positions.forEach((image, pos) -> {
+            
+            for(int i = 0; i < image.argb.length; i++) {
+                int argb = image.argb[i];
+                int index = 4 * ((pos[1] + i / image.width) * WIDTH + pos[0] + i % image.width);
+                atlas.pixels.put(index, (byte) (argb >> 16));
+                atlas.pixels.put(index + 1, (byte) (argb >> 8));
+                atlas.pixels.put(index + 2, (byte) argb);
+                atlas.pixels.put(index + 3, (byte) (argb >> 24));
+            }
+            atlas.regions.put(image.file, new float[] {
+                    (pos[0] + 0.5F) / WIDTH, (pos[1] + 0.5F) / atlas.height,
+                    (image.width - 1F) / WIDTH, (image.height - 1F) / atlas.height});
+        });
+        return atlas;
+    }
+    
+    /**
+     * @param file the absolute, normalized path of an image.
+     * @return the region (x, y, width, height in texture coordinates) of the image
+     * in the atlas, or null if the image isn't in the atlas.
+     */
+    float[] getRegion(Path file) { return regions.get(file); }
+    
+    /**
+     * Upload the atlas to OpenGL upon the first call. Must be called from the render thread.
+     * @return the ID OpenGL has associated with the atlas.
+     */
+    int getTextureId() {
+        
+        if(textureId == -1) {
+            
+            textureId = glGenTextures();
+            glBindTexture(GL_TEXTURE_2D, textureId);
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, WIDTH, height,
+                    0, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, MAX_LEVEL);
+            Texture.setFiltering();
+            pixels = null;
+        }
+        return textureId;
+    }
+    
+    /**
+     * Decode an image, scaling it down if it is too large.
+     * @param file the image file.
+     * @return the decoded image, or null if it couldn't be read.
+     */
+    private static Image decode(Path file) {
+        
+        try {
+            BufferedImage image = ImageIO.read(file.toFile());
+            if(image == null) return null;
+            
+            //Halve the image until it fits, averaging each 2x2 block.
+            while(Math.max(image.getWidth(), image.getHeight()) > MAX_IMAGE_SIZE) {
+                
+                BufferedImage half = new BufferedImage(Math.max(1, image.getWidth() / 2),
+                        Math.max(1, image.getHeight() / 2), BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = half.createGraphics();
+                g.setComposite(AlphaComposite.Src);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, half.getWidth(), half.getHeight(), null);
+                g.dispose();
+                image = half;
+            }
+            return new Image(file.toAbsolutePath().normalize(), image);
+            
+        } catch(IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * An image decoded to ARGB pixels.
+     */
+    private static class Image {
+        
+        final Path file;
+        final int width, height;
+        final int[] argb;
+        
+        Image(Path file, BufferedImage image) {
+            this.file = file;
+            width = image.getWidth();
+            height = image.getHeight();
+            argb = image.getRGB(0, 0, width, height, null, 0, width);
+        }
+    }
+}
\ No newline at end of file
@@ -30,12 +30,13 @@ public class Tile implements Serializable {
     
     /**
      * Constructs a new immediately-visible tile (square) for rendering.
-     * @param window the window in which the tile is to reside.
+     * @param window the window in which the tile is to reside (null for none).
      */
     public Tile(Window window) {
         this.window = window;
-        shader = (TileShader) window.getShader();
-        shader.addTile(this);
+        //Tiles without a window (i.e. headless) are never rendered.
+        shader = window != null ? (TileShader) window.getShader() : null;
+        if(shader != null) shader.addTile(this);
     }
     
     /**
@@ -54,6 +55,7 @@ public class Tile implements Serializable {
      */
     public Tile setX(int x) {
         this.x = x;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -63,6 +65,7 @@ public class Tile implements Serializable {
      */
     public Tile setY(int y) {
         this.y = y;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -74,6 +77,7 @@ public class Tile implements Serializable {
     public Tile setPosition(int x, int y) {
         this.x = x;
         this.y = y;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -93,6 +97,7 @@ public class Tile implements Serializable {
      */
     public Tile setWidth(int width) {
         this.width = width;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -102,6 +107,7 @@ public class Tile implements Serializable {
      */
     public Tile setHeight(int height) {
         this.height = height;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -113,6 +119,7 @@ public class Tile implements Serializable {
     public Tile setSize(int width, int height) {
         this.width = width;
         this.height = height;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -127,6 +134,7 @@ public class Tile implements Serializable {
      */
     public Tile setAngle(int angle) {
         this.angle = angle;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -141,6 +149,7 @@ public class Tile implements Serializable {
      */
     public Tile setDepth(float depth) {
         this.depth = depth;
+        if(shader != null) shader.reorder();
         return this;
     }
     
@@ -157,6 +166,7 @@ public class Tile implements Serializable {
      */
     public Tile setTexture(Texture texture) {
         this.texture = texture;
+        if(shader != null) shader.reorder();
         return this;
     }
     
@@ -171,6 +181,7 @@ public class Tile implements Serializable {
      */
     public Tile setColour(Colour colour) {
         this.colour = colour;
+        if(shader != null) shader.markChanged();
         return this;
     }
     
@@ -183,6 +194,7 @@ public class Tile implements Serializable {
      * @param visible whether the tile is visible to the renderer.
      */
     public void setVisible(boolean visible) {
+        if(shader == null) return;
         if(visible) shader.addTile(this);
         else shader.removeTile(this);
     }
@@ -191,7 +203,7 @@ public class Tile implements Serializable {
      * Remove tile from renderer, and remove events from tile.
      */
     public void destroy() {
-        shader.removeTile(this);
+        if(shader != null) shader.removeTile(this);
     }
     
     @Override
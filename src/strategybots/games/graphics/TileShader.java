@@ -2,19 +2,36 @@ package strategybots.games.graphics;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL13.*;
+import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL33.*;
+import static org.lwjgl.opengl.GL44.*;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
 
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ContextCapabilities;
 import org.lwjgl.opengl.Display;
-import org.lwjgl.util.vector.Vector2f;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.GLSync;
 
 /**
- * Shader for rendering tiles.
+ * Shader for rendering tiles.<br>
+ * <br>
+ * Tiles are drawn instanced: the properties of every tile are written to a buffer once per frame,
+ * and each run of tiles sharing a texture (in depth order) is drawn with a single draw call.
+ * Where supported, the buffer is persistently mapped and split into regions used in rotation,
+ * so writing one frame never waits on the GPU still reading an earlier one.
  * 
  * @author Alec Dorrington
  */
@@ -27,12 +44,53 @@ public class TileShader extends Shader {
     private static final String VERTEX_SHADER   = "/strategybots/games/graphics/tile_vertex.shdr",
                                 FRAGMENT_SHADER = "/strategybots/games/graphics/tile_fragment.shdr";
     
+    /** The number of floats of properties per tile: bounds, transform, colour and texture region. */
+    private static final int TILE_FLOATS = 16, TILE_BYTES = 4 * TILE_FLOATS;
+    
+    /** The number of frames' worth of tiles in the persistently mapped buffer. */
+    private static final int NUM_REGIONS = 3;
+    
+    /** The number of tiles for which space is initially allocated. */
+    private static final int INITIAL_CAPACITY = 256;
+    
+    /** The longest wait for the GPU to finish reading a region of the buffer, in nanoseconds. */
+    private static final long SYNC_TIMEOUT = 1_000_000_000L;
+    
+    /** Order in which tiles are drawn: back to front, then grouped by texture. */
+    private static final Comparator<Tile> DRAW_ORDER = Comparator
+            .comparingDouble(Tile::getDepth)
+            .thenComparingInt(t -> textureIdOf(t.getTexture().orElse(null)));
+    
     /** The tiles currently visible to the renderer. */
-    private List<Tile> tiles = new LinkedList<>();
+    private Set<Tile> tiles = new LinkedHashSet<>();
+    
+    /** The visible tiles in draw order, and whether this needs to be recomputed. */
+    private Tile[] sorted = new Tile[0];
+    private boolean unsorted = false;
+    
+    /** The first tile and texture of each run of tiles drawn together. */
+    private int[] runStarts = new int[16];
+    private Texture[] runTextures = new Texture[16];
+    
+    /** Location of the screen size uniform. */
+    private int screenSizeLocation;
     
     /** Lock on the list of tiles. */
     private Semaphore lock = new Semaphore(1);
     
+    /** The buffer of tile properties, and the number of tiles for which it has space. */
+    private int instanceVboId = 0, capacity = 0;
+    
+    /** Whether the buffer is persistently mapped, rather than reuploaded each frame. */
+    private boolean persistent;
+    
+    /** The contents of the buffer: mapped if persistent, otherwise staged for upload. */
+    private FloatBuffer instances;
+    
+    /** The region of the buffer to be written next, and fences on each region's last use. */
+    private int region = 0;
+    private GLSync[] fences = new GLSync[NUM_REGIONS];
+    
     /**
      * Create the tile shader instance with the appropriate shader files.
      */
@@ -42,18 +100,32 @@ public class TileShader extends Shader {
     protected void bindAttribs() {
         bindAttrib(0, "vertex");
         bindAttrib(1, "texmap");
+        bindAttrib(2, "bounds");
+        bindAttrib(3, "transform");
+        bindAttrib(4, "colour");
+        bindAttrib(5, "region");
     }
     
     @Override
     protected void init() {
-        setUniform("screenSize", new Vector2f(
-                Display.getWidth(), Display.getHeight()));
+        screenSizeLocation = getUniformLocation("screenSize");
+        setUniform2f(screenSizeLocation, Display.getWidth(), Display.getHeight());
+        
+        ContextCapabilities caps = GLContext.getCapabilities();
+        persistent = caps.OpenGL44 || caps.GL_ARB_buffer_storage;
+        createInstanceBuffer(INITIAL_CAPACITY);
+        
+        //Advance the tile properties once per tile, rather than once per vertex.
+        glBindVertexArray(Mesh.SQUARE.getVaoId());
+        for(int i = 2; i < 6; i++) {
+            glVertexAttribDivisor(i, 1);
+        }
+        glBindVertexArray(0);
     }
     
     @Override
     protected void onWindowResize() {
-        setUniform("screenSize", new Vector2f(
-                Display.getWidth(), Display.getHeight()));
+        setUniform2f(screenSizeLocation, Display.getWidth(), Display.getHeight());
     }
     
     @Override
@@ -61,38 +133,177 @@ public class TileShader extends Shader {
         
         acquireLock();
         
+        if(unsorted) {
+            sorted = tiles.toArray(new Tile[tiles.size()]);
+            Arrays.sort(sorted, DRAW_ORDER);
+            unsorted = false;
+        }
+        if(sorted.length > capacity) {
+            createInstanceBuffer(Math.max(sorted.length, 2 * capacity));
+        }
+        
+        //Write the properties of each tile, and find the runs of tiles sharing a texture (or atlas).
+        long offset = beginFrame();
+        int numRuns = 0;
+        for(int i = 0; i < sorted.length; i++) {
+            
+            Texture texture = sorted[i].getTexture().orElse(null);
+            int textureId = textureIdOf(texture);
+            if(numRuns == 0 || textureId != textureIdOf(runTextures[numRuns - 1])) {
+                if(numRuns == runStarts.length) {
+                    runStarts = Arrays.copyOf(runStarts, 2 * numRuns);
+                    runTextures = Arrays.copyOf(runTextures, 2 * numRuns);
+                }
+                runStarts[numRuns] = i;
+                runTextures[numRuns++] = texture;
+            }
+            writeTile(sorted[i], texture);
+        }
+        int numTiles = sorted.length;
+        endFrame();
+        
+        lock.release();
+        
         //Load tile mesh.
         loadMesh(Mesh.SQUARE);
         
-        //Render each tile in set.
-        for(Tile tile : tiles) {
+        //Render each run of tiles.
+        for(int i = 0; i < numRuns; i++) {
             
-            //Load the texture.
-            loadTexture(tile.getTexture());
-            //Render the tile.
-            renderTile(tile);
+            int end = i + 1 < numRuns ? runStarts[i + 1] : numTiles;
+            loadTexture(Optional.ofNullable(runTextures[i]));
+            pointInstances(offset + (long) runStarts[i] * TILE_BYTES);
+            glDrawArraysInstanced(GL_TRIANGLES, 0, Mesh.SQUARE.getNumVertices(), end - runStarts[i]);
         }
         unloadMesh();
         
-        lock.release();
+        //Fence the region just drawn, so it isn't overwritten until the GPU is done with it.
+        if(persistent && numTiles > 0) {
+            fences[region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            region = (region + 1) % NUM_REGIONS;
+        }
+        Arrays.fill(runTextures, 0, numRuns, null);
+    }
+    
+    @Override
+    public void destroy() {
+        deleteInstanceBuffer();
+        super.destroy();
+    }
+    
+    /**
+     * Write the properties of a tile to the buffer.
+     * @param t the tile to write.
+     * @param texture the texture of the tile, or null.
+     */
+    private void writeTile(Tile t, Texture texture) {
+        
+        Colour colour = t.getColour();
+        instances.put(t.getX()).put(t.getY()).put(t.getWidth()).put(t.getHeight());
+        instances.put(t.getAngle()).put(t.getDepth()).put(texture != null ? 1 : 0).put(0);
+        instances.put(colour.R).put(colour.G).put(colour.B).put(colour.A);
+        
+        if(texture != null) {
+            instances.put(texture.getRegionX()).put(texture.getRegionY())
+                    .put(texture.getRegionWidth()).put(texture.getRegionHeight());
+        } else instances.put(0).put(0).put(1).put(1);
     }
     
     /**
-     * Render a tile.
-     * @param t the tile to render.
+     * Prepare the buffer for the properties of this frame's tiles.
+     * @return the offset in the buffer (bytes) at which they will be written.
      */
-    private void renderTile(Tile t) {
+    private long beginFrame() {
         
-        //Load tile property uniforms to renderer.
-        setUniform("position", new Vector2f(t.getX(), t.getY()));
-        setUniform("size", new Vector2f(t.getWidth(), t.getHeight()));
-        setUniform("angle", t.getAngle());
-        setUniform("depth", t.getDepth());
-        setUniform("colour", t.getColour().asVector());
-        setUniform("hasTexture", t.getTexture().isPresent());
+        if(!persistent) {
+            instances.clear();
+            return 0;
+        }
         
-        //Render tile VAO.
-        glDrawArrays(GL_TRIANGLES, 0, Mesh.SQUARE.getNumVertices());
+        //Wait until the GPU has finished drawing from this region.
+        if(fences[region] != null) {
+            glClientWaitSync(fences[region], GL_SYNC_FLUSH_COMMANDS_BIT, SYNC_TIMEOUT);
+            glDeleteSync(fences[region]);
+            fences[region] = null;
+        }
+        instances.position(region * capacity * TILE_FLOATS);
+        return (long) region * capacity * TILE_BYTES;
+    }
+    
+    /**
+     * Make this frame's tile properties available to the GPU.
+     */
+    private void endFrame() {
+        
+        //The persistent mapping is coherent, so there is nothing to do.
+        if(persistent) return;
+        
+        //Orphan the old buffer contents, so the upload needn't wait on the previous frame.
+        instances.flip();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        glBufferData(GL_ARRAY_BUFFER, (long) capacity * TILE_BYTES, GL_STREAM_DRAW);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, instances);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+    
+    /**
+     * Create the buffer of tile properties, replacing any existing buffer.
+     * @param capacity the number of tiles for which to allocate space.
+     */
+    private void createInstanceBuffer(int capacity) {
+        
+        deleteInstanceBuffer();
+        this.capacity = capacity;
+        instanceVboId = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        
+        if(persistent) {
+            
+            //Allocate immutable storage for every region, and map it once for good.
+            long size = (long) NUM_REGIONS * capacity * TILE_BYTES;
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(GL_ARRAY_BUFFER, size, flags);
+            instances = glMapBufferRange(GL_ARRAY_BUFFER, 0, size, flags, null)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            region = 0;
+            
+        } else instances = BufferUtils.createFloatBuffer(capacity * TILE_FLOATS);
+        
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+    
+    /**
+     * Delete the buffer of tile properties, if it exists.
+     */
+    private void deleteInstanceBuffer() {
+        
+        for(int i = 0; i < NUM_REGIONS; i++) {
+            if(fences[i] != null) glDeleteSync(fences[i]);
+            fences[i] = null;
+        }
+        if(instanceVboId != 0) {
+            
+            if(persistent) {
+                glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+                glUnmapBuffer(GL_ARRAY_BUFFER);
+                glBindBuffer(GL_ARRAY_BUFFER, 0);
+            }
+            glDeleteBuffers(instanceVboId);
+            instanceVboId = 0;
+        }
+    }
+    
+    /**
+     * Point the tile properties at the given position in the buffer.
+     * @param offset the offset (bytes) of the first tile to draw.
+     */
+    private void pointInstances(long offset) {
+        
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        for(int i = 0; i < 4; i++) {
+            glVertexAttribPointer(2 + i, 4, GL_FLOAT, false, TILE_BYTES, offset + 16 * i);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
     
     /**
@@ -102,8 +313,8 @@ public class TileShader extends Shader {
     private void loadMesh(Mesh m) {
         //Load VAO.
         glBindVertexArray(m.getVaoId());
-        //Load each VBO.
-        for(int i = 0; i < 2; i++) {
+        //Load each VBO, and the tile properties.
+        for(int i = 0; i < 6; i++) {
             glEnableVertexAttribArray(i);
         }
     }
@@ -112,8 +323,8 @@ public class TileShader extends Shader {
      * Unload current mesh from OpenGL.
      */
     private void unloadMesh() {
-        //Unload each VBO.
-        for(int i = 0; i < 2; i++) {
+        //Unload each VBO, and the tile properties.
+        for(int i = 0; i < 6; i++) {
             glDisableVertexAttribArray(i);
         }
         //Unload VAO.
@@ -148,11 +359,9 @@ public class TileShader extends Shader {
     public void addTile(Tile tile) {
         
         acquireLock();
-        if(!tiles.contains(tile)) {
-            tiles.add(tile);
-            tiles.sort((t1, t2) -> Float.compare(t1.getDepth(), t2.getDepth()));
-        }
+        if(tiles.add(tile)) unsorted = true;
         lock.release();
+        markChanged();
     }
     
     /**
@@ -162,18 +371,37 @@ public class TileShader extends Shader {
     public void removeTile(Tile tile) {
         
         acquireLock();
-        tiles.remove(tile);
+        if(tiles.remove(tile)) unsorted = true;
         lock.release();
+        markChanged();
     }
     
     /**
-     * Acquire lock for list of tiles.
+     * Notify the renderer that a tile's depth or texture has changed,
+     * so the order in which tiles are drawn must be recomputed.
+     */
+    void reorder() {
+        
+        acquireLock();
+        unsorted = true;
+        lock.release();
+        markChanged();
+    }
+    
+    /**
+     * @param texture a texture, or null.
+     * @return the ID of the texture (or the atlas containing it), or 0 if there is no texture.
+     */
+    private static int textureIdOf(Texture texture) {
+        return texture != null ? texture.getTextureId() : 0;
+    }
+    
+    /**
+     * Acquire lock for list of tiles.<br>
+     * Game threads may be interrupted (e.g. upon overrunning a deadline), so the lock
+     * is acquired regardless, leaving the interrupt status set for the caller to handle.
      */
     private void acquireLock() {
-        try {
-            lock.acquire();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        lock.acquireUninterruptibly();
     }
 }
\ No newline at end of file
@@ -5,8 +5,12 @@ import static org.lwjgl.opengl.GL13.*;
 
 import java.awt.Dimension;
 import java.awt.Toolkit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.lwjgl.LWJGLException;
+import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.ContextAttribs;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
@@ -51,6 +55,19 @@ public class Window {
     /** Maximum FPS of window. */
     private int maxFps = 240;
     
+    /** Whether frames are only rendered when the window contents, size or cursor change. */
+    private volatile boolean renderOnChange = true;
+    
+    /** Position of the cursor and state of the left mouse button, as of the last update. */
+    private int mouseX = -1, mouseY = -1;
+    private boolean mouseDown = false;
+    
+    /** Latch released once the window has been opened. */
+    private final CountDownLatch opened = new CountDownLatch(1);
+    
+    /** Actions to be run once the window has been closed. */
+    private final List<Runnable> closeActions = new CopyOnWriteArrayList<>();
+    
     static {
         //Fill screen for default window size.
         Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
@@ -178,6 +195,12 @@ public class Window {
      */
     public void close() { open = false; }
     
+    /**
+     * Registers an action to be run (on the render thread) once the window has closed.
+     * @param action the action to run upon closure.
+     */
+    public void onClose(Runnable action) { closeActions.add(action); }
+    
     /**
      * @return whether the window is resizable by the user.
      */
@@ -206,7 +229,10 @@ public class Window {
     /**
      * @param colour the new background colour of the window.
      */
-    public void setColour(Colour colour) { this.colour = colour; }
+    public void setColour(Colour colour) {
+        this.colour = colour;
+        SHADER.markChanged();
+    }
     
     /**
      * @return the current maximum FPS of the window.
@@ -218,11 +244,33 @@ public class Window {
      */
     public void setMaxFps(int maxFps) { this.maxFps = maxFps; }
     
+    /**
+     * @return whether frames are only rendered when something has changed.
+     */
+    public boolean isRenderOnChange() { return renderOnChange; }
+    
+    /**
+     * Sets whether frames are only rendered when the window contents, size or cursor change
+     * (default), or continuously at the maximum FPS. While nothing changes, the window
+     * continues to process input at the maximum FPS, but without rendering.
+     * @param renderOnChange whether frames are only rendered when something has changed.
+     */
+    public void setRenderOnChange(boolean renderOnChange) { this.renderOnChange = renderOnChange; }
+    
+    /**
+     * Request that a new frame be rendered, for changes to the window contents
+     * which aren't made through its tiles (such as colours which depend on external state).
+     */
+    public void requestRender() { SHADER.markChanged(); }
+    
     /**
      * Open the window in a new thread.
      */
     private void open() {
         
+        //Decode textures while the window is being created.
+        Texture.preload();
+        
         new Thread("render") {
             @Override public void run() {
                 
@@ -231,13 +279,13 @@ public class Window {
                 SHADER.doInit();
                 INPUT_HANDLER.init();
                 open = true;
+                opened.countDown();
                 
                 //While the window remains open.
                 while(!Display.isCloseRequested() && open) {
                     
                     //Update the window and its components.
                     update();
-                    SHADER.doRender();
                     INPUT_HANDLER.update();
                 }
                 //Close the window and destroy its components.
@@ -245,11 +293,16 @@ public class Window {
                 INPUT_HANDLER.destroy();
                 Display.destroy();
                 open = false;
+                closeActions.forEach(Runnable::run);
             }
         }.start();
         
         //Wait for the window to open before returning.
-        while(!open);
+        try {
+            opened.await();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
     
     /**
@@ -282,7 +335,7 @@ public class Window {
     }
     
     /**
-     * Update window properties, update display and clear buffers.
+     * Update window properties, and render a new frame if anything has changed.
      */
     private void update() {
         
@@ -290,14 +343,48 @@ public class Window {
         updatePosition();
         updateProperties();
         
-        //Update display.
-        Display.sync(maxFps);
-        Display.update();
+        //Cursor changes must be checked every update, so they aren't missed.
+        boolean cursorChanged = updateCursor();
+        
+        if(!renderOnChange || cursorChanged || SHADER.isChanged() || Display.isDirty()) {
+            
+            //Clear buffers.
+            glEnable(GL_DEPTH_TEST);
+            glClearColor(colour.R, colour.G, colour.B, colour.A);
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+            
+            //Render the window contents.
+            SHADER.doRender();
+            
+            //Update display.
+            Display.sync(maxFps);
+            Display.update();
+            
+        } else {
+            
+            //Wait for the next update, processing input without rendering.
+            Display.sync(maxFps);
+            Display.processMessages();
+        }
+    }
+    
+    /**
+     * Update stored position of cursor and state of the left mouse button,
+     * on which the colours of tiles may depend.
+     * @return whether either has changed since the last update.
+     */
+    private boolean updateCursor() {
+        
+        if(!Mouse.isCreated()) return false;
+        
+        int mx = Mouse.getX(), my = Mouse.getY();
+        boolean down = Mouse.isButtonDown(0);
+        boolean changed = mx != mouseX || my != mouseY || down != mouseDown;
         
-        //Clear buffers.
-        glEnable(GL_DEPTH_TEST);
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); 
-        glClearColor(colour.R, colour.G, colour.B, colour.A);
+        mouseX = mx;
+        mouseY = my;
+        mouseDown = down;
+        return changed;
     }
     
     /**
@@ -328,6 +415,7 @@ public class Window {
             
             //Update OpenGL viewport.
             glViewport(0, 0, width, height);
+            SHADER.markChanged();
             //Trigger window resize event.
             new WindowResizeEvent(width, height);
         }
@@ -0,0 +1,74 @@
+package strategybots.games;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import strategybots.games.base.Game;
+import strategybots.games.base.Game.Player;
+import strategybots.games.base.TileGame;
+
+/**
+ * Tests of the rules enforced by the live 'Checkers' game.<br>
+ * <br>
+ * Runs without a display or any test framework. Exits with a non-zero status on failure.<br>
+ * Usage: CheckersTest
+ *
+ * @author Alec Dorrington
+ */
+public class CheckersTest {
+    
+    /** How long a game may take before it is assumed to have hung (ms). */
+    private static final long TIMEOUT = 5000;
+    
+    public static void main(String[] args) throws InterruptedException {
+        
+        TileGame.setHeadless(true);
+        blockedPlayerLoses();
+        System.out.println("CheckersTest passed.");
+        System.exit(0);
+    }
+    
+    /**
+     * A player who still has pieces, none of which can move, loses the game.<br>
+     * On a 2x3 board with a single row of pieces each, red's opening move
+     * leaves white's only man with nowhere to step or jump.
+     */
+    private static void blockedPlayerLoses() throws InterruptedException {
+        
+        AtomicBoolean whiteAsked = new AtomicBoolean(false);
+        
+        Player<Checkers> red = (game, playerId) -> game.movePiece(0, 2, 1, 1);
+        Player<Checkers> white = (game, playerId) -> {
+            //Leave the turn unfinished, as there is no legal move to make.
+            whiteAsked.set(true);
+            throw new IllegalStateException("White has no legal moves, so shouldn't be asked to move.");
+        };
+        
+        //Only start the game once it has been fully constructed, so that its rows are set.
+        List<Runnable> pending = new ArrayList<>();
+        Game.setExecutor(pending::add);
+        Checkers game = new Checkers(2, 3, 1, red, white);
+        Game.setExecutor(null);
+        
+        Thread thread = new Thread(pending.get(0), "Game");
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(TIMEOUT);
+        
+        check(!thread.isAlive(), "The game should end once white is blocked.");
+        check(!whiteAsked.get(), "White shouldn't be asked to move while blocked.");
+        check(game.getWinnerId() == 1, "Red should win, but the winner was " + game.getWinnerId() + ".");
+    }
+    
+    /**
+     * Fails the test (exiting the program) if the condition doesn't hold.
+     */
+    private static void check(boolean condition, String message) {
+        
+        if(!condition) {
+            System.err.println("CheckersTest failed: " + message);
+            System.exit(1);
+        }
+    }
+}
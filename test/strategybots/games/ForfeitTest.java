@@ -0,0 +1,94 @@
+package strategybots.games;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import strategybots.games.base.Game;
+import strategybots.games.base.Game.Player;
+import strategybots.games.base.TileGame;
+
+/**
+ * Tests that a player who blocks past their deadline forfeits the game.<br>
+ * <br>
+ * Runs without a display or any test framework. Exits with a non-zero status on failure.<br>
+ * Usage: ForfeitTest
+ *
+ * @author Alec Dorrington
+ */
+public class ForfeitTest {
+    
+    /** The time limit of each turn (ms). */
+    private static final long TIME_LIMIT = 50;
+    
+    /** How long a game may take before it is assumed to have hung (ms). */
+    private static final long TIMEOUT = 5000;
+    
+    /** The number of games to play in each case, as the watchdog's timing varies. */
+    private static final int NUM_GAMES = 10;
+    
+    public static void main(String[] args) throws InterruptedException {
+        
+        TileGame.setHeadless(true);
+        
+        //A player who returns as soon as they are interrupted, keeping the interrupt.
+        blockingPlayerForfeits("returns when interrupted", (game, playerId) -> {
+            try {
+                Thread.sleep(100000);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        //A player who swallows the interrupt, and so would otherwise be asked to move again.
+        blockingPlayerForfeits("swallows the interrupt", (game, playerId) -> {
+            try {
+                Thread.sleep(100000);
+            } catch(InterruptedException e) {}
+        });
+        
+        System.out.println("ForfeitTest passed.");
+        System.exit(0);
+    }
+    
+    /**
+     * Plays games in which the first player blocks past their deadline,
+     * checking that the second player is declared the winner of each.
+     * @param description describes how the blocking player responds to being interrupted.
+     * @param blocker the blocking player.
+     */
+    private static void blockingPlayerForfeits(String description, Player<ConnectFour> blocker)
+            throws InterruptedException {
+        
+        Player<ConnectFour> mover = (game, playerId) -> game.placeStone(0);
+        
+        for(int i = 0; i < NUM_GAMES; i++) {
+            
+            //Only start the game once it has been fully constructed, so that its time limit is set.
+            List<Runnable> pending = new ArrayList<>();
+            Game.setExecutor(pending::add);
+            ConnectFour game = new ConnectFour(blocker, mover);
+            game.setTimeLimit(TIME_LIMIT);
+            Game.setExecutor(null);
+            
+            Thread thread = new Thread(pending.get(0), "Game");
+            thread.setDaemon(true);
+            thread.start();
+            thread.join(TIMEOUT);
+            
+            check(!thread.isAlive(), "A player who " + description + " should forfeit, but the game hung.");
+            check(game.getWinnerId() == 2, "A player who " + description
+                    + " should forfeit, but the winner was " + game.getWinnerId() + ".");
+        }
+    }
+    
+    /**
+     * Fails the test (exiting the program) if the condition doesn't hold.
+     */
+    private static void check(boolean condition, String message) {
+        
+        if(!condition) {
+            System.err.println("ForfeitTest failed: " + message);
+            System.exit(1);
+        }
+    }
+}
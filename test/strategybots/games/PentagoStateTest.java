@@ -0,0 +1,136 @@
+package strategybots.games;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import strategybots.games.base.Game;
+import strategybots.games.base.Game.Player;
+import strategybots.games.base.GameState;
+import strategybots.games.base.TileGame;
+
+/**
+ * Differential tests of 'PentagoState' against the live 'Pentago' game.<br>
+ * <br>
+ * Plays random games, making each move both in the game and in a state, and checks
+ * at every turn that the state constructed from the game agrees with the one played along.<br>
+ * Runs without a display or any test framework. Exits with a non-zero status on failure.<br>
+ * Usage: PentagoStateTest [numGames]
+ *
+ * @author Alec Dorrington
+ */
+public class PentagoStateTest {
+    
+    /** How long a game may take before it is assumed to have hung (ms). */
+    private static final long TIMEOUT = 10000;
+    
+    /** The number of random games to play by default, one for each seed from 0. */
+    private static final int NUM_GAMES = 200;
+    
+    public static void main(String[] args) throws InterruptedException {
+        
+        TileGame.setHeadless(true);
+        int numGames = args.length > 0 ? Integer.parseInt(args[0]) : NUM_GAMES;
+        
+        for(int seed = 0; seed < numGames; seed++) {
+            randomGameMatches(seed);
+        }
+        System.out.println("PentagoStateTest passed (" + numGames + " games).");
+        System.exit(0);
+    }
+    
+    /**
+     * Plays a random game, checking the state of the game at the start of every turn
+     * against a state on which the same moves have been made.
+     * @param seed the seed from which the moves are chosen.
+     */
+    private static void randomGameMatches(long seed) throws InterruptedException {
+        
+        Random random = new Random(seed);
+        PentagoState expected = new PentagoState();
+        int[] moves = new int[expected.getMaxMoves()];
+        AtomicReference<String> mismatch = new AtomicReference<>();
+        
+        Player<Pentago> player = (game, playerId) -> {
+            
+            PentagoState actual = new PentagoState(game);
+            String difference = compare(expected, actual);
+            if(difference != null) {
+                //Leave the turn unfinished, as the states no longer agree on which moves are legal.
+                mismatch.set("Seed " + seed + ", move " + (expected.numStones + 1) + ": " + difference);
+                throw new IllegalStateException(mismatch.get());
+            }
+            
+            int move = moves[random.nextInt(expected.legalMoves(moves))];
+            expected.make(move);
+            if(!actual.apply(game, move)) {
+                mismatch.set("Seed " + seed + ": the game rejected move " + move + ".");
+                throw new IllegalStateException(mismatch.get());
+            }
+        };
+        
+        //Only start the game once it has been fully constructed, so that its target is set.
+        List<Runnable> pending = new ArrayList<>();
+        Game.setExecutor(pending::add);
+        Pentago game = new Pentago(player, player);
+        Game.setExecutor(null);
+        
+        Thread thread = new Thread(pending.get(0), "Game");
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(TIMEOUT);
+        
+        check(mismatch.get() == null, mismatch.get());
+        check(!thread.isAlive(), "Seed " + seed + ": the game should have ended.");
+        check(expected.terminalResult() != GameState.IN_PROGRESS,
+                "Seed " + seed + ": the game ended, but the state is still in progress.");
+        //A drawn game is left without a winner.
+        int result = game.getWinner().isPresent() ? game.getWinnerId() : GameState.DRAW;
+        check(result == expected.terminalResult(), "Seed " + seed + ": the result was "
+                + result + ", but the state's result was " + expected.terminalResult() + ".");
+        String difference = compare(expected, new PentagoState(game));
+        check(difference == null, "Seed " + seed + ", after the game: " + difference);
+    }
+    
+    /**
+     * Compares two states, by their board, player to move, result and legal moves.
+     * @param expected the state on which the moves of the game have been made.
+     * @param actual the state constructed from the game.
+     * @return a description of the first difference found, or null if there is none.
+     */
+    private static String compare(PentagoState expected, PentagoState actual) {
+        
+        for(int i = 0; i < expected.getWidth() * expected.getHeight(); i++) {
+            if(expected.get(i) != actual.get(i)) {
+                return "the boards differ at index " + i + ".";
+            }
+        }
+        if(expected.getCurrentPlayerId() != actual.getCurrentPlayerId()) {
+            return "it should be player " + expected.getCurrentPlayerId() + "'s turn, but was player "
+                    + actual.getCurrentPlayerId() + "'s.";
+        }
+        if(expected.terminalResult() != actual.terminalResult()) {
+            return "the result should be " + expected.terminalResult() + ", but was "
+                    + actual.terminalResult() + ".";
+        }
+        
+        int[] moves = new int[expected.getMaxMoves()];
+        int numExpected = expected.legalMoves(moves), numActual = actual.legalMoves(moves);
+        if(numExpected != numActual) {
+            return "there should be " + numExpected + " legal moves, but there were " + numActual + ".";
+        }
+        return null;
+    }
+    
+    /**
+     * Fails the test (exiting the program) if the condition doesn't hold.
+     */
+    private static void check(boolean condition, String message) {
+        
+        if(!condition) {
+            System.err.println("PentagoStateTest failed: " + message);
+            System.exit(1);
+        }
+    }
+}